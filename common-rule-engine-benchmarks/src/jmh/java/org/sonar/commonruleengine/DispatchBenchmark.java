@@ -0,0 +1,122 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.commonruleengine;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.commonruleengine.checks.Check;
+import org.sonar.uast.UastNode;
+import org.sonar.uast.Visitor;
+import org.sonar.uast.validators.Validator;
+
+/**
+ * Scans the UASTs of the fixtures with all the Go checks, dispatching the nodes to the visitors memoized by
+ * {@link Engine} per combination of kinds, or to the visitors collected into a new set for each node as
+ * the engine did before.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DispatchBenchmark {
+
+  private final List<Fixture> fixtures = new ArrayList<>();
+  private final List<UastNode> uasts = new ArrayList<>();
+  private Engine engine;
+  private PerNodeSetEngine perNodeSetEngine;
+
+  @Setup
+  public void setup() throws IOException {
+    engine = new Engine(Fixture.checks());
+    perNodeSetEngine = new PerNodeSetEngine(Fixture.checks());
+    for (Fixture fixture : Fixture.load()) {
+      UastNode uast = fixture.uast();
+      try {
+        engine.scan(uast, fixture.inputFile);
+      } catch (RuntimeException e) {
+        // UAST rejected by the validators, as it would be during an analysis
+        continue;
+      }
+      fixtures.add(fixture);
+      uasts.add(uast);
+    }
+  }
+
+  @Benchmark
+  public int memoizedDispatch() throws IOException {
+    int issues = 0;
+    for (int i = 0; i < uasts.size(); i++) {
+      issues += engine.scan(uasts.get(i), fixtures.get(i).inputFile).issues.size();
+    }
+    return issues;
+  }
+
+  @Benchmark
+  public int perNodeSetDispatch() throws IOException {
+    int issues = 0;
+    for (int i = 0; i < uasts.size(); i++) {
+      issues += perNodeSetEngine.scan(uasts.get(i), fixtures.get(i).inputFile);
+    }
+    return issues;
+  }
+
+  /**
+   * Scan of {@link Engine} before the dispatch was memoized
+   */
+  private static class PerNodeSetEngine {
+    private final EngineContext engineContext;
+    private final MetricsVisitor metricsVisitor = new MetricsVisitor();
+
+    private PerNodeSetEngine(List<Check> rules) {
+      engineContext = new EngineContext(rules);
+      Validator.all().forEach(rule -> rule.initialize(engineContext));
+      rules.forEach(rule -> rule.initialize(engineContext));
+    }
+
+    private int scan(UastNode uast, InputFile inputFile) throws IOException {
+      metricsVisitor.enterFile();
+      engineContext.enterFile(inputFile);
+      visit(uast);
+      return engineContext.getIssues().size();
+    }
+
+    private void visit(UastNode uast) {
+      metricsVisitor.visitNode(uast);
+      Set<Visitor> visitors = uast.kinds.stream()
+        .flatMap(kind -> engineContext.registeredVisitors(kind).stream())
+        .collect(Collectors.toSet());
+      visitors.forEach(visitor -> visitor.visitNode(uast));
+      uast.children.forEach(this::visit);
+      visitors.forEach(visitor -> visitor.leaveNode(uast));
+      metricsVisitor.leaveNode(uast);
+    }
+  }
+}
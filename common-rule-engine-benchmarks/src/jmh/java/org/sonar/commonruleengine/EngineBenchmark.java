@@ -0,0 +1,78 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.commonruleengine;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sonar.uast.UastNode;
+
+/**
+ * Scans the UASTs of the fixtures with all the Go checks, as a tree and streamed from json
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EngineBenchmark {
+
+  private final List<Fixture> fixtures = new ArrayList<>();
+  private final List<UastNode> uasts = new ArrayList<>();
+  private Engine engine;
+
+  @Setup
+  public void setup() throws IOException {
+    engine = new Engine(Fixture.checks());
+    for (Fixture fixture : Fixture.load()) {
+      UastNode uast = fixture.uast();
+      try {
+        engine.scan(uast, fixture.inputFile);
+      } catch (RuntimeException e) {
+        // UAST rejected by the validators, as it would be during an analysis
+        continue;
+      }
+      fixtures.add(fixture);
+      uasts.add(uast);
+    }
+  }
+
+  @Benchmark
+  public void scan(Blackhole blackhole) throws IOException {
+    for (int i = 0; i < uasts.size(); i++) {
+      blackhole.consume(engine.scan(uasts.get(i), fixtures.get(i).inputFile));
+    }
+  }
+
+  @Benchmark
+  public void scanStreaming(Blackhole blackhole) throws IOException {
+    for (Fixture fixture : fixtures) {
+      blackhole.consume(engine.scan(listener -> UastNode.read(new StringReader(fixture.json), listener), fixture.inputFile));
+    }
+  }
+}
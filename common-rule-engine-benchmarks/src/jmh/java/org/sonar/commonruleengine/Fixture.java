@@ -0,0 +1,117 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.commonruleengine;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.commonruleengine.checks.Check;
+import org.sonar.go.plugin.GoChecks;
+import org.sonar.uast.UastNode;
+
+/**
+ * A Go source file and its UAST, generated by the "generateFixtures" task of this module.
+ * The sources and the generated UASTs are located by the system properties set by the "jmh" task.
+ */
+public final class Fixture {
+
+  private static final String JSON_EXTENSION = ".json";
+
+  public final InputFile inputFile;
+  public final String json;
+
+  private Fixture(InputFile inputFile, String json) {
+    this.inputFile = inputFile;
+    this.json = json;
+  }
+
+  public UastNode uast() throws IOException {
+    return UastNode.from(new StringReader(json));
+  }
+
+  /**
+   * @return the fixtures, sorted by path, at most "benchmark.maxFiles" of them
+   */
+  public static List<Fixture> load() {
+    Path sources = Paths.get(System.getProperty("benchmark.sources"));
+    Path fixtures = Paths.get(System.getProperty("benchmark.fixtures"));
+    long maxFiles = Long.getLong("benchmark.maxFiles", Long.MAX_VALUE);
+    List<Path> jsonFiles;
+    try (Stream<Path> files = Files.walk(fixtures)) {
+      jsonFiles = files
+        .filter(path -> path.toString().endsWith(JSON_EXTENSION))
+        .sorted()
+        .limit(maxFiles)
+        .collect(Collectors.toList());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    if (jsonFiles.isEmpty()) {
+      throw new IllegalStateException("No UAST found in " + fixtures + ", run the \"generateFixtures\" task");
+    }
+    List<Fixture> result = new ArrayList<>(jsonFiles.size());
+    for (Path jsonFile : jsonFiles) {
+      String relativePath = fixtures.relativize(jsonFile).toString();
+      Path sourceFile = sources.resolve(relativePath.substring(0, relativePath.length() - JSON_EXTENSION.length()));
+      result.add(new Fixture(inputFile(sources, sourceFile), read(jsonFile)));
+    }
+    return result;
+  }
+
+  /**
+   * @return new instances of all the Go checks, with their default parameters
+   */
+  public static List<Check> checks() {
+    List<Check> checks = new ArrayList<>();
+    for (Class<?> checkClass : GoChecks.getChecks()) {
+      try {
+        checks.add(checkClass.asSubclass(Check.class).getDeclaredConstructor().newInstance());
+      } catch (ReflectiveOperationException e) {
+        throw new IllegalStateException("Can not instantiate " + checkClass, e);
+      }
+    }
+    return checks;
+  }
+
+  private static InputFile inputFile(Path baseDir, Path file) {
+    return TestInputFileBuilder.create("benchmark", baseDir.toFile(), file.toFile())
+      .setCharset(StandardCharsets.UTF_8)
+      .setContents(read(file))
+      .build();
+  }
+
+  private static String read(Path file) {
+    try {
+      return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.commonruleengine;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.commonruleengine.checks.NoIdenticalFunctionsCheck;
+import org.sonar.uast.UastNode;
+import org.sonar.uast.helpers.FunctionLike;
+
+import static org.sonar.uast.SyntacticEquivalence.areEquivalent;
+
+/**
+ * Looks for identical functions in a generated file where each function has a copy, with
+ * {@link NoIdenticalFunctionsCheck} which indexes the functions by fingerprint, or by comparing each function with all
+ * the previous ones as the check did before.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class IdenticalFunctionsBenchmark {
+
+  @Param({"500", "5000"})
+  public int functionCount;
+
+  private UastNode uast;
+  private List<UastNode> functions;
+  private InputFile inputFile;
+  private Engine engine;
+
+  @Setup
+  public void setup() {
+    functions = new ArrayList<>();
+    int distinctFunctions = functionCount / 2;
+    for (int i = 0; i < functionCount; i++) {
+      functions.add(function(4 * i + 1, "f" + i, "x" + (i % distinctFunctions)));
+    }
+    uast = new UastNode(EnumSet.of(UastNode.Kind.COMPILATION_UNIT), "", null, functions);
+    inputFile = TestInputFileBuilder.create(".", "generated.go").setType(InputFile.Type.MAIN).build();
+    engine = new Engine(Collections.singletonList(new NoIdenticalFunctionsCheck()));
+  }
+
+  @Benchmark
+  public int fingerprintIndex() throws IOException {
+    return engine.scan(uast, inputFile).issues.size();
+  }
+
+  @Benchmark
+  public int pairwise() {
+    int issues = 0;
+    List<FunctionLike> previousFunctions = new ArrayList<>();
+    for (UastNode node : functions) {
+      FunctionLike thisFunction = FunctionLike.from(node);
+      for (FunctionLike function : previousFunctions) {
+        if (areEquivalent(thisFunction.body(), function.body())
+          && areEquivalent(thisFunction.parameters(), function.parameters())
+          && areEquivalent(thisFunction.resultList(), function.resultList())) {
+          issues++;
+          break;
+        }
+      }
+      previousFunctions.add(thisFunction);
+    }
+    return issues;
+  }
+
+  private static UastNode function(int line, String name, String variable) {
+    UastNode block = node(UastNode.Kind.BLOCK, null,
+      node(UastNode.Kind.STATEMENT, new UastNode.Token(line + 1, 3, variable + "++")),
+      node(UastNode.Kind.STATEMENT, new UastNode.Token(line + 2, 3, variable + "--")));
+    return node(UastNode.Kind.FUNCTION, null,
+      node(UastNode.Kind.KEYWORD, new UastNode.Token(line, 1, "func")),
+      node(UastNode.Kind.FUNCTION_NAME, new UastNode.Token(line, 6, name)),
+      block);
+  }
+
+  private static UastNode node(UastNode.Kind kind, UastNode.Token token, UastNode... children) {
+    return new UastNode(EnumSet.of(kind), "", token, Arrays.asList(children));
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.commonruleengine;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sonar.uast.UastNode;
+
+/**
+ * Collects the lines of all the tokens of the fixtures, as {@link MetricsVisitor} does for the lines of code, into a
+ * {@link LineSet} and into the {@code Set<Integer>} used before. Run with the gc profiler to compare the allocations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LineSetBenchmark {
+
+  private final List<List<UastNode.Token>> tokensPerFile = new ArrayList<>();
+
+  @Setup
+  public void setup() throws IOException {
+    for (Fixture fixture : Fixture.load()) {
+      List<UastNode.Token> tokens = new ArrayList<>();
+      collectTokens(fixture.uast(), tokens);
+      tokensPerFile.add(tokens);
+    }
+  }
+
+  private static void collectTokens(UastNode node, List<UastNode.Token> tokens) {
+    if (node.token != null) {
+      tokens.add(node.token);
+    }
+    for (UastNode child : node.children) {
+      collectTokens(child, tokens);
+    }
+  }
+
+  @Benchmark
+  public void lineSet(Blackhole blackhole) {
+    for (List<UastNode.Token> tokens : tokensPerFile) {
+      LineSet lines = new LineSet();
+      for (UastNode.Token token : tokens) {
+        lines.addRange(token.line, token.endLine);
+      }
+      long[] sum = {0};
+      lines.forEach(line -> sum[0] += line);
+      blackhole.consume(sum[0]);
+    }
+  }
+
+  @Benchmark
+  public void boxedSet(Blackhole blackhole) {
+    for (List<UastNode.Token> tokens : tokensPerFile) {
+      Set<Integer> lines = new HashSet<>();
+      for (UastNode.Token token : tokens) {
+        IntStream.range(token.line, token.endLine + 1).forEach(lines::add);
+      }
+      long[] sum = {0};
+      lines.forEach(line -> sum[0] += line);
+      blackhole.consume(sum[0]);
+    }
+  }
+}
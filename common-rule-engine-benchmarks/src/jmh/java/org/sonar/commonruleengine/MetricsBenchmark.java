@@ -0,0 +1,78 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.commonruleengine;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sonar.uast.UastNode;
+
+/**
+ * Computes the metrics of the UASTs of the fixtures, including the cognitive complexity of their functions, and
+ * the cognitive complexity of the files alone
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MetricsBenchmark {
+
+  private final List<UastNode> uasts = new ArrayList<>();
+  private final MetricsVisitor metricsVisitor = new MetricsVisitor();
+
+  @Setup
+  public void setup() throws IOException {
+    for (Fixture fixture : Fixture.load()) {
+      uasts.add(fixture.uast());
+    }
+  }
+
+  @Benchmark
+  public void metricsVisitor(Blackhole blackhole) {
+    for (UastNode uast : uasts) {
+      metricsVisitor.enterFile();
+      visit(uast);
+      blackhole.consume(metricsVisitor.getMetrics());
+    }
+  }
+
+  @Benchmark
+  public void fileCognitiveComplexity(Blackhole blackhole) {
+    for (UastNode uast : uasts) {
+      blackhole.consume(CognitiveComplexity.calculateFileComplexity(uast).value());
+    }
+  }
+
+  private void visit(UastNode node) {
+    metricsVisitor.visitNode(node);
+    for (UastNode child : node.children) {
+      visit(child);
+    }
+    metricsVisitor.leaveNode(node);
+  }
+}
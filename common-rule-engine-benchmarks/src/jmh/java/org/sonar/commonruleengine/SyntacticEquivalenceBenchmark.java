@@ -0,0 +1,79 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.commonruleengine;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sonar.uast.SyntacticEquivalence;
+import org.sonar.uast.UastNode;
+
+/**
+ * Compares each UAST of the fixtures with a copy of itself, the worst case as every node is compared, and
+ * compares the functions of each file pairwise, as done by NoIdenticalFunctionsCheck
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SyntacticEquivalenceBenchmark {
+
+  private final List<UastNode> uasts = new ArrayList<>();
+  private final List<UastNode> copies = new ArrayList<>();
+  private final List<List<UastNode>> functionsByFile = new ArrayList<>();
+
+  @Setup
+  public void setup() throws IOException {
+    for (Fixture fixture : Fixture.load()) {
+      UastNode uast = fixture.uast();
+      uasts.add(uast);
+      copies.add(fixture.uast());
+      List<UastNode> functions = new ArrayList<>();
+      uast.getDescendants(UastNode.Kind.FUNCTION, functions::add);
+      functionsByFile.add(functions);
+    }
+  }
+
+  @Benchmark
+  public void identicalFiles(Blackhole blackhole) {
+    for (int i = 0; i < uasts.size(); i++) {
+      blackhole.consume(SyntacticEquivalence.areEquivalent(uasts.get(i), copies.get(i)));
+    }
+  }
+
+  @Benchmark
+  public void functionPairs(Blackhole blackhole) {
+    for (List<UastNode> functions : functionsByFile) {
+      for (int i = 0; i < functions.size(); i++) {
+        for (int j = i + 1; j < functions.size(); j++) {
+          blackhole.consume(SyntacticEquivalence.areEquivalent(functions.get(i), functions.get(j)));
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.commonruleengine;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sonar.uast.UastListener;
+import org.sonar.uast.UastNode;
+
+/**
+ * Reads the json UASTs of the fixtures, as a tree or streamed to a listener which does not keep any subtree
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class UnmarshallerBenchmark {
+
+  private List<Fixture> fixtures;
+
+  @Setup
+  public void setup() {
+    fixtures = Fixture.load();
+  }
+
+  @Benchmark
+  public void unmarshal(Blackhole blackhole) throws IOException {
+    for (Fixture fixture : fixtures) {
+      blackhole.consume(UastNode.from(new StringReader(fixture.json)));
+    }
+  }
+
+  @Benchmark
+  public void unmarshalStreaming(Blackhole blackhole) throws IOException {
+    UastListener listener = new UastListener() {
+      @Override
+      public boolean enterNode(UastNode node) {
+        blackhole.consume(node);
+        return false;
+      }
+
+      @Override
+      public void visitSubtree(UastNode node) {
+        // no subtree is requested
+      }
+
+      @Override
+      public void leaveNode(UastNode node) {
+        // nothing to do
+      }
+    };
+    for (Fixture fixture : fixtures) {
+      UastNode.read(new StringReader(fixture.json), listener);
+    }
+  }
+}
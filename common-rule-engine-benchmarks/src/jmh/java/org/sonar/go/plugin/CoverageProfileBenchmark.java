@@ -0,0 +1,111 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.go.plugin;
+
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Parses a generated coverage profile, with blocks of 100 files of 100 blocks in turn, with {@link CoverageProfileParser}
+ * and with the {@code Scanner} and regexp used before. Run with the gc profiler to compare the allocations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CoverageProfileBenchmark {
+
+  private static final Pattern MODE_LINE_REGEXP = Pattern.compile("^mode: (\\w+)$");
+  private static final Pattern COVERAGE_LINE_REGEXP = Pattern.compile("^(.+):(\\d+)\\.(\\d+),(\\d+)\\.(\\d+) (\\d+) (\\d+)$");
+
+  @Param({"100000", "1000000"})
+  public int blocks;
+
+  private Path report;
+
+  @Setup
+  public void setup() throws IOException {
+    report = Files.createTempFile("coverage", ".out");
+    try (BufferedWriter writer = Files.newBufferedWriter(report, UTF_8)) {
+      writer.write("mode: count\n");
+      for (int i = 0; i < blocks; i++) {
+        int line = (i % 100) * 3 + 1;
+        writer.write("_/home/user/go/src/github.com/org/project/pkg" + (i / 100 % 100) + "/file.go:"
+          + line + ".20," + (line + 2) + ".3 2 " + (i % 7) + "\n");
+      }
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.delete(report);
+  }
+
+  @Benchmark
+  public void byteParser(Blackhole blackhole) throws IOException {
+    CoverageProfileParser.parse(report, (filePath, startLine, startCol, endLine, endCol, numStmt, count) -> {
+      blackhole.consume(filePath);
+      blackhole.consume(startLine + startCol + endLine + endCol + numStmt + count);
+    });
+  }
+
+  @Benchmark
+  public void regexpParser(Blackhole blackhole) throws IOException {
+    try (InputStream input = new FileInputStream(report.toFile())) {
+      Scanner scanner = new Scanner(input, UTF_8.name());
+      if (!scanner.hasNextLine() || !MODE_LINE_REGEXP.matcher(scanner.nextLine()).matches()) {
+        throw new IOException("Invalid go coverage, expect 'mode:' on the first line.");
+      }
+      int lineNumber = 2;
+      while (scanner.hasNextLine()) {
+        String line = scanner.nextLine();
+        if (!line.isEmpty()) {
+          Matcher matcher = COVERAGE_LINE_REGEXP.matcher(line);
+          if (!matcher.matches()) {
+            throw new IllegalArgumentException("Invalid go coverage at line " + lineNumber);
+          }
+          blackhole.consume(matcher.group(1));
+          blackhole.consume(Integer.parseInt(matcher.group(2)) + Integer.parseInt(matcher.group(3)) + Integer.parseInt(matcher.group(4))
+            + Integer.parseInt(matcher.group(5)) + Integer.parseInt(matcher.group(6)) + Integer.parseInt(matcher.group(7)));
+        }
+        lineNumber++;
+      }
+    }
+  }
+}
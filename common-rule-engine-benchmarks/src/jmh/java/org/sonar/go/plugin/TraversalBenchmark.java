@@ -0,0 +1,96 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.go.plugin;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.commonruleengine.CognitiveComplexity;
+import org.sonar.commonruleengine.Engine;
+import org.sonar.commonruleengine.Fixture;
+import org.sonar.uast.UastNode;
+import org.sonar.uast.Visitor;
+
+/**
+ * Computes issues, metrics, highlighting and CPD tokens of the UASTs of the fixtures with all the Go checks,
+ * in a single walk of the rule engine, or with a walk for the file cognitive complexity, the rules, highlighting
+ * and CPD each, as the analysis did before.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TraversalBenchmark {
+
+  private final List<Fixture> fixtures = new ArrayList<>();
+  private final List<UastNode> uasts = new ArrayList<>();
+  private Engine engine;
+
+  @Setup
+  public void setup() throws IOException {
+    engine = new Engine(Fixture.checks());
+    for (Fixture fixture : Fixture.load()) {
+      UastNode uast = fixture.uast();
+      try {
+        engine.scan(uast, fixture.inputFile);
+      } catch (RuntimeException e) {
+        // UAST rejected by the validators, as it would be during an analysis
+        continue;
+      }
+      fixtures.add(fixture);
+      uasts.add(uast);
+    }
+  }
+
+  @Benchmark
+  public void singleWalk(Blackhole blackhole) throws IOException {
+    for (int i = 0; i < uasts.size(); i++) {
+      InputFile inputFile = fixtures.get(i).inputFile;
+      FileAnalysis fileAnalysis = new FileAnalysis();
+      List<Visitor> nodeVisitors = Arrays.asList(new CpdVisitor(inputFile, fileAnalysis), new HighlightingVisitor(inputFile, fileAnalysis));
+      blackhole.consume(engine.scan(uasts.get(i), inputFile, nodeVisitors));
+      blackhole.consume(fileAnalysis);
+    }
+  }
+
+  @Benchmark
+  public void separateWalks(Blackhole blackhole) throws IOException {
+    for (int i = 0; i < uasts.size(); i++) {
+      UastNode uast = uasts.get(i);
+      InputFile inputFile = fixtures.get(i).inputFile;
+      FileAnalysis fileAnalysis = new FileAnalysis();
+      blackhole.consume(CognitiveComplexity.calculateFileComplexity(uast).value());
+      blackhole.consume(engine.scan(uast, inputFile));
+      new CpdVisitor(inputFile, fileAnalysis).scan(uast);
+      new HighlightingVisitor(inputFile, fileAnalysis).scan(uast);
+      blackhole.consume(fileAnalysis);
+    }
+  }
+}
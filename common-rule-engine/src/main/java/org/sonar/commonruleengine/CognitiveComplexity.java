@@ -112,7 +112,7 @@ public class CognitiveComplexity {
     visitChildren(node);
   }
 
-  private static void flattenBinaryExpressions(UastNode node, List<BinaryExpressionLike> expressionAsList) {
+  static void flattenBinaryExpressions(UastNode node, List<BinaryExpressionLike> expressionAsList) {
     ParenthesizedLike parenthesizedNode = ParenthesizedLike.from(node);
     if (parenthesizedNode != null) {
       flattenBinaryExpressions(parenthesizedNode.expression(), expressionAsList);
@@ -127,7 +127,7 @@ public class CognitiveComplexity {
   }
 
   @Nullable
-  private static UastNode.Kind logicalBinaryExpressionKind(BinaryExpressionLike binaryExpression) {
+  static UastNode.Kind logicalBinaryExpressionKind(BinaryExpressionLike binaryExpression) {
     if (binaryExpression.node().is(UastNode.Kind.LOGICAL_AND)) {
       return UastNode.Kind.LOGICAL_AND;
     } else if (binaryExpression.node().is(UastNode.Kind.LOGICAL_OR)) {
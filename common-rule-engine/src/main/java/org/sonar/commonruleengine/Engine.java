@@ -20,55 +20,245 @@
 package org.sonar.commonruleengine;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.commonruleengine.checks.Check;
+import org.sonar.uast.UastListener;
 import org.sonar.uast.UastNode;
 import org.sonar.uast.Visitor;
 import org.sonar.uast.validators.Validator;
 
 public class Engine {
 
+  private static final Visitor[] NO_VISITORS = new Visitor[0];
+  /**
+   * Marks, when streaming, a node visited with its subtree
+   */
+  private static final Visitor[] SUBTREE_VISITED = new Visitor[0];
+
   private final EngineContext engineContext;
   private final MetricsVisitor metricsVisitor;
+  @Nullable
+  private final RuleProfiler profiler;
+  /**
+   * Validators then rules, the order in which the visitors of a node are called
+   */
+  private final List<Visitor> visitorOrder = new ArrayList<>();
+  /**
+   * Visitors to call and whether the descendants are needed when streaming, by kinds of nodes. Kinds of nodes are
+   * interned, so lookups are fast, and there are only a few hundred combinations of kinds in practice.
+   */
+  private final Map<Set<UastNode.Kind>, Dispatch> dispatchTable = new HashMap<>();
+  /**
+   * Visitors of all the nodes of the file being scanned, see {@link #scan(UastNode, InputFile, List)}
+   */
+  private Visitor[] nodeVisitors = NO_VISITORS;
 
   public Engine(Collection<Check> rules) {
     this(rules, Validator.all());
   }
 
   public Engine(Collection<Check> rules, Collection<Validator> validators) {
-    engineContext = new EngineContext(rules);
+    this(rules, validators, null);
+  }
+
+  /**
+   * @param profiler measures the calls to the visitors, null to disable profiling
+   */
+  public Engine(Collection<Check> rules, Collection<Validator> validators, @Nullable RuleProfiler profiler) {
+    this.profiler = profiler;
+    engineContext = new EngineContext(rules, profiler);
     metricsVisitor = new MetricsVisitor();
     // should this be parameterized in order to switch ON/OFF validation?
     // add validators first, to validate before playing any rule
     validators.forEach(rule -> rule.initialize(engineContext));
     rules.forEach(rule -> rule.initialize(engineContext));
+    visitorOrder.addAll(validators);
+    visitorOrder.addAll(rules);
   }
 
 
   public ScanResult scan(UastNode uast, InputFile inputFile) throws IOException {
-    metricsVisitor.enterFile(uast);
-    engineContext.enterFile(inputFile);
-    visit(uast);
+    return scan(uast, inputFile, Collections.emptyList());
+  }
+
+  /**
+   * @param nodeVisitors visitors of all the nodes of this file whatever their kinds, called after the rules, so that
+   *                     a single walk of the UAST computes everything needed for this file
+   */
+  public ScanResult scan(UastNode uast, InputFile inputFile, List<? extends Visitor> nodeVisitors) throws IOException {
+    enterFile(inputFile, nodeVisitors);
+    try {
+      visit(uast);
+    } finally {
+      this.nodeVisitors = NO_VISITORS;
+    }
     return new ScanResult(engineContext.getIssues(), metricsVisitor.getMetrics());
   }
 
-  private void visit(UastNode uast) {
-    metricsVisitor.visitNode(uast);
-    Set<Visitor> visitors = uast.kinds.stream()
-      .flatMap(kind -> engineContext.registeredVisitors(kind).stream())
-      .collect(Collectors.toSet());
-    for (Visitor visitor : visitors) {
-      visitor.visitNode(uast);
+  /**
+   * Same as {@link #scan(UastNode, InputFile)} while the UAST is read by the given source: only the subtrees needed by the
+   * metrics or by the visitors of their kinds (see {@link Visitor#needsDescendants}) are kept in memory.
+   */
+  public ScanResult scan(UastListener.Source uastSource, InputFile inputFile) throws IOException {
+    return scan(uastSource, inputFile, Collections.emptyList());
+  }
+
+  /**
+   * Same as {@link #scan(UastNode, InputFile, List)} while the UAST is read by the given source, see {@link #scan(UastListener.Source, InputFile)}
+   */
+  public ScanResult scan(UastListener.Source uastSource, InputFile inputFile, List<? extends Visitor> nodeVisitors) throws IOException {
+    enterFile(inputFile, nodeVisitors);
+    try {
+      uastSource.read(new StreamingScan());
+    } finally {
+      this.nodeVisitors = NO_VISITORS;
     }
+    return new ScanResult(engineContext.getIssues(), metricsVisitor.getMetrics());
+  }
+
+  private void enterFile(InputFile inputFile, List<? extends Visitor> nodeVisitors) throws IOException {
+    metricsVisitor.enterFile();
+    if (profiler != null) {
+      profiler.enterFile(inputFile);
+    }
+    engineContext.enterFile(inputFile);
+    for (Visitor nodeVisitor : nodeVisitors) {
+      nodeVisitor.enterFile(inputFile);
+    }
+    this.nodeVisitors = nodeVisitors.toArray(NO_VISITORS);
+  }
+
+  private void visit(UastNode uast) {
+    Visitor[] visitors = dispatch(uast).visitors;
+    visitNode(uast, visitors);
     for (UastNode child : uast.children) {
       visit(child);
     }
+    leaveNode(uast, visitors);
+  }
+
+  private void visitNode(UastNode node, Visitor[] visitors) {
+    metricsVisitor.visitNode(node);
+    for (Visitor visitor : visitors) {
+      visitor.visitNode(node);
+    }
+    for (Visitor nodeVisitor : nodeVisitors) {
+      nodeVisitor.visitNode(node);
+    }
+  }
+
+  private void leaveNode(UastNode node, Visitor[] visitors) {
+    for (Visitor nodeVisitor : nodeVisitors) {
+      nodeVisitor.leaveNode(node);
+    }
     for (Visitor visitor : visitors) {
-      visitor.leaveNode(uast);
+      visitor.leaveNode(node);
+    }
+    metricsVisitor.leaveNode(node);
+  }
+
+  private Dispatch dispatch(UastNode uast) {
+    Dispatch dispatch = dispatchTable.get(uast.kinds);
+    if (dispatch == null) {
+      dispatch = new Dispatch(visitors(uast.kinds), needsDescendants(uast));
+      dispatchTable.put(uast.kinds, dispatch);
+    }
+    return dispatch;
+  }
+
+  private Visitor[] visitors(Set<UastNode.Kind> kinds) {
+    Set<Visitor> registeredVisitors = new HashSet<>();
+    for (UastNode.Kind kind : kinds) {
+      registeredVisitors.addAll(engineContext.registeredVisitors(kind));
+    }
+    if (registeredVisitors.isEmpty()) {
+      return NO_VISITORS;
+    }
+    List<Visitor> visitors = new ArrayList<>(registeredVisitors.size());
+    for (Visitor visitor : visitorOrder) {
+      if (registeredVisitors.remove(visitor)) {
+        visitors.add(visitor);
+      }
+    }
+    // registered by other means than initialization by the engine
+    visitors.addAll(registeredVisitors);
+    if (profiler != null) {
+      visitors.replaceAll(profiler::profiled);
+    }
+    return visitors.toArray(NO_VISITORS);
+  }
+
+  private boolean needsDescendants(UastNode uast) {
+    if (MetricsVisitor.needsDescendants(uast)) {
+      return true;
+    }
+    for (UastNode.Kind kind : uast.kinds) {
+      for (Visitor visitor : engineContext.registeredVisitors(kind)) {
+        if (visitor.needsDescendants(kind)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static class Dispatch {
+    private final Visitor[] visitors;
+    private final boolean needsDescendants;
+
+    private Dispatch(Visitor[] visitors, boolean needsDescendants) {
+      this.visitors = visitors;
+      this.needsDescendants = needsDescendants;
+    }
+  }
+
+  private class StreamingScan implements UastListener {
+
+    /**
+     * Visitors of the nodes being streamed, null for a node whose subtree is expected, {@link #SUBTREE_VISITED} once the
+     * subtree is visited
+     */
+    private final List<Visitor[]> visitorsStack = new ArrayList<>();
+
+    @Override
+    public boolean enterNode(UastNode node) {
+      Dispatch dispatch = dispatch(node);
+      if (dispatch.needsDescendants) {
+        visitorsStack.add(null);
+        return true;
+      }
+      visitNode(node, dispatch.visitors);
+      visitorsStack.add(dispatch.visitors);
+      return false;
+    }
+
+    @Override
+    public void visitSubtree(UastNode node) {
+      int top = visitorsStack.size() - 1;
+      if (visitorsStack.get(top) == null) {
+        visit(node);
+        visitorsStack.set(top, SUBTREE_VISITED);
+      } else {
+        // subtree requested by another listener, the node itself is already visited
+        node.children.forEach(Engine.this::visit);
+      }
+    }
+
+    @Override
+    public void leaveNode(UastNode node) {
+      Visitor[] visitors = visitorsStack.remove(visitorsStack.size() - 1);
+      if (visitors != SUBTREE_VISITED) {
+        Engine.this.leaveNode(node, visitors);
+      }
     }
   }
 
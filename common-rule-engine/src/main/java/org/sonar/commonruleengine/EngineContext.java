@@ -28,6 +28,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import javax.annotation.Nullable;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.commonruleengine.checks.Check;
 import org.sonar.uast.UastNode;
@@ -41,7 +42,17 @@ public class EngineContext {
   private Set<Visitor> visitors = null;
 
   public EngineContext(Collection<Check> visitors) {
-    this.visitors = new HashSet<>(visitors);
+    this(visitors, null);
+  }
+
+  /**
+   * @param profiler measures the calls to "enterFile" of the visitors, null to disable profiling
+   */
+  EngineContext(Collection<Check> visitors, @Nullable RuleProfiler profiler) {
+    this.visitors = new HashSet<>();
+    for (Visitor visitor : visitors) {
+      this.visitors.add(profiler == null ? visitor : profiler.profiled(visitor));
+    }
   }
 
   public void register(UastNode.Kind kind, Visitor visitor) {
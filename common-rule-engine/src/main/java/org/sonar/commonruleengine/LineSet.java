@@ -0,0 +1,129 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.commonruleengine;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Set of line numbers stored as a growable bitmap, one bit per line, so that adding the lines of every token of a file
+ * neither boxes them nor allocates an entry per line like a {@code Set<Integer>}.
+ */
+public class LineSet {
+
+  private static final int WORD_SHIFT = 6;
+  private static final long[] EMPTY = new long[0];
+
+  private long[] words = EMPTY;
+  private int size = 0;
+
+  public static LineSet of(int... lines) {
+    LineSet lineSet = new LineSet();
+    for (int line : lines) {
+      lineSet.add(line);
+    }
+    return lineSet;
+  }
+
+  public void add(int line) {
+    if (line < 0) {
+      throw new IllegalArgumentException("Negative line number: " + line);
+    }
+    int wordIndex = line >>> WORD_SHIFT;
+    ensureCapacity(wordIndex);
+    long mask = 1L << line;
+    if ((words[wordIndex] & mask) == 0) {
+      words[wordIndex] |= mask;
+      size++;
+    }
+  }
+
+  /**
+   * Adds the lines from {@code firstLine} to {@code lastLine}, both inclusive
+   */
+  public void addRange(int firstLine, int lastLine) {
+    for (int line = firstLine; line <= lastLine; line++) {
+      add(line);
+    }
+  }
+
+  public boolean contains(int line) {
+    int wordIndex = line >>> WORD_SHIFT;
+    return line >= 0 && wordIndex < words.length && (words[wordIndex] & (1L << line)) != 0;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Calls {@code action} with each line of the set, in ascending order
+   */
+  public void forEach(IntConsumer action) {
+    for (int wordIndex = 0; wordIndex < words.length; wordIndex++) {
+      long word = words[wordIndex];
+      while (word != 0) {
+        action.accept((wordIndex << WORD_SHIFT) + Long.numberOfTrailingZeros(word));
+        word &= word - 1;
+      }
+    }
+  }
+
+  /**
+   * @return the lines of the set, in ascending order
+   */
+  public int[] toArray() {
+    int[] lines = new int[size];
+    int[] index = {0};
+    forEach(line -> lines[index[0]++] = line);
+    return lines;
+  }
+
+  private void ensureCapacity(int wordIndex) {
+    if (wordIndex >= words.length) {
+      words = Arrays.copyOf(words, Math.max(wordIndex + 1, words.length * 2));
+    }
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    return Arrays.equals(toArray(), ((LineSet) o).toArray());
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(toArray());
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.toString(toArray());
+  }
+}
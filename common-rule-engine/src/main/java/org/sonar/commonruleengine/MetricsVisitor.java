@@ -19,26 +19,71 @@
  */
 package org.sonar.commonruleengine;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Set;
-import java.util.stream.IntStream;
 import javax.annotation.Nullable;
 import org.sonar.uast.UastNode;
+import org.sonar.uast.helpers.BinaryExpressionLike;
+import org.sonar.uast.helpers.BranchLike;
 
+/**
+ * Computes the metrics of a file while the rule engine walks its UAST. The cognitive complexity of the file is
+ * accumulated node by node, with the same increments as {@link CognitiveComplexity#calculateFileComplexity}: the
+ * nesting is the number of enclosing nodes which increase it, and the sequences of logical operators are counted when
+ * visiting the outermost binary expression of each sequence.
+ */
 public class MetricsVisitor {
 
   private Metrics metrics;
+  private int functionDepth;
+  /**
+   * Nodes of the current function increasing the nesting of their descendants
+   */
+  private final Deque<UastNode> nestingNodes = new ArrayDeque<>();
+  /**
+   * Binary expressions of the current function already counted in the sequence of logical operators of an ancestor
+   */
+  private final Set<UastNode> countedLogicalExpressions = Collections.newSetFromMap(new IdentityHashMap<>());
+  /**
+   * Labeled jump whose subtree is not taken into account
+   */
+  @Nullable
+  private UastNode skippedBranch;
 
-  public void enterFile(UastNode uast) {
+  public void enterFile() {
     metrics = new Metrics();
-    metrics.cognitiveComplexity = CognitiveComplexity.calculateFileComplexity(uast).value();
+    functionDepth = 0;
+    resetComplexity();
+  }
+
+  private void resetComplexity() {
+    nestingNodes.clear();
+    countedLogicalExpressions.clear();
+    skippedBranch = null;
+  }
+
+  /**
+   * @return true for the nodes to visit with their descendants: their first token is needed, or they are functions
+   */
+  static boolean needsDescendants(UastNode node) {
+    return node.is(UastNode.Kind.FUNCTION, UastNode.Kind.STATEMENT, UastNode.Kind.EXPRESSION, UastNode.Kind.CASE, UastNode.Kind.LABEL);
   }
 
   public void visitNode(UastNode node) {
     if (node.is(UastNode.Kind.CLASS)) {
       metrics.numberOfClasses++;
     }
+    if (skippedBranch == null) {
+      visitComplexity(node);
+    }
     if (node.is(UastNode.Kind.FUNCTION)) {
       metrics.numberOfFunctions++;
+      functionDepth++;
     }
     if (node.is(UastNode.Kind.STATEMENT)) {
       metrics.numberOfStatements++;
@@ -56,13 +101,74 @@ public class MetricsVisitor {
     if (node.is(UastNode.Kind.EOF)) {
       return;
     }
-    Set<Integer> lineNumbers = node.is(UastNode.Kind.COMMENT) ? metrics.commentLines : metrics.linesOfCode;
+    LineSet lineNumbers = node.is(UastNode.Kind.COMMENT) ? metrics.commentLines : metrics.linesOfCode;
     addLines(lineNumbers, token);
   }
 
-  private static void addLines(Set<Integer> lineNumbers, @Nullable UastNode.Token token) {
+  private static void addLines(LineSet lineNumbers, @Nullable UastNode.Token token) {
     if (token != null) {
-      IntStream.range(token.line, token.endLine + 1).forEach(lineNumbers::add);
+      lineNumbers.addRange(token.line, token.endLine);
+    }
+  }
+
+  public void leaveNode(UastNode node) {
+    if (node.is(UastNode.Kind.FUNCTION)) {
+      functionDepth--;
+    }
+    if (node == skippedBranch) {
+      skippedBranch = null;
+    } else if (node == nestingNodes.peek()) {
+      nestingNodes.pop();
+    }
+  }
+
+  /**
+   * Called before {@link #functionDepth} counts the node
+   */
+  private void visitComplexity(UastNode node) {
+    if (node.is(UastNode.Kind.FUNCTION)) {
+      if (functionDepth == 0) {
+        resetComplexity();
+      } else {
+        nestingNodes.push(node);
+      }
+    } else if (functionDepth == 0 || countedLogicalExpressions.contains(node)) {
+      // not taken into account
+    } else if (node.is(UastNode.Kind.ELSE)) {
+      metrics.cognitiveComplexity++;
+    } else if (node.is(UastNode.Kind.IF, UastNode.Kind.SWITCH, UastNode.Kind.LOOP)) {
+      metrics.cognitiveComplexity += nestingNodes.size() + 1;
+      nestingNodes.push(node);
+    } else if (isLabeledBranch(node)) {
+      metrics.cognitiveComplexity++;
+      skippedBranch = node;
+    } else if (node.is(UastNode.Kind.BINARY_EXPRESSION)) {
+      visitLogicalOperators(node);
+    } else if (node.is(UastNode.Kind.FUNCTION_LITERAL)) {
+      nestingNodes.push(node);
+    }
+  }
+
+  private static boolean isLabeledBranch(UastNode node) {
+    BranchLike branch = BranchLike.from(node);
+    return branch != null && branch.label() != null;
+  }
+
+  private void visitLogicalOperators(UastNode node) {
+    List<BinaryExpressionLike> sequence = new ArrayList<>();
+    CognitiveComplexity.flattenBinaryExpressions(node, sequence);
+    UastNode.Kind lastKind = null;
+    for (BinaryExpressionLike binaryExpression : sequence) {
+      UastNode.Kind kind = CognitiveComplexity.logicalBinaryExpressionKind(binaryExpression);
+      if (kind != null) {
+        if (binaryExpression.node() != node) {
+          countedLogicalExpressions.add(binaryExpression.node());
+        }
+        if (kind != lastKind) {
+          metrics.cognitiveComplexity++;
+        }
+      }
+      lastKind = kind;
     }
   }
 
@@ -0,0 +1,222 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.commonruleengine;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.uast.UastNode;
+import org.sonar.uast.Visitor;
+
+/**
+ * Measures the time spent, and optionally the bytes allocated, by each visitor of an {@link Engine}, aggregated by
+ * visitor class and by file. Calls to "enterFile", "visitNode" and "leaveNode" are measured by wrapping the visitors, so that
+ * engines without profiler do not pay for it.
+ * <p>
+ * This class is not thread-safe: each engine has its own profiler, profilers of several engines are combined with {@link #merge}.
+ */
+public class RuleProfiler {
+
+  private static final Comparator<Measure> SLOWEST_FIRST = Comparator.comparingLong(Measure::nanos).reversed()
+    .thenComparing(Measure::name);
+
+  @Nullable
+  private final com.sun.management.ThreadMXBean threadMXBean;
+  private final Map<Visitor, Visitor> profiledVisitors = new IdentityHashMap<>();
+  private final Map<String, Measure> ruleMeasures = new HashMap<>();
+  private final Map<String, Measure> fileMeasures = new HashMap<>();
+  private Measure currentFile = new Measure("");
+
+  /**
+   * @param measureAllocations when true, bytes allocated by the visitors are measured too, if supported by the JVM
+   */
+  public RuleProfiler(boolean measureAllocations) {
+    threadMXBean = measureAllocations ? allocationCounter() : null;
+  }
+
+  @CheckForNull
+  private static com.sun.management.ThreadMXBean allocationCounter() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+      com.sun.management.ThreadMXBean allocationCounter = (com.sun.management.ThreadMXBean) bean;
+      allocationCounter.setThreadAllocatedMemoryEnabled(true);
+      return allocationCounter;
+    }
+    return null;
+  }
+
+  public boolean measuresAllocations() {
+    return threadMXBean != null;
+  }
+
+  Visitor profiled(Visitor visitor) {
+    return profiledVisitors.computeIfAbsent(visitor, v -> new ProfiledVisitor(v, ruleMeasures.computeIfAbsent(name(v), Measure::new)));
+  }
+
+  void enterFile(InputFile inputFile) {
+    currentFile = fileMeasures.computeIfAbsent(inputFile.toString(), Measure::new);
+  }
+
+  /**
+   * Adds the measures of the other profiler to the measures of this one
+   */
+  public void merge(RuleProfiler other) {
+    other.ruleMeasures.values().forEach(measure -> ruleMeasures.computeIfAbsent(measure.name, Measure::new).add(measure));
+    other.fileMeasures.values().forEach(measure -> fileMeasures.computeIfAbsent(measure.name, Measure::new).add(measure));
+  }
+
+  /**
+   * @return measures by visitor class, slowest first
+   */
+  public List<Measure> ruleMeasures() {
+    return sorted(ruleMeasures);
+  }
+
+  /**
+   * @return measures of all the visitors by file, slowest first
+   */
+  public List<Measure> fileMeasures() {
+    return sorted(fileMeasures);
+  }
+
+  private static List<Measure> sorted(Map<String, Measure> measures) {
+    List<Measure> result = new ArrayList<>(measures.values());
+    result.sort(SLOWEST_FIRST);
+    return result;
+  }
+
+  private static String name(Visitor visitor) {
+    String simpleName = visitor.getClass().getSimpleName();
+    return simpleName.isEmpty() ? visitor.getClass().getName() : simpleName;
+  }
+
+  private long allocatedBytes() {
+    return threadMXBean == null ? 0L : threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  private void record(Measure ruleMeasure, long startNanos, long startAllocatedBytes) {
+    long nanos = System.nanoTime() - startNanos;
+    long allocatedBytes = allocatedBytes() - startAllocatedBytes;
+    ruleMeasure.add(1, nanos, allocatedBytes);
+    currentFile.add(1, nanos, allocatedBytes);
+  }
+
+  public static class Measure {
+    private final String name;
+    private long calls;
+    private long nanos;
+    private long allocatedBytes;
+
+    private Measure(String name) {
+      this.name = name;
+    }
+
+    private void add(long calls, long nanos, long allocatedBytes) {
+      this.calls += calls;
+      this.nanos += nanos;
+      this.allocatedBytes += allocatedBytes;
+    }
+
+    private void add(Measure other) {
+      add(other.calls, other.nanos, other.allocatedBytes);
+    }
+
+    /**
+     * @return simple name of the visitor class, or file
+     */
+    public String name() {
+      return name;
+    }
+
+    public long calls() {
+      return calls;
+    }
+
+    public long nanos() {
+      return nanos;
+    }
+
+    /**
+     * @return 0 when allocations are not measured
+     */
+    public long allocatedBytes() {
+      return allocatedBytes;
+    }
+  }
+
+  /**
+   * Delegates to the profiled visitor. It is not initialized, so it is not registered for any kind of node.
+   */
+  private class ProfiledVisitor extends Visitor {
+    private final Visitor visitor;
+    private final Measure measure;
+
+    private ProfiledVisitor(Visitor visitor, Measure measure) {
+      this.visitor = visitor;
+      this.measure = measure;
+    }
+
+    @Override
+    public void enterFile(InputFile inputFile) throws IOException {
+      long startNanos = System.nanoTime();
+      long startAllocatedBytes = allocatedBytes();
+      try {
+        visitor.enterFile(inputFile);
+      } finally {
+        record(measure, startNanos, startAllocatedBytes);
+      }
+    }
+
+    @Override
+    public void visitNode(UastNode node) {
+      long startNanos = System.nanoTime();
+      long startAllocatedBytes = allocatedBytes();
+      try {
+        visitor.visitNode(node);
+      } finally {
+        record(measure, startNanos, startAllocatedBytes);
+      }
+    }
+
+    @Override
+    public boolean needsDescendants(UastNode.Kind kind) {
+      return visitor.needsDescendants(kind);
+    }
+
+    @Override
+    public void leaveNode(UastNode node) {
+      long startNanos = System.nanoTime();
+      long startAllocatedBytes = allocatedBytes();
+      try {
+        visitor.leaveNode(node);
+      } finally {
+        record(measure, startNanos, startAllocatedBytes);
+      }
+    }
+  }
+}
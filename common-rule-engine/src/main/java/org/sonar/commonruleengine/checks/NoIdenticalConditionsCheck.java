@@ -20,7 +20,9 @@
 package org.sonar.commonruleengine.checks;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import org.sonar.check.Rule;
 import org.sonar.commonruleengine.Issue;
 import org.sonar.uast.SyntacticEquivalence;
@@ -53,15 +55,17 @@ public class NoIdenticalConditionsCheck extends Check {
       return;
     }
     List<UastNode> caseNodes = switchLike.caseNodes();
-    List<UastNode> allConditions = new ArrayList<>();
+    // previous conditions bucketed by structural hash, only the ones of the same bucket can be equivalent
+    Map<Integer, List<UastNode>> previousConditions = new HashMap<>();
     for (UastNode caseNode : caseNodes) {
       CaseLike caseLike = CaseLike.from(caseNode);
       List<UastNode> conditions = caseLike.conditions();
       for (UastNode condition : conditions) {
-        for (UastNode prevCondition : allConditions) {
+        List<UastNode> candidates = previousConditions.computeIfAbsent(condition.structuralHash(), hash -> new ArrayList<>());
+        for (UastNode prevCondition : candidates) {
           checkConditions(condition, prevCondition);
         }
-        allConditions.add(condition);
+        candidates.add(condition);
       }
     }
   }
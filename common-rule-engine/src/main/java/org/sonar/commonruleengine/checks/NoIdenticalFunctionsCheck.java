@@ -20,10 +20,14 @@
 package org.sonar.commonruleengine.checks;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.check.Rule;
 import org.sonar.commonruleengine.Issue;
+import org.sonar.uast.SyntacticEquivalence;
 import org.sonar.uast.UastNode;
 import org.sonar.uast.helpers.FunctionLike;
 
@@ -31,11 +35,20 @@ import static org.sonar.uast.SyntacticEquivalence.areEquivalent;
 
 /**
  * Rule https://jira.sonarsource.com/browse/RSPEC-4144
+ * <p>
+ * The functions of a file or class are indexed by the structural hashes of their body, parameters and result list, so
+ * that a function is only compared with the previous functions having the same hash.
+ * <p>
+ * Identical functions in different files are not reported by the check, which only sees one file at a time. When
+ * {@link #collectFingerprints() enabled}, the check collects a 64-bit fingerprint of each function, see
+ * {@link SyntacticEquivalence#fingerprint}, so that they can be compared across files without keeping the UASTs.
  */
 @Rule(key = "S4144")
 public class NoIdenticalFunctionsCheck extends Check {
 
-  private List<FunctionLike> functions = new ArrayList<>();
+  private final Map<Integer, List<Candidate>> functionsByHash = new HashMap<>();
+  private boolean collectFingerprints = false;
+  private final List<FunctionFingerprint> fingerprints = new ArrayList<>();
 
   public NoIdenticalFunctionsCheck() {
     super(UastNode.Kind.FUNCTION, UastNode.Kind.CLASS);
@@ -43,13 +56,25 @@ public class NoIdenticalFunctionsCheck extends Check {
 
   @Override
   public void enterFile(InputFile inputFile) {
-    functions.clear();
+    functionsByHash.clear();
+    fingerprints.clear();
+  }
+
+  public void collectFingerprints() {
+    collectFingerprints = true;
+  }
+
+  /**
+   * @return the fingerprints of the functions of the last scanned file, when collected
+   */
+  public List<FunctionFingerprint> fingerprints() {
+    return fingerprints;
   }
 
   @Override
   public void visitNode(UastNode node) {
     if (node.is(UastNode.Kind.CLASS)) {
-      functions.clear();
+      functionsByHash.clear();
     }
     if (node.is(FunctionLike.KIND)) {
       FunctionLike thisFunction = FunctionLike.from(node);
@@ -59,17 +84,80 @@ public class NoIdenticalFunctionsCheck extends Check {
       if (thisFunction.body().getChildren(UastNode.Kind.STATEMENT).size() < 2) {
         return;
       }
-      for (FunctionLike function : functions) {
-        if (areEquivalent(thisFunction.body(), function.body())
-          && areEquivalent(thisFunction.parameters(), function.parameters())
-          && areEquivalent(thisFunction.resultList(), function.resultList())) {
+      Candidate candidate = new Candidate(thisFunction);
+      List<Candidate> sameHash = functionsByHash.computeIfAbsent(candidate.hash(), hash -> new ArrayList<>());
+      for (Candidate previous : sameHash) {
+        if (candidate.isIdenticalTo(previous)) {
+          FunctionLike function = previous.function;
           reportIssue(thisFunction.name(),
             "Function is identical with function on line " + function.node().firstToken().line + ".",
             new Issue.Message(function.name(), "Original implementation"));
           break;
         }
       }
-      functions.add(thisFunction);
+      sameHash.add(candidate);
+      if (collectFingerprints && !candidate.hasUnsupportedNode()) {
+        fingerprints.add(new FunctionFingerprint(candidate.fingerprint(), thisFunction));
+      }
+    }
+  }
+
+  public static class FunctionFingerprint {
+
+    public final long value;
+    public final FunctionLike function;
+
+    private FunctionFingerprint(long value, FunctionLike function) {
+      this.value = value;
+      this.function = function;
+    }
+  }
+
+  private static class Candidate {
+
+    private final FunctionLike function;
+    private final List<UastNode> parameters;
+    private final List<UastNode> resultList;
+
+    private Candidate(FunctionLike function) {
+      this.function = function;
+      this.parameters = function.parameters();
+      this.resultList = function.resultList();
+    }
+
+    private int hash() {
+      int hash = function.body().structuralHash();
+      hash = 31 * hash + structuralHash(parameters);
+      return 31 * hash + structuralHash(resultList);
+    }
+
+    private static int structuralHash(List<UastNode> nodes) {
+      int hash = 1;
+      for (UastNode node : nodes) {
+        hash = 31 * hash + node.structuralHash();
+      }
+      return hash;
+    }
+
+    private long fingerprint() {
+      long fingerprint = SyntacticEquivalence.fingerprint(Collections.singletonList(function.body()));
+      fingerprint = 31 * fingerprint + SyntacticEquivalence.fingerprint(parameters);
+      return 31 * fingerprint + SyntacticEquivalence.fingerprint(resultList);
+    }
+
+    /**
+     * Unsupported nodes are never equivalent, so such functions are never identical
+     */
+    private boolean hasUnsupportedNode() {
+      return function.body().hasDescendant(UastNode.Kind.UNSUPPORTED)
+        || parameters.stream().anyMatch(node -> node.hasDescendant(UastNode.Kind.UNSUPPORTED))
+        || resultList.stream().anyMatch(node -> node.hasDescendant(UastNode.Kind.UNSUPPORTED));
+    }
+
+    private boolean isIdenticalTo(Candidate other) {
+      return areEquivalent(function.body(), other.function.body())
+        && areEquivalent(parameters, other.parameters)
+        && areEquivalent(resultList, other.resultList);
     }
   }
 }
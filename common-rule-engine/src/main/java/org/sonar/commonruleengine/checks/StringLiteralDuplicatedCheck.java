@@ -60,6 +60,12 @@ public class StringLiteralDuplicatedCheck extends Check {
     super.enterFile(inputFile);
   }
 
+  @Override
+  public boolean needsDescendants(UastNode.Kind kind) {
+    // the compilation unit is only used to report issues when leaving the file
+    return kind != UastNode.Kind.COMPILATION_UNIT;
+  }
+
   @Override
   public void visitNode(UastNode node) {
     // Ignore Tags
@@ -20,10 +20,13 @@
 package org.sonar.commonruleengine.checks;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.check.Rule;
@@ -69,14 +72,10 @@ public class TwoBranchesAreIdenticalCheck extends Check {
       .map(CaseLike::body)
       .collect(Collectors.toList());
 
+    int[] duplicated = firstDuplicated(caseBodies, TwoBranchesAreIdenticalCheck::isBigEnough);
     for (int i = 1; i < caseBodies.size(); i++) {
-      for (int j = 0; j < i; j++) {
-        UastNode duplicating = caseBodies.get(i);
-        UastNode duplicated = caseBodies.get(j);
-        if (duplicated != null && SyntacticEquivalence.areEquivalent(duplicating, duplicated) && isBigEnough(duplicated)) {
-          reportIssue(caseNodes.get(i), caseNodes.get(j), "case");
-          break;
-        }
+      if (duplicated[i] >= 0) {
+        reportIssue(caseNodes.get(i), caseNodes.get(duplicated[i]), "case");
       }
     }
   }
@@ -90,16 +89,40 @@ public class TwoBranchesAreIdenticalCheck extends Check {
     // "getIfBranches" also marks chained if-s as visited
     List<UastNode> ifBlocks = getIfBranches(topIfStatement);
 
+    int[] duplicated = firstDuplicated(ifBlocks, TwoBranchesAreIdenticalCheck::isBigEnoughBlock);
     for (int i = 1; i < ifBlocks.size(); i++) {
-      for (int j = 0; j < i; j++) {
-        UastNode duplicating = ifBlocks.get(i);
-        UastNode duplicated = ifBlocks.get(j);
-        if (SyntacticEquivalence.areEquivalent(duplicating, duplicated) && isBigEnoughBlock(duplicated)) {
-          reportIssue(duplicating, duplicated, "branch");
+      if (duplicated[i] >= 0) {
+        reportIssue(ifBlocks.get(i), ifBlocks.get(duplicated[i]), "branch");
+      }
+    }
+  }
+
+  /**
+   * Previous branches are bucketed by structural hash, so that a branch is only compared with the ones which may be
+   * equivalent.
+   *
+   * @return for each branch, the index of the first previous branch which is equivalent and big enough, or -1
+   */
+  private static int[] firstDuplicated(List<UastNode> branches, Predicate<UastNode> isBigEnough) {
+    int[] duplicated = new int[branches.size()];
+    Map<Integer, List<Integer>> previousBranches = new HashMap<>();
+    for (int i = 0; i < branches.size(); i++) {
+      duplicated[i] = -1;
+      UastNode duplicating = branches.get(i);
+      if (duplicating == null) {
+        continue;
+      }
+      List<Integer> candidates = previousBranches.computeIfAbsent(duplicating.structuralHash(), hash -> new ArrayList<>());
+      for (int j : candidates) {
+        UastNode candidate = branches.get(j);
+        if (SyntacticEquivalence.areEquivalent(duplicating, candidate) && isBigEnough.test(candidate)) {
+          duplicated[i] = j;
           break;
         }
       }
+      candidates.add(i);
     }
+    return duplicated;
   }
 
   private List<UastNode> getIfBranches(IfLike topIfStatement) {
@@ -0,0 +1,233 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.uast;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+
+/**
+ * Reads the binary UAST format written by uast-generator-go when called with "-b", see uast-generator-go/binary.go.
+ * Kind names and strings are resolved once per document through their tables, nodes only refer to table indexes.
+ * The children of a node are written last, so nodes can be notified to a {@link UastListener} before their children are read.
+ */
+class BinaryUnmarshaller {
+
+  static final int FORMAT_VERSION = 1;
+
+  private static final Map<String, UastNode.Kind> KIND_MAP = Arrays.stream(UastNode.Kind.values())
+    .collect(Collectors.toMap(Enum::name, Function.identity()));
+
+  private final byte[] data;
+  private int position;
+  private UastNode.Kind[] kinds;
+  private String[] strings;
+  private int lastLine = 0;
+  private int lastColumn = 0;
+
+  private BinaryUnmarshaller(byte[] data) {
+    this.data = data;
+  }
+
+  static UastNode unmarshal(byte[] data) throws IOException {
+    BinaryUnmarshaller unmarshaller = new BinaryUnmarshaller(data);
+    unmarshaller.readHeader();
+    UastNode root = unmarshaller.readNode();
+    unmarshaller.checkEnd();
+    return root;
+  }
+
+  static void unmarshal(byte[] data, UastListener listener) throws IOException {
+    BinaryUnmarshaller unmarshaller = new BinaryUnmarshaller(data);
+    unmarshaller.readHeader();
+    unmarshaller.readNode(null, listener);
+    unmarshaller.checkEnd();
+  }
+
+  private void readHeader() throws IOException {
+    int version = readByte();
+    if (version != FORMAT_VERSION) {
+      throw new IOException("Unsupported binary UAST format version: " + version);
+    }
+    kinds = new UastNode.Kind[readSize()];
+    for (int i = 0; i < kinds.length; i++) {
+      // unknown kinds are ignored, like in the json format
+      kinds[i] = KIND_MAP.get(readString());
+    }
+    strings = new String[readSize()];
+    for (int i = 0; i < strings.length; i++) {
+      strings[i] = readString();
+    }
+  }
+
+  private void checkEnd() throws IOException {
+    if (position != data.length) {
+      throw new IOException("Unexpected data after the binary UAST at position " + position);
+    }
+  }
+
+  private UastNode readNode() throws IOException {
+    NodeHeader header = readNodeHeader();
+    List<UastNode> children;
+    if (header.childCount == 0) {
+      children = Collections.emptyList();
+    } else {
+      children = new ArrayList<>(header.childCount);
+      for (int i = 0; i < header.childCount; i++) {
+        children.add(readNode());
+      }
+    }
+    return new UastNode(header.kinds, header.nativeNode, header.token, children);
+  }
+
+  private void readNode(@Nullable UastNode parent, UastListener listener) throws IOException {
+    NodeHeader header = readNodeHeader();
+    UastNode node = new UastNode(header.kinds, header.nativeNode, header.token, Collections.emptyList());
+    node.setParent(parent);
+    boolean needsSubtree = listener.enterNode(node);
+    if (header.childCount == 0) {
+      if (needsSubtree) {
+        listener.visitSubtree(node);
+      }
+    } else if (needsSubtree) {
+      List<UastNode> children = new ArrayList<>(header.childCount);
+      for (int i = 0; i < header.childCount; i++) {
+        children.add(readNode());
+      }
+      node = new UastNode(header.kinds, header.nativeNode, header.token, children);
+      node.setParent(parent);
+      listener.visitSubtree(node);
+    } else {
+      for (int i = 0; i < header.childCount; i++) {
+        readNode(node, listener);
+      }
+    }
+    listener.leaveNode(node);
+  }
+
+  private NodeHeader readNodeHeader() throws IOException {
+    int kindCount = readSize();
+    Set<UastNode.Kind> nodeKinds = kindCount == 0 ? Collections.emptySet() : EnumSet.noneOf(UastNode.Kind.class);
+    for (int i = 0; i < kindCount; i++) {
+      UastNode.Kind kind = kinds[readIndex(kinds.length)];
+      if (kind != null) {
+        nodeKinds.add(kind);
+      }
+    }
+    String nativeNode = strings[readIndex(strings.length)];
+    UastNode.Token token = null;
+    int tokenValue = readIndex(strings.length + 1);
+    if (tokenValue != 0) {
+      int line = lastLine + readVarint();
+      int column = readVarint();
+      if (line == lastLine) {
+        column += lastColumn;
+      }
+      lastLine = line;
+      lastColumn = column;
+      token = new UastNode.Token(line, column, strings[tokenValue - 1]);
+    }
+    return new NodeHeader(nodeKinds, nativeNode, token, readSize());
+  }
+
+  private String readString() throws IOException {
+    int length = readSize();
+    if (length > data.length - position) {
+      throw unexpectedEnd();
+    }
+    String value = new String(data, position, length, StandardCharsets.UTF_8);
+    position += length;
+    return value;
+  }
+
+  private int readIndex(int tableSize) throws IOException {
+    int index = readSize();
+    if (index >= tableSize) {
+      throw new IOException("Invalid table index " + index + " at position " + position);
+    }
+    return index;
+  }
+
+  private int readSize() throws IOException {
+    long value = readUvarint();
+    if (value > Integer.MAX_VALUE) {
+      throw new IOException("Invalid size " + value + " at position " + position);
+    }
+    return (int) value;
+  }
+
+  /**
+   * Signed varints are zigzag encoded, like Go "encoding/binary" PutVarint
+   */
+  private int readVarint() throws IOException {
+    long value = readUvarint();
+    return (int) ((value >>> 1) ^ -(value & 1));
+  }
+
+  private long readUvarint() throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = readByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Invalid varint at position " + position);
+  }
+
+  private int readByte() throws IOException {
+    if (position >= data.length) {
+      throw unexpectedEnd();
+    }
+    return data[position++] & 0xFF;
+  }
+
+  private static IOException unexpectedEnd() {
+    return new IOException("Unexpected end of binary UAST");
+  }
+
+  /**
+   * Everything written before the children of a node
+   */
+  private static class NodeHeader {
+    private final Set<UastNode.Kind> kinds;
+    private final String nativeNode;
+    @Nullable
+    private final UastNode.Token token;
+    private final int childCount;
+
+    private NodeHeader(Set<UastNode.Kind> kinds, String nativeNode, @Nullable UastNode.Token token, int childCount) {
+      this.kinds = kinds;
+      this.nativeNode = nativeNode;
+      this.token = token;
+      this.childCount = childCount;
+    }
+  }
+}
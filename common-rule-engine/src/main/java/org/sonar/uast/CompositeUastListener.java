@@ -0,0 +1,50 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.uast;
+
+import java.util.List;
+
+class CompositeUastListener implements UastListener {
+
+  private final List<UastListener> listeners;
+
+  CompositeUastListener(List<UastListener> listeners) {
+    this.listeners = listeners;
+  }
+
+  @Override
+  public boolean enterNode(UastNode node) {
+    boolean needsSubtree = false;
+    for (UastListener listener : listeners) {
+      needsSubtree |= listener.enterNode(node);
+    }
+    return needsSubtree;
+  }
+
+  @Override
+  public void visitSubtree(UastNode node) {
+    listeners.forEach(listener -> listener.visitSubtree(node));
+  }
+
+  @Override
+  public void leaveNode(UastNode node) {
+    listeners.forEach(listener -> listener.leaveNode(node));
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.uast;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Immutable set of kinds stored as a bitmask, one bit per {@link UastNode.Kind} ordinal. Nodes only hold sets closed under
+ * {@link UastNode.Kind#extendedKinds()}.
+ * <p>
+ * Sets are interned: there is a single instance per combination of kinds, and the generators only produce a few hundred
+ * combinations. Nodes share them, and maps keyed by the kinds of a node (like the dispatch table of the rule engine)
+ * are looked up by identity with a cached hash code.
+ */
+final class KindSet extends AbstractSet<UastNode.Kind> {
+
+  private static final ConcurrentMap<KindSet, KindSet> INTERNED = new ConcurrentHashMap<>();
+
+  private final long[] words;
+  private final int size;
+  private final int hashCode;
+
+  private KindSet(long[] words) {
+    this.words = words;
+    int count = 0;
+    for (long word : words) {
+      count += Long.bitCount(word);
+    }
+    this.size = count;
+    this.hashCode = super.hashCode();
+  }
+
+  static KindSet of(Iterable<UastNode.Kind> kinds) {
+    long[] words = new long[Universe.WORDS];
+    for (UastNode.Kind kind : kinds) {
+      words[kind.ordinal() >>> 6] |= 1L << kind.ordinal();
+    }
+    return intern(words);
+  }
+
+  private static KindSet intern(long[] words) {
+    KindSet kindSet = new KindSet(words);
+    KindSet interned = INTERNED.putIfAbsent(kindSet, kindSet);
+    return interned == null ? kindSet : interned;
+  }
+
+  /**
+   * @return the given kinds and their extended kinds
+   */
+  static KindSet closureOf(Collection<UastNode.Kind> kinds) {
+    if (kinds instanceof KindSet) {
+      return (KindSet) kinds;
+    }
+    if (kinds.isEmpty()) {
+      return Universe.EMPTY;
+    }
+    if (kinds.size() == 1) {
+      return kinds.iterator().next().closure();
+    }
+    long[] words = new long[Universe.WORDS];
+    for (UastNode.Kind kind : kinds) {
+      long[] closure = kind.closure().words;
+      for (int i = 0; i < words.length; i++) {
+        words[i] |= closure[i];
+      }
+    }
+    return intern(words);
+  }
+
+  boolean contains(UastNode.Kind kind) {
+    int ordinal = kind.ordinal();
+    return (words[ordinal >>> 6] & (1L << ordinal)) != 0;
+  }
+
+  @Override
+  public boolean contains(Object object) {
+    return object instanceof UastNode.Kind && contains((UastNode.Kind) object);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public Iterator<UastNode.Kind> iterator() {
+    return new Iterator<UastNode.Kind>() {
+      private int next = nextOrdinal(0);
+
+      @Override
+      public boolean hasNext() {
+        return next >= 0;
+      }
+
+      @Override
+      public UastNode.Kind next() {
+        if (next < 0) {
+          throw new NoSuchElementException();
+        }
+        UastNode.Kind kind = Universe.KINDS[next];
+        next = nextOrdinal(next + 1);
+        return kind;
+      }
+    };
+  }
+
+  private int nextOrdinal(int from) {
+    int wordIndex = from >>> 6;
+    if (wordIndex >= words.length) {
+      return -1;
+    }
+    long word = words[wordIndex] & (-1L << from);
+    while (true) {
+      if (word != 0) {
+        return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+      }
+      wordIndex++;
+      if (wordIndex == words.length) {
+        return -1;
+      }
+      word = words[wordIndex];
+    }
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (other instanceof KindSet) {
+      return Arrays.equals(words, ((KindSet) other).words);
+    }
+    return super.equals(other);
+  }
+
+  /**
+   * Same value as any other set of the same kinds, as required by {@link java.util.Set#hashCode()}
+   */
+  @Override
+  public int hashCode() {
+    return hashCode;
+  }
+
+  private static final class Universe {
+    private static final UastNode.Kind[] KINDS = UastNode.Kind.values();
+    private static final int WORDS = (KINDS.length + 63) >>> 6;
+    private static final KindSet EMPTY = intern(new long[WORDS]);
+  }
+}
@@ -26,21 +26,36 @@ import javax.annotation.Nullable;
 
 public final class SyntacticEquivalence {
 
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+  // outside of the range of chars, so that the structure is not confused with token values
+  private static final int NODE_START = 0x10000;
+  private static final int NODE_END = 0x10001;
+  private static final int TOKEN_START = 0x10002;
+
   private SyntacticEquivalence() {
     // utility class
   }
 
+  /**
+   * Nodes are equivalent when they have the same token values and equivalent children, comments excluded. Subtrees
+   * with different {@link UastNode#structuralHash() structural hashes} are not compared.
+   */
   public static boolean areEquivalent(@Nullable UastNode node1, @Nullable UastNode node2) {
     if (node1 == null && node2 == null) {
       return true;
     }
-    if (node1 == null || node2 == null) {
+    if (node1 == null || node2 == null || node1.structuralHash() != node2.structuralHash()) {
       return false;
     }
-    if (node1.token == null && node2.token != null) {
+    return compare(node1, node2);
+  }
+
+  private static boolean compare(UastNode node1, UastNode node2) {
+    if ((node1.token == null) != (node2.token == null)) {
       return false;
     }
-    if (node2.token != null && !node1.token.value.equals(node2.token.value)) {
+    if (node1.token != null && !node1.token.value.equals(node2.token.value)) {
       return false;
     }
     if (node1.is(UastNode.Kind.UNSUPPORTED) || node2.is(UastNode.Kind.UNSUPPORTED)) {
@@ -54,7 +69,7 @@ public final class SyntacticEquivalence {
     Iterator<UastNode> child1 = list1.iterator();
     Iterator<UastNode> child2 = list2.iterator();
     while (child1.hasNext()) {
-      if (!areEquivalent(child1.next(), child2.next())) {
+      if (!compare(child1.next(), child2.next())) {
         return false;
       }
     }
@@ -75,6 +90,40 @@ public final class SyntacticEquivalence {
     return true;
   }
 
+  /**
+   * 64-bit FNV-1a hash of the token values and of the structure of the nodes, comments excluded, so that equivalent
+   * nodes have the same fingerprint. Unlike {@link UastNode#structuralHash()} it is meant to identify equivalent nodes
+   * without comparing them, for example across files whose UASTs are not kept, collisions being only unlikely.
+   */
+  public static long fingerprint(List<UastNode> nodes) {
+    long hash = FNV_OFFSET_BASIS;
+    for (UastNode node : nodes) {
+      hash = fingerprint(hash, node);
+    }
+    return hash;
+  }
+
+  private static long fingerprint(long hash, UastNode node) {
+    hash = mix(hash, NODE_START);
+    if (node.token != null) {
+      hash = mix(hash, TOKEN_START);
+      String value = node.token.value;
+      for (int i = 0; i < value.length(); i++) {
+        hash = mix(hash, value.charAt(i));
+      }
+    }
+    for (UastNode child : node.children) {
+      if (child.isNot(UastNode.Kind.COMMENT)) {
+        hash = fingerprint(hash, child);
+      }
+    }
+    return mix(hash, NODE_END);
+  }
+
+  private static long mix(long hash, int value) {
+    return (hash ^ value) * FNV_PRIME;
+  }
+
   private static class CommentFilteredList {
 
     private final List<UastNode> children;
@@ -0,0 +1,108 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.uast;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tokens of a tree in document order, comments excluded, built once when the first or last token of one of its nodes is
+ * first requested. Each node of the tree then stores the range of its tokens in the table, so that
+ * {@link UastNode#firstToken()} and {@link UastNode#lastToken()} do not descend the tree and the tokens of a node or
+ * between two nodes are slices of the table.
+ * <p>
+ * The tree is the one of the topmost ancestor whose subtree is in memory: with the streaming unmarshallers, the
+ * ancestors of a subtree visited by the rule engine are created without their children.
+ */
+final class TokenTable {
+
+  private final UastNode root;
+  private final UastNode.Token[] tokens;
+
+  private TokenTable(UastNode root, UastNode.Token[] tokens) {
+    this.root = root;
+    this.tokens = tokens;
+  }
+
+  static TokenTable build(UastNode root) {
+    List<UastNode.Token> tokens = new ArrayList<>();
+    addTokens(root, tokens);
+    TokenTable table = new TokenTable(root, tokens.toArray(new UastNode.Token[0]));
+    assign(root, table, new int[] {0});
+    return table;
+  }
+
+  private static void addTokens(UastNode node, List<UastNode.Token> tokens) {
+    if (hasOwnToken(node)) {
+      tokens.add(node.token);
+    }
+    for (UastNode child : node.children) {
+      addTokens(child, tokens);
+    }
+  }
+
+  /**
+   * Stores in the node the range of its tokens and the index of its last token: its own token when it has one, else
+   * the last token of its last child having one, see {@link UastNode#lastToken()}
+   *
+   * @return the index of the last token of the node, -1 when it has none
+   */
+  private static int assign(UastNode node, TokenTable table, int[] nextIndex) {
+    int start = nextIndex[0];
+    int lastIndex = -1;
+    if (hasOwnToken(node)) {
+      lastIndex = start;
+      nextIndex[0]++;
+    }
+    int lastChildIndex = -1;
+    for (UastNode child : node.children) {
+      int childLastIndex = assign(child, table, nextIndex);
+      if (childLastIndex >= 0) {
+        lastChildIndex = childLastIndex;
+      }
+    }
+    if (lastIndex < 0) {
+      lastIndex = lastChildIndex;
+    }
+    node.setTokenRange(table, start, nextIndex[0], lastIndex);
+    return lastIndex;
+  }
+
+  private static boolean hasOwnToken(UastNode node) {
+    return node.token != null && node.isNot(UastNode.Kind.COMMENT);
+  }
+
+  UastNode root() {
+    return root;
+  }
+
+  UastNode.Token get(int index) {
+    return tokens[index];
+  }
+
+  /**
+   * @return unmodifiable view of the tokens from {@code start} inclusive to {@code end} exclusive
+   */
+  List<UastNode.Token> slice(int start, int end) {
+    return Collections.unmodifiableList(Arrays.asList(tokens).subList(start, end));
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.uast;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Receives the nodes of a UAST while it is read, so that the whole tree does not have to be kept in memory,
+ * see {@link UastNode#read(java.io.Reader, UastListener)} and {@link UastNode#readBinary(byte[], UastListener)}.
+ * <p>
+ * Each node is given to {@link #enterNode} before its children are read, so without children, but with its ancestors.
+ * When a listener needs the descendants of a node, they are read into memory and the node is given again, with its children,
+ * to {@link #visitSubtree}. Otherwise the children are read one by one and notified the same way. {@link #leaveNode} is
+ * called last for every node.
+ */
+public interface UastListener {
+
+  /**
+   * @param node without children
+   * @return true to receive the node with its descendants through {@link #visitSubtree}
+   */
+  boolean enterNode(UastNode node);
+
+  /**
+   * Called after {@link #enterNode} for a node whose descendants were read into memory. This can also happen when this
+   * listener did not ask for them, when it is combined with other listeners, see {@link #combine}.
+   */
+  void visitSubtree(UastNode node);
+
+  void leaveNode(UastNode node);
+
+  /**
+   * @return a listener notifying all the given listeners, in this order
+   */
+  static UastListener combine(UastListener... listeners) {
+    return new CompositeUastListener(Arrays.asList(listeners));
+  }
+
+  /**
+   * @return a listener calling {@link Visitor#visitNode} and {@link Visitor#leaveNode} of the given visitor for every node,
+   * whatever its kinds, without keeping any subtree in memory
+   */
+  static UastListener of(Visitor visitor) {
+    return new VisitorListener(visitor);
+  }
+
+  @FunctionalInterface
+  interface Source {
+    void read(UastListener listener) throws IOException;
+  }
+}
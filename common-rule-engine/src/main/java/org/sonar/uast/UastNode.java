@@ -24,7 +24,6 @@ import java.io.Reader;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Consumer;
@@ -36,16 +35,33 @@ import javax.annotation.Nullable;
 
 public final class UastNode {
 
+  /**
+   * Kinds of the node with their extended kinds, see {@link #is(Kind)}
+   */
   public final Set<Kind> kinds;
+  private final KindSet kindSet;
   public final String nativeNode;
   @Nullable
   public final Token token;
   public final List<UastNode> children;
   @Nullable
   private UastNode parent = null;
+  /**
+   * Cache of {@link #structuralHash()}, 0 until computed
+   */
+  private int structuralHash = 0;
+  /**
+   * Null until the first or last token of a node of the tree is requested, see {@link TokenTable}
+   */
+  @Nullable
+  private TokenTable tokenTable = null;
+  private int tokenStart;
+  private int tokenEnd;
+  private int lastTokenIndex;
 
   public UastNode(Set<Kind> kinds, String nativeNode, @Nullable Token token, List<UastNode> children) {
-    this.kinds = kinds.stream().flatMap(Kind::kindAndExtendedKindStream).collect(Collectors.toSet());
+    this.kindSet = KindSet.closureOf(kinds);
+    this.kinds = kindSet;
     this.nativeNode = nativeNode;
     this.token = token;
     this.children = children;
@@ -59,6 +75,27 @@ public final class UastNode {
     return Unmarshaller.unmarshal(reader);
   }
 
+  /**
+   * Reads the compact binary format produced by "uast-generator-go -b"
+   */
+  public static UastNode fromBinary(byte[] data) throws IOException {
+    return BinaryUnmarshaller.unmarshal(data);
+  }
+
+  /**
+   * Notifies the listener while the json format is read, see {@link UastListener}
+   */
+  public static void read(Reader reader, UastListener listener) throws IOException {
+    Unmarshaller.unmarshal(reader, listener);
+  }
+
+  /**
+   * Notifies the listener while the binary format is read, see {@link UastListener}
+   */
+  public static void readBinary(byte[] data, UastListener listener) throws IOException {
+    BinaryUnmarshaller.unmarshal(data, listener);
+  }
+
   public static class Token {
 
     private static final Pattern LINE_SPLITTER = Pattern.compile("\r\n|\n|\r");
@@ -270,6 +307,10 @@ public final class UastNode {
     TRY(CONDITIONAL_JUMP),
     ;
 
+    private static final KindSet[] CLOSURES = Arrays.stream(values())
+      .map(kind -> KindSet.of(kind.kindAndExtendedKindStream()::iterator))
+      .toArray(KindSet[]::new);
+
     private final Set<Kind> extendedKinds;
 
     Kind() {
@@ -292,12 +333,26 @@ public final class UastNode {
       return Stream.concat(Stream.of(this), extendedKinds.stream());
     }
 
+    /**
+     * @return this kind and its extended kinds
+     */
+    KindSet closure() {
+      return CLOSURES[ordinal()];
+    }
+
     @Override
     public boolean test(UastNode uastNode) {
-      return uastNode.kinds.contains(this);
+      return uastNode.kindSet.contains(this);
     }
   }
 
+  /**
+   * Used by the streaming unmarshallers, where the parent of a node is created without children
+   */
+  void setParent(@Nullable UastNode parent) {
+    this.parent = parent;
+  }
+
   public Optional<UastNode> getChild(Kind kind) {
     return children.stream().filter(kind).findAny();
   }
@@ -314,14 +369,14 @@ public final class UastNode {
 
   public List<UastNode> getChildren(Kind... kinds) {
     List<UastNode> selectedChildren = children.stream()
-      .filter(child -> Arrays.stream(kinds).anyMatch(child.kinds::contains))
+      .filter(child -> child.is(kinds))
       .collect(Collectors.toList());
     return Collections.unmodifiableList(selectedChildren);
   }
 
   public void getDescendants(Kind kind, Consumer<UastNode> consumer, Kind... stopKinds) {
-    if (Arrays.stream(stopKinds).noneMatch(kinds::contains)) {
-      if (kinds.contains(kind)) {
+    if (isNot(stopKinds)) {
+      if (kindSet.contains(kind)) {
         consumer.accept(this);
       }
       children.forEach(child -> child.getDescendants(kind, consumer, stopKinds));
@@ -329,7 +384,7 @@ public final class UastNode {
   }
 
   public void getDescendants(Kind kind, Consumer<UastNode> consumer) {
-    if (kinds.contains(kind)) {
+    if (kindSet.contains(kind)) {
       consumer.accept(this);
     }
     children.forEach(child -> child.getDescendants(kind, consumer));
@@ -339,37 +394,94 @@ public final class UastNode {
     return is(kinds) || children.stream().anyMatch(child -> child.hasDescendant(kinds));
   }
 
+  /**
+   * @return the first token of the subtree, comments excluded
+   */
   public Token firstToken() {
-    if (token != null && !kinds.contains(Kind.COMMENT)) {
-      return this.token;
+    TokenTable table = tokenTable();
+    return tokenStart < tokenEnd ? table.get(tokenStart) : null;
+  }
+
+  /**
+   * @return the token of the node, comments excluded, or else the last token of its last child having one
+   */
+  public Token lastToken() {
+    TokenTable table = tokenTable();
+    return lastTokenIndex >= 0 ? table.get(lastTokenIndex) : null;
+  }
+
+  /**
+   * @return the tokens of the subtree in document order, comments excluded
+   */
+  public List<Token> tokens() {
+    return tokenTable().slice(tokenStart, tokenEnd);
+  }
+
+  /**
+   * @return the tokens in document order, comments excluded, from the first token of {@code from} to the last token of
+   * the subtree of {@code to}, empty when {@code to} ends before {@code from}
+   */
+  public static List<Token> tokensBetween(UastNode from, UastNode to) {
+    UastNode root = from.tableRoot();
+    if (root != to.tableRoot()) {
+      throw new IllegalArgumentException("Nodes " + from + " and " + to + " are not in the same tree");
     }
-    for (UastNode child : children) {
-      Token firstToken = child.firstToken();
-      if (firstToken != null) {
-        return firstToken;
-      }
+    TokenTable table = root.tokenTable();
+    if (table.root() != root || from.tokenTable != table || to.tokenTable != table) {
+      // the tables of subtrees built before their ancestors were created
+      table = TokenTable.build(root);
     }
-    return null;
+    return table.slice(from.tokenStart, Math.max(from.tokenStart, to.tokenEnd));
   }
 
-  public Token lastToken() {
-    if (token != null && !kinds.contains(Kind.COMMENT)) {
-      return token;
+  private TokenTable tokenTable() {
+    if (tokenTable == null) {
+      TokenTable.build(tableRoot());
+    }
+    return tokenTable;
+  }
+
+  /**
+   * @return the topmost ancestor whose children are in memory, see {@link TokenTable}
+   */
+  private UastNode tableRoot() {
+    UastNode node = this;
+    while (node.parent != null && !node.parent.children.isEmpty()) {
+      node = node.parent;
     }
-    ListIterator<UastNode> it = children.listIterator(children.size());
-    while (it.hasPrevious()) {
-      UastNode child = it.previous();
-      Token lastToken = child.lastToken();
-      if (lastToken != null) {
-        return lastToken;
+    return node;
+  }
+
+  void setTokenRange(TokenTable tokenTable, int tokenStart, int tokenEnd, int lastTokenIndex) {
+    this.tokenTable = tokenTable;
+    this.tokenStart = tokenStart;
+    this.tokenEnd = tokenEnd;
+    this.lastTokenIndex = lastTokenIndex;
+  }
+
+  /**
+   * Hash of the token values of the subtree, comments excluded, combined from the hashes of the children so that it is
+   * computed once per node. Nodes which are {@link SyntacticEquivalence#areEquivalent syntactically equivalent} have the
+   * same structural hash, so that candidates of an equivalence can be bucketed by hash. It must only be called once the
+   * subtree is complete, which is the case for the nodes given to the visitors needing their descendants.
+   */
+  public int structuralHash() {
+    int hash = structuralHash;
+    if (hash == 0) {
+      hash = token == null ? 1 : (31 + token.value.hashCode());
+      for (UastNode child : children) {
+        if (child.isNot(Kind.COMMENT)) {
+          hash = 31 * hash + child.structuralHash();
+        }
       }
+      structuralHash = hash;
     }
-    return null;
+    return hash;
   }
 
   public String joinTokens() {
     StringBuilder sb = new StringBuilder();
-    SourcePos pos = kinds.contains(Kind.COMPILATION_UNIT) ? new SourcePos(1, 1) : new SourcePos(0, 0);
+    SourcePos pos = kindSet.contains(Kind.COMPILATION_UNIT) ? new SourcePos(1, 1) : new SourcePos(0, 0);
     joinTokens(sb, pos);
     return sb.toString();
   }
@@ -396,15 +508,23 @@ public final class UastNode {
     }
   }
 
+  public boolean is(Kind kind) {
+    return kindSet.contains(kind);
+  }
+
   public boolean is(Kind... kinds) {
     for (Kind kind : kinds) {
-      if (this.kinds.contains(kind)) {
+      if (kindSet.contains(kind)) {
         return true;
       }
     }
     return false;
   }
 
+  public boolean isNot(Kind kind) {
+    return !kindSet.contains(kind);
+  }
+
   public boolean isNot(Kind... kinds) {
     return !is(kinds);
   }
@@ -52,6 +52,11 @@ class Unmarshaller {
     return unmarshaller.readNode();
   }
 
+  static void unmarshal(Reader reader, UastListener listener) throws IOException {
+    Unmarshaller unmarshaller = new Unmarshaller(reader);
+    unmarshaller.readNode(null, listener);
+  }
+
   private UastNode readNode() throws IOException {
     Set<UastNode.Kind> kinds = Collections.emptySet();
     String nativeNode = "";
@@ -82,6 +87,70 @@ class Unmarshaller {
     return new UastNode(kinds, nativeNode, token, children);
   }
 
+  /**
+   * The node is notified to the listener when its children are reached, as uast-generator-go writes them last.
+   * Attributes following the children are only taken into account for the nodes whose subtree is read into memory.
+   */
+  private void readNode(@Nullable UastNode parent, UastListener listener) throws IOException {
+    Set<UastNode.Kind> kinds = Collections.emptySet();
+    String nativeNode = "";
+    UastNode.Token token = null;
+    UastNode node = null;
+    boolean needsSubtree = false;
+    List<UastNode> children = Collections.emptyList();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      switch (name) {
+        case "kinds":
+          kinds = readKinds();
+          break;
+        case "nativeNode":
+          nativeNode = readNullable(reader::nextString, "");
+          break;
+        case "token":
+          token = readNullable(this::readToken, null);
+          break;
+        case "children":
+          UastNode streamedNode = new UastNode(kinds, nativeNode, token, Collections.emptyList());
+          streamedNode.setParent(parent);
+          needsSubtree = listener.enterNode(streamedNode);
+          if (needsSubtree) {
+            children = readNullable(this::readChildren, Collections.emptyList());
+          } else {
+            readNullable(() -> readChildren(streamedNode, listener), null);
+          }
+          node = streamedNode;
+          break;
+        default:
+          reader.skipValue();
+          break;
+      }
+    }
+    reader.endObject();
+    if (node == null) {
+      node = new UastNode(kinds, nativeNode, token, children);
+      node.setParent(parent);
+      needsSubtree = listener.enterNode(node);
+    } else if (needsSubtree) {
+      node = new UastNode(kinds, nativeNode, token, children);
+      node.setParent(parent);
+    }
+    if (needsSubtree) {
+      listener.visitSubtree(node);
+    }
+    listener.leaveNode(node);
+  }
+
+  private Void readChildren(UastNode parent, UastListener listener) throws IOException {
+    reader.beginArray();
+    while (reader.hasNext()) {
+      readNode(parent, listener);
+    }
+    reader.endArray();
+    return null;
+  }
+
   private List<UastNode> readChildren() throws IOException {
     List<UastNode> children = new ArrayList<>();
     reader.beginArray();
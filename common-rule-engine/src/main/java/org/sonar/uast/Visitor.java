@@ -51,6 +51,15 @@ public abstract class Visitor {
 
   public abstract void visitNode(UastNode node);
 
+  /**
+   * When the UAST is streamed, see {@link org.sonar.commonruleengine.Engine#scan(UastListener.Source, InputFile)},
+   * the nodes of the given kind are kept in memory with their descendants only if this method returns true.
+   * Otherwise "visitNode" and "leaveNode" receive these nodes without children.
+   */
+  public boolean needsDescendants(UastNode.Kind kind) {
+    return true;
+  }
+
   /**
    * This method is called after "visitNode(node)" of the node itself and all its descendants
    */
@@ -0,0 +1,51 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.uast;
+
+class VisitorListener implements UastListener {
+
+  private final Visitor visitor;
+
+  VisitorListener(Visitor visitor) {
+    this.visitor = visitor;
+  }
+
+  @Override
+  public boolean enterNode(UastNode node) {
+    visitor.visitNode(node);
+    return false;
+  }
+
+  @Override
+  public void visitSubtree(UastNode node) {
+    node.children.forEach(this::visit);
+  }
+
+  @Override
+  public void leaveNode(UastNode node) {
+    visitor.leaveNode(node);
+  }
+
+  private void visit(UastNode node) {
+    visitor.visitNode(node);
+    node.children.forEach(this::visit);
+    visitor.leaveNode(node);
+  }
+}
@@ -20,6 +20,11 @@
 package org.sonar.commonruleengine;
 
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
@@ -27,8 +32,12 @@ import org.junit.jupiter.api.Test;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
 import org.sonar.commonruleengine.checks.Check;
+import org.sonar.uast.UastListener;
 import org.sonar.uast.UastNode;
+import org.sonar.uast.Visitor;
+import org.sonar.uast.validators.Validator;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -51,6 +60,186 @@ class EngineTest {
     assertTrue(issues.stream().map(Issue::getCheck).allMatch(rule -> rule == nodeCounter));
   }
 
+  @Test
+  void visitors_are_called_once_per_node_in_registration_order() throws Exception {
+    List<String> calls = new ArrayList<>();
+    Check first = new RecordingCheck("first", calls, UastNode.Kind.FUNCTION, UastNode.Kind.CLASS);
+    Check second = new RecordingCheck("second", calls, UastNode.Kind.CLASS);
+    Validator validator = new Validator(UastNode.Kind.FUNCTION) {
+      @Override
+      public void validate(UastNode node) {
+        calls.add("validator " + node.nativeNode);
+      }
+    };
+    Engine engine = new Engine(Arrays.asList(second, first), Collections.singletonList(validator));
+    InputFile inputFile = TestInputFileBuilder.create(".", "foo.go").setType(InputFile.Type.MAIN).build();
+    engine.scan(UastNode.from(new StringReader("{ kinds: ['CLASS', 'FUNCTION'], nativeNode: 'a', children: [ { kinds: ['FUNCTION'], nativeNode: 'b' } ] }")), inputFile);
+    assertThat(calls).containsExactly(
+      "validator a", "second a", "first a",
+      "validator b", "first b");
+  }
+
+  @Test
+  void streaming_scan_is_equivalent_to_tree_scan() throws Exception {
+    InputFile inputFile = TestInputFileBuilder.create(".", "foo.go").setType(InputFile.Type.MAIN).build();
+    NodeCounter treeCounter = new NodeCounter();
+    ShallowNodeCounter treeShallowCounter = new ShallowNodeCounter();
+    Engine.ScanResult treeScan = new Engine(Arrays.asList(treeCounter, treeShallowCounter)).scan(UastNode.from(reference()), inputFile);
+
+    NodeCounter streamingCounter = new NodeCounter();
+    ShallowNodeCounter streamingShallowCounter = new ShallowNodeCounter();
+    Engine.ScanResult streamingScan = new Engine(Arrays.asList(streamingCounter, streamingShallowCounter))
+      .scan(listener -> UastNode.read(reference(), listener), inputFile);
+
+    assertThat(streamingScan.issues).hasSameSizeAs(treeScan.issues);
+    assertThat(streamingCounter.count).isEqualTo(treeCounter.count);
+    assertThat(streamingShallowCounter.count).isEqualTo(treeShallowCounter.count);
+    assertThat(streamingScan.metrics).isEqualToComparingFieldByField(treeScan.metrics);
+  }
+
+  @Test
+  void streaming_scan_with_rules_not_needing_descendants() throws Exception {
+    InputFile inputFile = TestInputFileBuilder.create(".", "foo.go").setType(InputFile.Type.MAIN).build();
+    ShallowNodeCounter treeCounter = new ShallowNodeCounter();
+    Engine.ScanResult treeScan = new Engine(Collections.singletonList(treeCounter)).scan(UastNode.from(reference()), inputFile);
+
+    List<UastNode> subtrees = new ArrayList<>();
+    ShallowNodeCounter streamingCounter = new ShallowNodeCounter();
+    Engine.ScanResult streamingScan = new Engine(Collections.singletonList(streamingCounter))
+      .scan(listener -> UastNode.read(reference(), UastListener.combine(listener, new SubtreeRecorder(subtrees))), inputFile);
+
+    assertThat(streamingCounter.count).isEqualTo(treeCounter.count);
+    assertThat(streamingScan.metrics).isEqualToComparingFieldByField(treeScan.metrics);
+    assertThat(subtrees).isNotEmpty().noneMatch(subtree -> subtree.is(UastNode.Kind.COMPILATION_UNIT));
+  }
+
+  @Test
+  void streaming_scan_keeps_only_needed_subtrees() throws Exception {
+    InputFile inputFile = TestInputFileBuilder.create(".", "foo.go").setType(InputFile.Type.MAIN).build();
+    List<UastNode> subtrees = new ArrayList<>();
+    ShallowNodeCounter counter = new ShallowNodeCounter();
+    Engine.ScanResult scanResult = new Engine(Collections.singletonList(counter), Collections.emptyList())
+      .scan(listener -> UastNode.read(new StringReader("{ kinds: ['COMPILATION_UNIT'], children: [" +
+        "{ kinds: ['IDENTIFIER'], token: { value: 'a', line: 1, column: 1 } }, " +
+        "{ kinds: ['FUNCTION'], children: [ { kinds: ['IF'], token: { value: 'if', line: 2, column: 1 } } ] } ] }"),
+        UastListener.combine(listener, new SubtreeRecorder(subtrees))), inputFile);
+    assertThat(subtrees).hasSize(1);
+    assertThat(subtrees.get(0).kinds).containsExactly(UastNode.Kind.FUNCTION);
+    assertThat(counter.count).isEqualTo(4);
+    assertThat(scanResult.metrics.numberOfFunctions).isEqualTo(1);
+    assertThat(scanResult.metrics.linesOfCode.toArray()).containsExactly(1, 2);
+  }
+
+  @Test
+  void node_visitors_are_called_for_all_nodes_in_the_walk_of_the_rules() throws Exception {
+    InputFile inputFile = TestInputFileBuilder.create(".", "foo.go").setType(InputFile.Type.MAIN).build();
+    List<String> calls = new ArrayList<>();
+    Check rule = new RecordingCheck("rule", calls, UastNode.Kind.FUNCTION);
+    Visitor nodeVisitor = new Visitor() {
+      @Override
+      public void visitNode(UastNode node) {
+        calls.add("visit " + node.nativeNode);
+      }
+
+      @Override
+      public void leaveNode(UastNode node) {
+        calls.add("leave " + node.nativeNode);
+      }
+    };
+    String source = "{ kinds: ['COMPILATION_UNIT'], nativeNode: 'a', children: [ { kinds: ['FUNCTION'], nativeNode: 'b' }, { nativeNode: 'c' } ] }";
+    List<String> expected = Arrays.asList("visit a", "rule b", "visit b", "leave b", "visit c", "leave c", "leave a");
+    Engine engine = new Engine(Collections.singletonList(rule), Collections.emptyList());
+
+    engine.scan(UastNode.from(new StringReader(source)), inputFile, Collections.singletonList(nodeVisitor));
+    assertThat(calls).isEqualTo(expected);
+
+    calls.clear();
+    engine.scan(listener -> UastNode.read(new StringReader(source), listener), inputFile, Collections.singletonList(nodeVisitor));
+    assertThat(calls).isEqualTo(expected);
+
+    // node visitors are only given to one scan
+    calls.clear();
+    engine.scan(UastNode.from(new StringReader(source)), inputFile);
+    assertThat(calls).containsExactly("rule b");
+  }
+
+  @Test
+  void file_cognitive_complexity_is_computed_in_the_walk_of_the_rules() throws Exception {
+    InputFile inputFile = TestInputFileBuilder.create(".", "foo.go").setType(InputFile.Type.MAIN).build();
+    String source = "{ kinds: ['COMPILATION_UNIT'], children: [ " +
+      "{ kinds: ['FUNCTION'], children: [ " +
+      "  { kinds: ['IF'], token: { value: 'if', line: 1, column: 1 } }, " +
+      "  { kinds: ['FUNCTION'], children: [ { kinds: ['IF'], token: { value: 'if', line: 2, column: 1 } } ] } ] }, " +
+      "{ kinds: ['FUNCTION'], children: [ { kinds: ['LOOP'], token: { value: 'for', line: 3, column: 1 } } ] } ] }";
+    UastNode tree = UastNode.from(new StringReader(source));
+    assertThat(CognitiveComplexity.calculateFileComplexity(tree).value()).isEqualTo(4);
+
+    assertThat(new Engine(Collections.emptyList(), Collections.emptyList()).scan(tree, inputFile).metrics.cognitiveComplexity).isEqualTo(4);
+    assertThat(new Engine(Collections.emptyList(), Collections.emptyList())
+      .scan(listener -> UastNode.read(new StringReader(source), listener), inputFile).metrics.cognitiveComplexity).isEqualTo(4);
+  }
+
+  private static Reader reference() {
+    return new InputStreamReader(EngineTest.class.getResourceAsStream("/reference.java.uast.json"), StandardCharsets.UTF_8);
+  }
+
+  static class RecordingCheck extends Check {
+    private final String name;
+    private final List<String> calls;
+
+    RecordingCheck(String name, List<String> calls, UastNode.Kind... kinds) {
+      super(kinds);
+      this.name = name;
+      this.calls = calls;
+    }
+
+    @Override
+    public void visitNode(UastNode node) {
+      calls.add(name + " " + node.nativeNode);
+    }
+  }
+
+  static class ShallowNodeCounter extends Check {
+    int count;
+
+    ShallowNodeCounter() {
+      super(UastNode.Kind.values());
+    }
+
+    @Override
+    public boolean needsDescendants(UastNode.Kind kind) {
+      return false;
+    }
+
+    @Override
+    public void visitNode(UastNode node) {
+      count++;
+    }
+  }
+
+  static class SubtreeRecorder implements UastListener {
+    private final List<UastNode> subtrees;
+
+    SubtreeRecorder(List<UastNode> subtrees) {
+      this.subtrees = subtrees;
+    }
+
+    @Override
+    public boolean enterNode(UastNode node) {
+      return false;
+    }
+
+    @Override
+    public void visitSubtree(UastNode node) {
+      subtrees.add(node);
+    }
+
+    @Override
+    public void leaveNode(UastNode node) {
+      // nothing to do
+    }
+  }
+
   static class NodeCounter extends Check {
     int count;
 
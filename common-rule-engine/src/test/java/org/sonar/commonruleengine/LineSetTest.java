@@ -0,0 +1,76 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.commonruleengine;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LineSetTest {
+
+  @Test
+  void add_and_contains() {
+    LineSet lines = new LineSet();
+    assertThat(lines.isEmpty()).isTrue();
+    lines.add(3);
+    lines.add(3);
+    lines.add(1000);
+    assertThat(lines.size()).isEqualTo(2);
+    assertThat(lines.isEmpty()).isFalse();
+    assertThat(lines.contains(3)).isTrue();
+    assertThat(lines.contains(1000)).isTrue();
+    assertThat(lines.contains(4)).isFalse();
+    assertThat(lines.contains(100_000)).isFalse();
+    assertThat(lines.contains(-1)).isFalse();
+    assertThatThrownBy(() -> lines.add(-1))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessage("Negative line number: -1");
+  }
+
+  @Test
+  void add_range() {
+    LineSet lines = LineSet.of(2);
+    lines.addRange(60, 70);
+    lines.addRange(1, 2);
+    lines.addRange(5, 4);
+    assertThat(lines.size()).isEqualTo(13);
+    assertThat(lines.toArray()).containsExactly(1, 2, 60, 61, 62, 63, 64, 65, 66, 67, 68, 69, 70);
+  }
+
+  @Test
+  void lines_are_iterated_in_ascending_order() {
+    LineSet lines = LineSet.of(130, 64, 1, 63, 0);
+    List<Integer> iterated = new ArrayList<>();
+    lines.forEach(iterated::add);
+    assertThat(iterated).containsExactly(0, 1, 63, 64, 130);
+    assertThat(lines.toString()).isEqualTo("[0, 1, 63, 64, 130]");
+  }
+
+  @Test
+  void equality() {
+    LineSet lines = LineSet.of(1, 200);
+    assertThat(lines).isEqualTo(LineSet.of(200, 1)).isEqualTo(lines).isNotEqualTo(LineSet.of(1)).isNotEqualTo(null);
+    assertThat(lines.hashCode()).isEqualTo(LineSet.of(200, 1).hashCode());
+    assertThat(new LineSet()).isEqualTo(LineSet.of());
+  }
+}
@@ -21,9 +21,7 @@ package org.sonar.commonruleengine;
 
 import java.io.IOException;
 import java.io.StringReader;
-import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashSet;
 import org.junit.jupiter.api.Test;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
@@ -88,8 +86,8 @@ class MetricsVisitorTest {
       "  {kinds:[ 'COMMENT'   ], token: {line: 2, column: 4, value: '// Single line' }}," +
       "  {kinds:[ 'COMMENT'   ], token: {line: 4, column: 2, value: '/* multi \\n line */'}}" +
       "]}");
-    assertEquals(new HashSet<>(Arrays.asList(1, 2)), metrics.linesOfCode);
-    assertEquals(new HashSet<>(Arrays.asList(2, 4, 5)), metrics.commentLines);
+    assertEquals(LineSet.of(1, 2), metrics.linesOfCode);
+    assertEquals(LineSet.of(2, 4, 5), metrics.commentLines);
   }
 
   @Test
@@ -107,7 +105,44 @@ class MetricsVisitorTest {
       "]}," +
       "  {kinds:[ 'LABEL' ],      token: {line: 6, column: 2, value: 'y:'}}" +
       "]}");
-    assertEquals(new HashSet<>(Arrays.asList(1, 3, 4, 5, 6)), metrics.executableLines);
+    assertEquals(LineSet.of(1, 3, 4, 5, 6), metrics.executableLines);
+  }
+
+  @Test
+  void cognitive_complexity() throws Exception {
+    String source = "{ kinds: ['COMPILATION_UNIT'], children: [" +
+      "  { kinds: ['IF'], children: [ { kinds: ['KEYWORD'], token: { value: 'if', line: 1, column: 1 } } ] }," +
+      "  { kinds: ['FUNCTION'], children: [" +
+      // +1
+      "    { kinds: ['IF'], children: [" +
+      "      { kinds: ['KEYWORD'], token: { value: 'if', line: 2, column: 1 } }," +
+      // +2 for the sequences '&&' then '||'
+      "      { kinds: ['BINARY_EXPRESSION', 'LOGICAL_OR'], children: [" +
+      "        { kinds: ['LEFT_OPERAND', 'BINARY_EXPRESSION', 'LOGICAL_AND'], children: [" +
+      "          { kinds: ['LEFT_OPERAND'], token: { value: 'a', line: 2, column: 4 } }," +
+      "          { kinds: ['OPERATOR'], token: { value: '&&', line: 2, column: 6 } }," +
+      "          { kinds: ['RIGHT_OPERAND'], token: { value: 'b', line: 2, column: 9 } } ] }," +
+      "        { kinds: ['OPERATOR'], token: { value: '||', line: 2, column: 11 } }," +
+      "        { kinds: ['RIGHT_OPERAND'], token: { value: 'c', line: 2, column: 14 } } ] }," +
+      // +2, nested in the 'if'
+      "      { kinds: ['LOOP'], children: [ { kinds: ['KEYWORD'], token: { value: 'for', line: 3, column: 1 } } ] }," +
+      // +1
+      "      { kinds: ['ELSE'], children: [ { kinds: ['KEYWORD'], token: { value: 'else', line: 4, column: 1 } } ] } ] }," +
+      "    { kinds: ['FUNCTION_LITERAL'], children: [" +
+      // +2, nested in the function literal
+      "      { kinds: ['IF'], children: [" +
+      "        { kinds: ['KEYWORD'], token: { value: 'if', line: 5, column: 1 } }," +
+      // +3, nested in the function literal and in the 'if'
+      "        { kinds: ['SWITCH'], children: [ { kinds: ['KEYWORD'], token: { value: 'switch', line: 6, column: 1 } } ] } ] } ] }," +
+      // +1
+      "    { kinds: ['BREAK'], children: [" +
+      "      { kinds: ['KEYWORD'], token: { value: 'break', line: 7, column: 1 } }," +
+      "      { kinds: ['BRANCH_LABEL'], token: { value: 'label', line: 7, column: 7 } } ] } ] } ] }";
+    // without the validators, the nodes above only have the children needed by the cognitive complexity
+    Engine engine = new Engine(Collections.emptyList(), Collections.emptyList());
+    InputFile inputFile = TestInputFileBuilder.create(".", "foo.go").setType(InputFile.Type.MAIN).build();
+    assertEquals(12, engine.scan(UastNode.from(new StringReader(source)), inputFile).metrics.cognitiveComplexity);
+    assertEquals(12, CognitiveComplexity.calculateFileComplexity(UastNode.from(new StringReader(source))).value());
   }
 
   private Metrics getMetrics(String source) throws IOException {
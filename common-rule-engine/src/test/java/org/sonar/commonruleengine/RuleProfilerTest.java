@@ -0,0 +1,100 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.commonruleengine;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.commonruleengine.checks.Check;
+import org.sonar.uast.UastNode;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RuleProfilerTest {
+
+  private static final String UAST = "{ kinds: ['CLASS'], nativeNode: 'a', children: [ { kinds: ['FUNCTION'], nativeNode: 'b' } ] }";
+
+  @Test
+  void calls_are_measured_by_rule_and_by_file() throws Exception {
+    List<String> calls = new ArrayList<>();
+    RuleProfiler profiler = new RuleProfiler(false);
+    Engine engine = new Engine(Arrays.asList(new SlowCheck(), new EngineTest.RecordingCheck("fast", calls, UastNode.Kind.FUNCTION)),
+      Collections.emptyList(), profiler);
+    Engine.ScanResult result = engine.scan(UastNode.from(new StringReader(UAST)), inputFile("a.go"));
+    engine.scan(UastNode.from(new StringReader(UAST)), inputFile("b.go"));
+
+    assertThat(calls).containsExactly("fast b", "fast b");
+    assertThat(result.issues).extracting(Issue::getCheck).hasOnlyElementsOfType(SlowCheck.class);
+    assertThat(profiler.measuresAllocations()).isFalse();
+    List<RuleProfiler.Measure> ruleMeasures = profiler.ruleMeasures();
+    assertThat(ruleMeasures).extracting(RuleProfiler.Measure::name).containsExactly("SlowCheck", "RecordingCheck");
+    // enterFile, visitNode and leaveNode of both nodes, in both files
+    assertThat(ruleMeasures.get(0).calls()).isEqualTo(10);
+    assertThat(ruleMeasures.get(0).nanos()).isGreaterThanOrEqualTo(4_000_000L);
+    assertThat(ruleMeasures.get(0).allocatedBytes()).isZero();
+    assertThat(ruleMeasures.get(1).calls()).isEqualTo(6);
+    assertThat(profiler.fileMeasures()).extracting(RuleProfiler.Measure::name).containsExactlyInAnyOrder("a.go", "b.go");
+    assertThat(profiler.fileMeasures()).extracting(RuleProfiler.Measure::calls).containsExactly(8L, 8L);
+  }
+
+  @Test
+  void measures_are_merged() throws Exception {
+    RuleProfiler first = new RuleProfiler(true);
+    new Engine(Collections.singletonList(new SlowCheck()), Collections.emptyList(), first)
+      .scan(UastNode.from(new StringReader(UAST)), inputFile("a.go"));
+    RuleProfiler second = new RuleProfiler(true);
+    new Engine(Collections.singletonList(new SlowCheck()), Collections.emptyList(), second)
+      .scan(UastNode.from(new StringReader(UAST)), inputFile("b.go"));
+
+    first.merge(second);
+    assertThat(first.ruleMeasures()).hasSize(1);
+    assertThat(first.ruleMeasures().get(0).calls()).isEqualTo(10);
+    assertThat(first.fileMeasures()).extracting(RuleProfiler.Measure::name).containsExactlyInAnyOrder("a.go", "b.go");
+    if (first.measuresAllocations()) {
+      assertThat(first.ruleMeasures().get(0).allocatedBytes()).isPositive();
+    }
+  }
+
+  private static InputFile inputFile(String filename) {
+    return TestInputFileBuilder.create(".", filename).setType(InputFile.Type.MAIN).build();
+  }
+
+  static class SlowCheck extends Check {
+
+    SlowCheck() {
+      super(UastNode.Kind.CLASS, UastNode.Kind.FUNCTION);
+    }
+
+    @Override
+    public void visitNode(UastNode node) {
+      try {
+        Thread.sleep(1);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      reportIssue(node, "slow");
+    }
+  }
+}
@@ -19,9 +19,22 @@
  */
 package org.sonar.commonruleengine.checks;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
 import org.junit.jupiter.api.Test;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.commonruleengine.Engine;
+import org.sonar.commonruleengine.Issue;
 import org.sonar.commonruleengine.checks.NoIdenticalFunctionsCheck;
+import org.sonar.uast.UastNode;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.sonar.commonruleengine.checks.TestUtils.checkRuleOnGo;
 import static org.sonar.commonruleengine.checks.TestUtils.checkRuleOnJava;
 
@@ -37,4 +50,59 @@ class NoIdenticalFunctionsCheckTest {
     checkRuleOnGo(new NoIdenticalFunctionsCheck());
   }
 
+  @Test
+  void file_with_thousands_of_functions() {
+    // 2,500 distinct functions followed by a copy of each of them, each function spanning 4 lines
+    int distinctFunctions = 2_500;
+    List<UastNode> functions = new ArrayList<>();
+    for (int i = 0; i < 2 * distinctFunctions; i++) {
+      functions.add(function(4 * i + 1, "f" + i, "x" + (i % distinctFunctions)));
+    }
+    UastNode file = new UastNode(EnumSet.of(UastNode.Kind.COMPILATION_UNIT), "", null, functions);
+    InputFile inputFile = TestInputFileBuilder.create(".", "generated.go").setType(InputFile.Type.MAIN).build();
+    Engine engine = new Engine(Collections.singletonList(new NoIdenticalFunctionsCheck()));
+
+    List<Issue> issues = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> engine.scan(file, inputFile).issues);
+
+    assertThat(issues).hasSize(distinctFunctions);
+    Issue last = issues.get(issues.size() - 1);
+    assertThat(last.getPrimary().from.token.value).isEqualTo("f" + (2 * distinctFunctions - 1));
+    assertThat(last.getMessage()).isEqualTo("Function is identical with function on line " + (4 * (distinctFunctions - 1) + 1) + ".");
+  }
+
+  @Test
+  void fingerprints_are_collected_for_each_file() throws Exception {
+    NoIdenticalFunctionsCheck check = new NoIdenticalFunctionsCheck();
+    check.collectFingerprints();
+    Engine engine = new Engine(Collections.singletonList(check));
+    InputFile inputFile = TestInputFileBuilder.create(".", "a.go").setType(InputFile.Type.MAIN).build();
+    UastNode file = new UastNode(EnumSet.of(UastNode.Kind.COMPILATION_UNIT), "", null, Arrays.asList(
+      function(1, "foo", "x"),
+      function(5, "bar", "y"),
+      function(9, "baz", "x")));
+
+    engine.scan(file, inputFile);
+
+    List<NoIdenticalFunctionsCheck.FunctionFingerprint> fingerprints = check.fingerprints();
+    assertThat(fingerprints).extracting(fingerprint -> fingerprint.function.name().token.value).containsExactly("foo", "bar", "baz");
+    assertThat(fingerprints.get(0).value).isEqualTo(fingerprints.get(2).value).isNotEqualTo(fingerprints.get(1).value);
+
+    engine.scan(new UastNode(EnumSet.of(UastNode.Kind.COMPILATION_UNIT), "", null, Collections.emptyList()), inputFile);
+    assertThat(check.fingerprints()).isEmpty();
+  }
+
+  private static UastNode function(int line, String name, String variable) {
+    UastNode block = node(UastNode.Kind.BLOCK, null,
+      node(UastNode.Kind.STATEMENT, new UastNode.Token(line + 1, 3, variable + "++")),
+      node(UastNode.Kind.STATEMENT, new UastNode.Token(line + 2, 3, variable + "--")));
+    return node(UastNode.Kind.FUNCTION, null,
+      node(UastNode.Kind.KEYWORD, new UastNode.Token(line, 1, "func")),
+      node(UastNode.Kind.FUNCTION_NAME, new UastNode.Token(line, 6, name)),
+      block);
+  }
+
+  private static UastNode node(UastNode.Kind kind, UastNode.Token token, UastNode... children) {
+    return new UastNode(EnumSet.of(kind), "", token, Arrays.asList(children));
+  }
+
 }
@@ -0,0 +1,177 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.uast;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BinaryUnmarshallerTest {
+
+  @Test
+  void read_uast() throws Exception {
+    // same document as Test_toBinary in uast-generator-go/binary_test.go
+    UastNode root = UastNode.fromBinary(packageMain());
+    assertThat(root.kinds).containsExactly(UastNode.Kind.COMPILATION_UNIT);
+    assertThat(root.nativeNode).isEqualTo("(File)");
+    assertThat(root.token).isNull();
+    assertThat(root.children).hasSize(3);
+
+    UastNode keyword = root.children.get(0);
+    assertThat(keyword.kinds).containsExactly(UastNode.Kind.KEYWORD);
+    assertThat(keyword.nativeNode).isEmpty();
+    assertThat(keyword.token.value).isEqualTo("package");
+    assertThat(keyword.token.line).isEqualTo(1);
+    assertThat(keyword.token.column).isEqualTo(1);
+    assertThat(keyword.children).isEmpty();
+
+    UastNode identifier = root.children.get(1);
+    assertThat(identifier.kinds).containsExactly(UastNode.Kind.IDENTIFIER);
+    assertThat(identifier.nativeNode).isEqualTo("Name(Ident)");
+    assertThat(identifier.token.value).isEqualTo("main");
+    assertThat(identifier.token.line).isEqualTo(1);
+    assertThat(identifier.token.column).isEqualTo(9);
+
+    UastNode eof = root.children.get(2);
+    assertThat(eof.is(UastNode.Kind.EOF)).isTrue();
+    assertThat(eof.token.value).isEmpty();
+    assertThat(eof.token.line).isEqualTo(2);
+    assertThat(eof.token.column).isEqualTo(1);
+    assertThat(eof.getAncestor(UastNode.Kind.COMPILATION_UNIT)).contains(root);
+
+    assertThat(root.joinTokens()).isEqualTo("package main\n");
+  }
+
+  @Test
+  void stream_uast() throws Exception {
+    List<String> events = new ArrayList<>();
+    UastNode.readBinary(packageMain(), new UastListener() {
+      @Override
+      public boolean enterNode(UastNode node) {
+        assertThat(node.children).isEmpty();
+        events.add("enter " + node.kinds);
+        return node.is(UastNode.Kind.IDENTIFIER);
+      }
+
+      @Override
+      public void visitSubtree(UastNode node) {
+        assertThat(node.getAncestor(UastNode.Kind.COMPILATION_UNIT)).isPresent();
+        events.add("subtree " + node.joinTokens());
+      }
+
+      @Override
+      public void leaveNode(UastNode node) {
+        events.add("leave " + node.kinds);
+      }
+    });
+    assertThat(events).containsExactly(
+      "enter [COMPILATION_UNIT]",
+      "enter [KEYWORD]",
+      "leave [KEYWORD]",
+      "enter [IDENTIFIER]",
+      "subtree main",
+      "leave [IDENTIFIER]",
+      "enter [EOF]",
+      "leave [EOF]",
+      "leave [COMPILATION_UNIT]");
+  }
+
+  @Test
+  void unknown_kinds_are_ignored() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(BinaryUnmarshaller.FORMAT_VERSION);
+    out.write(2);
+    writeStrings(out, "UNKNOWN_KIND", "BLOCK");
+    out.write(1);
+    writeStrings(out, "");
+    out.write(new byte[] {2, 0, 1, 0, 0, 0});
+    UastNode node = UastNode.fromBinary(out.toByteArray());
+    assertThat(node.kinds).containsExactly(UastNode.Kind.BLOCK);
+  }
+
+  @Test
+  void multi_byte_varints() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(BinaryUnmarshaller.FORMAT_VERSION);
+    out.write(0);
+    out.write(1);
+    writeStrings(out, "x");
+    // line 300 and column 70 (zigzag encoded: 600 and 140)
+    out.write(new byte[] {0, 0, 1, (byte) 0xD8, 0x04, (byte) 0x8C, 0x01, 0});
+    UastNode node = UastNode.fromBinary(out.toByteArray());
+    assertThat(node.token.line).isEqualTo(300);
+    assertThat(node.token.column).isEqualTo(70);
+  }
+
+  @Test
+  void invalid_data() {
+    byte[] valid = packageMain();
+    byte[] badVersion = valid.clone();
+    badVersion[0] = 42;
+    IOException e = assertThrows(IOException.class, () -> UastNode.fromBinary(badVersion));
+    assertThat(e).hasMessage("Unsupported binary UAST format version: 42");
+
+    byte[] truncated = new byte[valid.length - 1];
+    System.arraycopy(valid, 0, truncated, 0, truncated.length);
+    e = assertThrows(IOException.class, () -> UastNode.fromBinary(truncated));
+    assertThat(e).hasMessage("Unexpected end of binary UAST");
+
+    byte[] trailing = new byte[valid.length + 1];
+    System.arraycopy(valid, 0, trailing, 0, valid.length);
+    e = assertThrows(IOException.class, () -> UastNode.fromBinary(trailing));
+    assertThat(e).hasMessage("Unexpected data after the binary UAST at position " + valid.length);
+
+    byte[] invalidIndex = valid.clone();
+    // kind index of the root node
+    invalidIndex[invalidIndex.length - 25] = 9;
+    e = assertThrows(IOException.class, () -> UastNode.fromBinary(invalidIndex));
+    assertThat(e.getMessage()).startsWith("Invalid table index 9");
+  }
+
+  private static byte[] packageMain() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(BinaryUnmarshaller.FORMAT_VERSION);
+    out.write(4);
+    writeStrings(out, "COMPILATION_UNIT", "KEYWORD", "IDENTIFIER", "EOF");
+    out.write(5);
+    writeStrings(out, "(File)", "", "package", "Name(Ident)", "main");
+    byte[] nodes = {
+      1, 0, 0, 0, 3,
+      1, 1, 1, 3, 2, 2, 0,
+      1, 2, 3, 5, 0, 16, 0,
+      1, 3, 1, 2, 2, 2, 0};
+    out.write(nodes, 0, nodes.length);
+    return out.toByteArray();
+  }
+
+  private static void writeStrings(ByteArrayOutputStream out, String... values) {
+    for (String value : values) {
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      out.write(bytes.length);
+      out.write(bytes, 0, bytes.length);
+    }
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.uast;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class KindSetTest {
+
+  @Test
+  void closure_of_each_kind() {
+    for (UastNode.Kind kind : UastNode.Kind.values()) {
+      Set<UastNode.Kind> expected = kind.kindAndExtendedKindStream().collect(Collectors.toSet());
+      assertThat(kind.closure()).isEqualTo(expected);
+      assertThat(expected).isEqualTo(kind.closure());
+      assertThat(kind.closure().hashCode()).isEqualTo(expected.hashCode());
+      assertThat(KindSet.closureOf(Collections.singleton(kind))).isSameAs(kind.closure());
+    }
+  }
+
+  @Test
+  void closure_of_several_kinds() {
+    KindSet kinds = KindSet.closureOf(EnumSet.of(UastNode.Kind.WHILE, UastNode.Kind.IDENTIFIER, UastNode.Kind.TRY));
+    assertThat(kinds).containsExactlyInAnyOrder(
+      UastNode.Kind.WHILE, UastNode.Kind.LOOP, UastNode.Kind.IDENTIFIER, UastNode.Kind.TRY, UastNode.Kind.CONDITIONAL_JUMP);
+    assertThat(kinds.contains(UastNode.Kind.LOOP)).isTrue();
+    assertThat(kinds.contains(UastNode.Kind.IF)).isFalse();
+    assertThat(kinds.contains((Object) "LOOP")).isFalse();
+    assertThat(KindSet.closureOf(kinds)).isSameAs(kinds);
+    assertThat(KindSet.closureOf(Collections.emptySet())).isEmpty();
+  }
+
+  @Test
+  void sets_are_interned() {
+    KindSet kinds = KindSet.closureOf(EnumSet.of(UastNode.Kind.WHILE, UastNode.Kind.IDENTIFIER));
+    assertThat(KindSet.closureOf(new HashSet<>(Arrays.asList(UastNode.Kind.IDENTIFIER, UastNode.Kind.WHILE)))).isSameAs(kinds);
+    assertThat(KindSet.of(kinds)).isSameAs(kinds);
+    assertThat(KindSet.of(Collections.singleton(UastNode.Kind.IDENTIFIER))).isSameAs(UastNode.Kind.IDENTIFIER.closure());
+  }
+
+  @Test
+  void all_kinds() {
+    KindSet all = KindSet.of(Arrays.asList(UastNode.Kind.values()));
+    assertThat(all).hasSize(UastNode.Kind.values().length);
+    assertThat(all).containsExactly(UastNode.Kind.values());
+    assertThat(all).isEqualTo(new HashSet<>(Arrays.asList(UastNode.Kind.values())));
+  }
+
+  @Test
+  void iterator_end() {
+    Iterator<UastNode.Kind> iterator = UastNode.Kind.IDENTIFIER.closure().iterator();
+    iterator.next();
+    assertThat(iterator.hasNext()).isFalse();
+    assertThrows(NoSuchElementException.class, iterator::next);
+  }
+
+  @Test
+  void node_kinds() {
+    UastNode node = new UastNode(EnumSet.of(UastNode.Kind.DO_WHILE), "", null, Collections.emptyList());
+    assertThat(node.kinds).containsExactlyInAnyOrder(UastNode.Kind.DO_WHILE, UastNode.Kind.LOOP, UastNode.Kind.CONDITIONAL_JUMP);
+    assertThat(node.is(UastNode.Kind.LOOP)).isTrue();
+    assertThat(node.is(UastNode.Kind.IF, UastNode.Kind.DO_WHILE)).isTrue();
+    assertThat(node.isNot(UastNode.Kind.WHILE)).isTrue();
+    assertThat(UastNode.Kind.LOOP.test(node)).isTrue();
+  }
+}
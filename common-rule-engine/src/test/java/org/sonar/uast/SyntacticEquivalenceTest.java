@@ -20,9 +20,12 @@
 package org.sonar.uast;
 
 import java.io.StringReader;
+import java.util.Collections;
 import org.junit.jupiter.api.Test;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class SyntacticEquivalenceTest {
 
@@ -33,4 +36,52 @@ class SyntacticEquivalenceTest {
     assertFalse(SyntacticEquivalence.areEquivalent(node1, node2));
   }
 
+  @Test
+  void equivalent_nodes_have_the_same_structural_hash() throws Exception {
+    UastNode node1 = node("{ children: [ { token: { line: 1, column: 1, value: 'a' } }, { kinds: [ 'COMMENT' ], token: { line: 1, column: 3, value: '// c' } }, " +
+      "{ token: { line: 1, column: 8, value: 'b' } } ] }");
+    UastNode node2 = node("{ children: [ { token: { line: 4, column: 2, value: 'a' } }, { token: { line: 5, column: 2, value: 'b' } } ] }");
+    assertTrue(SyntacticEquivalence.areEquivalent(node1, node2));
+    assertThat(node1.structuralHash()).isEqualTo(node2.structuralHash());
+  }
+
+  @Test
+  void different_nodes() throws Exception {
+    UastNode node = node("{ children: [ { token: { line: 1, column: 1, value: 'a' } }, { token: { line: 1, column: 3, value: 'b' } } ] }");
+    UastNode swapped = node("{ children: [ { token: { line: 1, column: 1, value: 'b' } }, { token: { line: 1, column: 3, value: 'a' } } ] }");
+    UastNode shorter = node("{ children: [ { token: { line: 1, column: 1, value: 'a' } } ] }");
+    assertFalse(SyntacticEquivalence.areEquivalent(node, swapped));
+    assertThat(node.structuralHash()).isNotEqualTo(swapped.structuralHash());
+    assertFalse(SyntacticEquivalence.areEquivalent(node, shorter));
+    assertFalse(SyntacticEquivalence.areEquivalent(node, null));
+    assertTrue(SyntacticEquivalence.areEquivalent((UastNode) null, null));
+  }
+
+  @Test
+  void fingerprint() throws Exception {
+    UastNode node1 = node("{ children: [ { token: { line: 1, column: 1, value: 'a' } }, { kinds: [ 'COMMENT' ], token: { line: 1, column: 3, value: '// c' } }, " +
+      "{ token: { line: 1, column: 8, value: 'b' } } ] }");
+    UastNode node2 = node("{ children: [ { token: { line: 4, column: 2, value: 'a' } }, { token: { line: 5, column: 2, value: 'b' } } ] }");
+    UastNode concatenated = node("{ children: [ { token: { line: 1, column: 1, value: 'ab' } } ] }");
+    UastNode nested = node("{ children: [ { token: { line: 1, column: 1, value: 'a' }, children: [ { token: { line: 1, column: 3, value: 'b' } } ] } ] }");
+    long fingerprint = SyntacticEquivalence.fingerprint(Collections.singletonList(node1));
+    assertThat(SyntacticEquivalence.fingerprint(Collections.singletonList(node2))).isEqualTo(fingerprint);
+    assertThat(SyntacticEquivalence.fingerprint(Collections.singletonList(concatenated))).isNotEqualTo(fingerprint);
+    assertThat(SyntacticEquivalence.fingerprint(Collections.singletonList(nested))).isNotEqualTo(fingerprint);
+    assertThat(SyntacticEquivalence.fingerprint(node1.children)).isNotEqualTo(fingerprint);
+    assertThat(SyntacticEquivalence.fingerprint(Collections.emptyList())).isNotEqualTo(fingerprint);
+  }
+
+  @Test
+  void equivalence_is_symmetric() throws Exception {
+    UastNode withToken = node("{ token: { line: 1, column: 1, value: 'a' } }");
+    UastNode withoutToken = node("{ }");
+    assertFalse(SyntacticEquivalence.areEquivalent(withToken, withoutToken));
+    assertFalse(SyntacticEquivalence.areEquivalent(withoutToken, withToken));
+  }
+
+  private static UastNode node(String json) throws Exception {
+    return UastNode.from(new StringReader(json));
+  }
+
 }
@@ -0,0 +1,169 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.uast;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import org.junit.jupiter.api.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UastListenerTest {
+
+  @Test
+  void events_follow_the_tree() throws Exception {
+    List<String> expected = new ArrayList<>();
+    walk(UastNode.from(reference()), expected);
+
+    EventRecorder recorder = new EventRecorder(node -> false);
+    UastNode.read(reference(), recorder);
+    assertThat(recorder.events).isEqualTo(expected);
+    assertThat(recorder.subtrees).isEmpty();
+  }
+
+  @Test
+  void nodes_are_streamed_without_children_but_with_ancestors() throws Exception {
+    List<UastNode> identifiers = new ArrayList<>();
+    UastNode.read(reference(), new EventRecorder(node -> false) {
+      @Override
+      public boolean enterNode(UastNode node) {
+        assertThat(node.children).isEmpty();
+        if (node.is(UastNode.Kind.IDENTIFIER)) {
+          identifiers.add(node);
+        }
+        return false;
+      }
+    });
+    assertThat(identifiers).isNotEmpty();
+    assertThat(identifiers).allMatch(identifier -> identifier.getAncestor(UastNode.Kind.COMPILATION_UNIT).isPresent());
+  }
+
+  @Test
+  void requested_subtrees_are_read_into_memory() throws Exception {
+    UastNode tree = UastNode.from(reference());
+    List<UastNode> functions = new ArrayList<>();
+    tree.getDescendants(UastNode.Kind.FUNCTION, functions::add);
+
+    EventRecorder recorder = new EventRecorder(node -> node.is(UastNode.Kind.FUNCTION));
+    UastNode.read(reference(), recorder);
+    assertThat(recorder.subtrees).extracting(UastNode::joinTokens)
+      .containsExactlyElementsOf(functions.stream().map(UastNode::joinTokens)::iterator);
+    assertThat(recorder.subtrees).allMatch(function -> function.getAncestor(UastNode.Kind.CLASS).isPresent());
+    // descendants of functions are not notified
+    assertThat(recorder.events).hasSize(2 * (countNodes(tree) - functions.stream().mapToInt(UastListenerTest::countNodes).sum() + functions.size()));
+  }
+
+  @Test
+  void attributes_after_children_are_read_for_subtrees() throws Exception {
+    EventRecorder recorder = new EventRecorder(node -> true);
+    UastNode.read(new StringReader("{ kinds: ['BLOCK'], children: [ { children: null, token: { value: 'x', line: 1, column: 1 } } ] }"), recorder);
+    assertThat(recorder.events).containsExactly("enter [BLOCK] null", "leave [BLOCK] null");
+    assertThat(recorder.subtrees).hasSize(1);
+    assertThat(recorder.subtrees.get(0).children.get(0).token.value).isEqualTo("x");
+  }
+
+  @Test
+  void combined_listeners_all_receive_requested_subtrees() throws Exception {
+    EventRecorder first = new EventRecorder(node -> false);
+    EventRecorder second = new EventRecorder(node -> node.is(UastNode.Kind.CLASS));
+    UastNode.read(reference(), UastListener.combine(first, second));
+    assertThat(first.events).isEqualTo(second.events);
+    assertThat(first.subtrees).hasSize(1).isEqualTo(second.subtrees);
+  }
+
+  @Test
+  void visitor_receives_all_nodes() throws Exception {
+    List<String> expected = new ArrayList<>();
+    walk(UastNode.from(reference()), expected);
+
+    VisitorRecorder visitor = new VisitorRecorder();
+    UastNode.read(reference(), UastListener.of(visitor));
+    assertThat(visitor.events).isEqualTo(expected);
+
+    // subtrees requested by another listener are visited too
+    VisitorRecorder combinedVisitor = new VisitorRecorder();
+    UastNode.read(reference(), UastListener.combine(UastListener.of(combinedVisitor), new EventRecorder(node -> node.is(UastNode.Kind.FUNCTION))));
+    assertThat(combinedVisitor.events).isEqualTo(expected);
+  }
+
+  private static Reader reference() {
+    return new InputStreamReader(UastListenerTest.class.getResourceAsStream("/reference.java.uast.json"), UTF_8);
+  }
+
+  private static void walk(UastNode node, List<String> events) {
+    events.add("enter " + describe(node));
+    node.children.forEach(child -> walk(child, events));
+    events.add("leave " + describe(node));
+  }
+
+  private static int countNodes(UastNode node) {
+    return 1 + node.children.stream().mapToInt(UastListenerTest::countNodes).sum();
+  }
+
+  private static String describe(UastNode node) {
+    return node.kinds + " " + (node.token == null ? null : node.token.value);
+  }
+
+  static class VisitorRecorder extends Visitor {
+    final List<String> events = new ArrayList<>();
+
+    @Override
+    public void visitNode(UastNode node) {
+      events.add("enter " + describe(node));
+    }
+
+    @Override
+    public void leaveNode(UastNode node) {
+      events.add("leave " + describe(node));
+    }
+  }
+
+  static class EventRecorder implements UastListener {
+    private final Predicate<UastNode> needsSubtree;
+    final List<String> events = new ArrayList<>();
+    final List<UastNode> subtrees = new ArrayList<>();
+
+    EventRecorder(Predicate<UastNode> needsSubtree) {
+      this.needsSubtree = needsSubtree;
+    }
+
+    @Override
+    public boolean enterNode(UastNode node) {
+      events.add("enter " + describe(node));
+      return needsSubtree.test(node);
+    }
+
+    @Override
+    public void visitSubtree(UastNode node) {
+      subtrees.add(node);
+    }
+
+    @Override
+    public void leaveNode(UastNode node) {
+      events.add("leave " + describe(node));
+    }
+  }
+}
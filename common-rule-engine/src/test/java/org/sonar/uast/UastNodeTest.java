@@ -148,6 +148,58 @@ class UastNodeTest {
     assertThat(node.lastToken().value).isEqualTo("last");
   }
 
+  @Test
+  void first_last_token_skip_comments() throws Exception {
+    UastNode node = UastNode.from(new StringReader("{ children: [" +
+      "{ kinds: ['COMMENT'], token: { line: 1, column: 1, value: '// a' } }, " +
+      "{ token: { line: 2, column: 1, value: 'first' } }," +
+      "{ token: { line: 2, column: 7, value: 'parent' }, children: [ { token: { line: 2, column: 14, value: 'child' } } ] }," +
+      "{ kinds: ['COMMENT'], token: { line: 3, column: 1, value: '// b' } }" +
+      "]}"));
+    assertThat(node.firstToken().value).isEqualTo("first");
+    // the token of a node comes before the tokens of its children
+    assertThat(node.lastToken().value).isEqualTo("parent");
+    assertThat(node.children.get(0).firstToken()).isNull();
+    assertThat(node.children.get(0).lastToken()).isNull();
+  }
+
+  @Test
+  void tokens() throws Exception {
+    UastNode node = UastNode.from(new StringReader("{ children: [" +
+      "{ token: { line: 1, column: 1, value: 'a' } }, " +
+      "{ children: [ { token: { line: 1, column: 3, value: 'b' } }, { kinds: ['COMMENT'], token: { line: 1, column: 5, value: '/* c */' } } ] }," +
+      "{ kinds: [] }," +
+      "{ token: { line: 2, column: 1, value: 'd' } }" +
+      "]}"));
+    UastNode first = node.children.get(0);
+    UastNode second = node.children.get(1);
+    UastNode empty = node.children.get(2);
+    UastNode last = node.children.get(3);
+    assertThat(node.tokens()).extracting(token -> token.value).containsExactly("a", "b", "d");
+    assertThat(second.tokens()).extracting(token -> token.value).containsExactly("b");
+    assertThat(empty.tokens()).isEmpty();
+    assertThat(UastNode.tokensBetween(first, last)).extracting(token -> token.value).containsExactly("a", "b", "d");
+    assertThat(UastNode.tokensBetween(second, empty)).extracting(token -> token.value).containsExactly("b");
+    assertThat(UastNode.tokensBetween(last, first)).isEmpty();
+    assertThrows(UnsupportedOperationException.class, () -> node.tokens().clear());
+
+    UastNode other = UastNode.from(new StringReader("{ token: { line: 1, column: 1, value: 'a' } }"));
+    assertThrows(IllegalArgumentException.class, () -> UastNode.tokensBetween(first, other));
+  }
+
+  @Test
+  void tokens_of_a_subtree_built_before_its_parent() {
+    UastNode.Token a = new UastNode.Token(1, 1, "a");
+    UastNode.Token b = new UastNode.Token(1, 3, "b");
+    UastNode child1 = new UastNode(Collections.emptySet(), "", a, Collections.emptyList());
+    UastNode child2 = new UastNode(Collections.emptySet(), "", b, Collections.emptyList());
+    assertThat(child2.firstToken()).isSameAs(b);
+    UastNode parent = new UastNode(Collections.emptySet(), "", null, Arrays.asList(child1, child2));
+    assertThat(parent.lastToken()).isSameAs(b);
+    assertThat(child2.lastToken()).isSameAs(b);
+    assertThat(UastNode.tokensBetween(child1, child2)).containsExactly(a, b);
+  }
+
   static List<Path> testKindSources(String fileExtension) throws IOException {
     Path basDirectory = Paths.get("src", "test", "files", "kinds");
     return Files.list(basDirectory)
@@ -0,0 +1,178 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.go.plugin;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.CheckForNull;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Serialized UASTs and analysis results stored on disk, one file per entry named after the SHA-256 of a version and of the
+ * file content, so that unchanged files are not parsed nor scanned again by the next analysis. When the total size exceeds the maximum size, the least
+ * recently used entries are deleted. The last modification time of the entries keeps the usage order between analyses.
+ * This class is thread-safe.
+ */
+class AnalysisCache {
+
+  private static final Logger LOG = Loggers.get(AnalysisCache.class);
+
+  static final String DIRECTORY_NAME = "go-analysis-cache";
+  private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+  private final Path directory;
+  private final long maxSize;
+  // access-ordered, from least to most recently used
+  private final LinkedHashMap<String, Long> entrySizes = new LinkedHashMap<>(16, 0.75f, true);
+  private long size = 0;
+
+  AnalysisCache(Path directory, long maxSize) throws IOException {
+    this.directory = directory;
+    this.maxSize = maxSize;
+    Files.createDirectories(directory);
+    List<Path> entries;
+    try (Stream<Path> files = Files.list(directory)) {
+      entries = files.collect(Collectors.toList());
+    }
+    for (Path entry : entries) {
+      if (entry.getFileName().toString().endsWith(TEMPORARY_FILE_SUFFIX)) {
+        Files.deleteIfExists(entry);
+      }
+    }
+    entries.stream()
+      .filter(Files::isRegularFile)
+      .sorted(Comparator.comparing(AnalysisCache::lastModified))
+      .forEach(entry -> addEntry(entry.getFileName().toString(), entry.toFile().length()));
+    evict();
+  }
+
+  static String key(String generatorVersion, byte[] content) {
+    MessageDigest digest = sha256();
+    digest.update(generatorVersion.getBytes(StandardCharsets.UTF_8));
+    digest.update((byte) 0);
+    digest.update(content);
+    StringBuilder key = new StringBuilder();
+    for (byte b : digest.digest()) {
+      key.append(String.format("%02x", b));
+    }
+    return key.toString();
+  }
+
+  @CheckForNull
+  byte[] get(String key) {
+    synchronized (this) {
+      if (entrySizes.get(key) == null) {
+        return null;
+      }
+    }
+    Path entry = directory.resolve(key);
+    try {
+      byte[] data = Files.readAllBytes(entry);
+      Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+      return data;
+    } catch (IOException e) {
+      // evicted by another thread, or deleted by someone else
+      LOG.debug("Unable to read analysis cache entry {}: {}", key, e.getMessage());
+      synchronized (this) {
+        Long entrySize = entrySizes.remove(key);
+        if (entrySize != null) {
+          size -= entrySize;
+        }
+      }
+      return null;
+    }
+  }
+
+  void put(String key, byte[] data) {
+    if (data.length > maxSize) {
+      return;
+    }
+    Path entry = directory.resolve(key);
+    try {
+      Path temporaryFile = Files.createTempFile(directory, key, TEMPORARY_FILE_SUFFIX);
+      Files.write(temporaryFile, data);
+      Files.move(temporaryFile, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      LOG.debug("Unable to write analysis cache entry {}: {}", key, e.getMessage());
+      return;
+    }
+    synchronized (this) {
+      Long previousSize = entrySizes.remove(key);
+      if (previousSize != null) {
+        size -= previousSize;
+      }
+      addEntry(key, data.length);
+      evict();
+    }
+  }
+
+  synchronized long size() {
+    return size;
+  }
+
+  private void addEntry(String key, long entrySize) {
+    entrySizes.put(key, entrySize);
+    size += entrySize;
+  }
+
+  private void evict() {
+    Iterator<Map.Entry<String, Long>> leastRecentlyUsed = entrySizes.entrySet().iterator();
+    while (size > maxSize && leastRecentlyUsed.hasNext()) {
+      Map.Entry<String, Long> entry = leastRecentlyUsed.next();
+      try {
+        Files.deleteIfExists(directory.resolve(entry.getKey()));
+      } catch (IOException e) {
+        LOG.debug("Unable to delete analysis cache entry {}: {}", entry.getKey(), e.getMessage());
+      }
+      size -= entry.getValue();
+      leastRecentlyUsed.remove();
+    }
+  }
+
+  private static FileTime lastModified(Path path) {
+    try {
+      return Files.getLastModifiedTime(path);
+    } catch (IOException e) {
+      return FileTime.fromMillis(0);
+    }
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.go.plugin;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Collects the {@link FileTimings} of the analyzed files, on the sensor thread, and reports the distribution of
+ * the duration of each phase with the slowest files, as json in the working directory and in the logs
+ */
+class AnalysisTimings {
+
+  private static final Logger LOG = Loggers.get(AnalysisTimings.class);
+  private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+  static final String FILE_NAME = "go-analysis-timings.json";
+  static final int MAX_REPORTED_FILES = 100;
+  private static final int MAX_LOGGED_FILES = 10;
+  private static final double[] PERCENTILES = {50, 95, 99};
+
+  private final List<String> files = new ArrayList<>();
+  private final List<FileTimings> timings = new ArrayList<>();
+
+  void add(InputFile inputFile, FileTimings fileTimings) {
+    files.add(inputFile.toString());
+    timings.add(fileTimings);
+  }
+
+  Path save(Path workDir) throws IOException {
+    JsonObject report = new JsonObject();
+    report.addProperty("files", files.size());
+    JsonObject phases = new JsonObject();
+    for (FileTimings.Phase phase : FileTimings.Phase.values()) {
+      phases.add(phase.name().toLowerCase(Locale.ROOT), distribution(timings.stream().mapToLong(t -> t.nanos(phase)).toArray()));
+    }
+    phases.add("total", distribution(timings.stream().mapToLong(FileTimings::totalNanos).toArray()));
+    report.add("phases", phases);
+    List<Integer> slowestFiles = slowestFiles();
+    JsonArray slowestFilesJson = new JsonArray();
+    for (int index : slowestFiles.subList(0, Math.min(MAX_REPORTED_FILES, slowestFiles.size()))) {
+      JsonObject file = new JsonObject();
+      file.addProperty("name", files.get(index));
+      file.addProperty("totalMs", millis(timings.get(index).totalNanos()));
+      for (FileTimings.Phase phase : FileTimings.Phase.values()) {
+        file.addProperty(phase.name().toLowerCase(Locale.ROOT) + "Ms", millis(timings.get(index).nanos(phase)));
+      }
+      slowestFilesJson.add(file);
+    }
+    report.add("slowestFiles", slowestFilesJson);
+    Path reportFile = workDir.resolve(FILE_NAME);
+    try (Writer writer = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8)) {
+      GSON.toJson(report, writer);
+    }
+
+    LOG.info("Timings of {} files written to {}", files.size(), reportFile);
+    for (FileTimings.Phase phase : FileTimings.Phase.values()) {
+      long[] nanos = sorted(timings.stream().mapToLong(t -> t.nanos(phase)).toArray());
+      LOG.info("  {}: total {} ms, p50 {} ms, p95 {} ms, p99 {} ms", phase.name().toLowerCase(Locale.ROOT), millis(Arrays.stream(nanos).sum()),
+        millis(percentile(nanos, 50)), millis(percentile(nanos, 95)), millis(percentile(nanos, 99)));
+    }
+    for (int index : slowestFiles.subList(0, Math.min(MAX_LOGGED_FILES, slowestFiles.size()))) {
+      FileTimings fileTimings = timings.get(index);
+      LOG.info("  {} ms (parse {} ms, scan {} ms): {}", millis(fileTimings.totalNanos()), millis(fileTimings.nanos(FileTimings.Phase.PARSE)),
+        millis(fileTimings.nanos(FileTimings.Phase.SCAN)), files.get(index));
+    }
+    return reportFile;
+  }
+
+  private List<Integer> slowestFiles() {
+    List<Integer> indexes = new ArrayList<>(files.size());
+    for (int i = 0; i < files.size(); i++) {
+      indexes.add(i);
+    }
+    indexes.sort(Comparator.comparingLong((Integer index) -> timings.get(index).totalNanos()).reversed());
+    return indexes;
+  }
+
+  private static JsonObject distribution(long[] nanos) {
+    long[] sortedNanos = sorted(nanos);
+    JsonObject distribution = new JsonObject();
+    distribution.addProperty("totalMs", millis(Arrays.stream(sortedNanos).sum()));
+    for (double percentile : PERCENTILES) {
+      distribution.addProperty("p" + (int) percentile + "Ms", millis(percentile(sortedNanos, percentile)));
+    }
+    distribution.addProperty("maxMs", millis(sortedNanos.length == 0 ? 0 : sortedNanos[sortedNanos.length - 1]));
+    return distribution;
+  }
+
+  private static long[] sorted(long[] values) {
+    long[] copy = values.clone();
+    Arrays.sort(copy);
+    return copy;
+  }
+
+  /**
+   * Nearest-rank percentile of sorted values, 0 when there is no value
+   */
+  static long percentile(long[] sortedValues, double percentile) {
+    if (sortedValues.length == 0) {
+      return 0;
+    }
+    int rank = (int) Math.ceil(percentile / 100 * sortedValues.length);
+    return sortedValues[Math.max(0, rank - 1)];
+  }
+
+  private static long millis(long nanos) {
+    return TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+}
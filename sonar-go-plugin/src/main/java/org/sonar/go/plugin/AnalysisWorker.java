@@ -0,0 +1,413 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.go.plugin;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.rule.Checks;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.check.RuleProperty;
+import org.sonar.commonruleengine.Engine;
+import org.sonar.commonruleengine.Issue;
+import org.sonar.commonruleengine.RuleProfiler;
+import org.sonar.commonruleengine.checks.Check;
+import org.sonar.commonruleengine.checks.NoIdenticalFunctionsCheck;
+import org.sonar.uast.UastListener;
+import org.sonar.uast.validators.Validator;
+
+/**
+ * Parses and scans files on a worker thread. Checks keep per-file state, so each worker owns its own
+ * check instances, rule engine and UAST generator process. Nothing is saved into the SensorContext here,
+ * results are handed over to the sensor thread. The analysis cache, when enabled, is shared by all the workers.
+ * <p>
+ * In incremental mode, the {@link FileAnalysis} of a file is also cached, keyed by the file content and by a version
+ * covering the plugin build, the generator and the active rules with their parameters, so an unchanged file is
+ * neither parsed nor scanned.
+ * <p>
+ * When a size threshold is configured, files larger than it, or whose streamed UAST would use too large a part of the
+ * heap share of a worker, are analyzed with a reduced pipeline: no rule is run, only metrics, highlighting and CPD tokens
+ * are computed, so that the subtrees kept in memory for the rules do not pile up. Such analyses are not cached, as the
+ * choice depends on the configuration and the heap.
+ */
+class AnalysisWorker implements Closeable {
+
+  private static final Logger LOG = Loggers.get(AnalysisWorker.class);
+
+  /**
+   * Rough estimate of the heap used while streaming a UAST, per byte of its serialized form: the serialized bytes plus,
+   * in the worst case of a file made of a single function, the deserialized subtree kept for the rules
+   */
+  static final int HEAP_BYTES_PER_SERIALIZED_UAST_BYTE = 4;
+
+  private final Checks<Check> checks;
+  private final Engine engine;
+  private final Engine reducedEngine;
+  private final long reducedAnalysisFileSize;
+  private final long heapShare;
+  private final UastGeneratorWrapper uastGenerator;
+  @Nullable
+  private final AnalysisCache analysisCache;
+  @Nullable
+  private final String fileAnalysisVersion;
+  @Nullable
+  private final NoIdenticalFunctionsCheck identicalFunctionsCheck;
+
+  /**
+   * @param pluginBuild identifies the plugin build, null to disable the incremental mode
+   * @param ruleProfiler measures the rules run by this worker, null to disable profiling
+   * @param functionFingerprints keeps the fingerprints of the functions in the file analyses, see {@link DuplicateFunctionIndex}
+   * @param reducedAnalysisFileSize size in bytes above which files are analyzed without rules, 0 to disable the reduced analysis
+   * @param analysisThreads number of workers sharing the heap
+   */
+  AnalysisWorker(Checks<Check> checks, UastGeneratorWrapper uastGenerator, @Nullable AnalysisCache analysisCache, @Nullable String pluginBuild,
+    @Nullable RuleProfiler ruleProfiler, boolean functionFingerprints, long reducedAnalysisFileSize,
+    int analysisThreads) {
+    this.checks = checks;
+    this.engine = new Engine(checks.all(), Validator.all(), ruleProfiler);
+    this.reducedEngine = new Engine(Collections.emptyList(), Collections.emptyList());
+    this.reducedAnalysisFileSize = reducedAnalysisFileSize;
+    this.heapShare = Runtime.getRuntime().maxMemory() / Math.max(1, analysisThreads);
+    this.uastGenerator = uastGenerator;
+    this.analysisCache = analysisCache;
+    this.identicalFunctionsCheck = functionFingerprints ? identicalFunctionsCheck(checks) : null;
+    if (identicalFunctionsCheck != null) {
+      identicalFunctionsCheck.collectFingerprints();
+    }
+    if (analysisCache != null && pluginBuild != null) {
+      fileAnalysisVersion = pluginBuild + "|" + uastGenerator.version() + "|" + rulesFingerprint(checks)
+        + (identicalFunctionsCheck != null ? "|functionFingerprints" : "");
+    } else {
+      fileAnalysisVersion = null;
+    }
+  }
+
+  Result analyze(InputFile inputFile) {
+    FileTimings timings = new FileTimings();
+    try {
+      byte[] content = readContent(inputFile);
+      CacheKeys cacheKeys = cacheKeys(inputFile, content);
+      timings.lap(FileTimings.Phase.READ);
+      Result cachedResult = cachedResult(inputFile, content.length, cacheKeys, timings);
+      if (cachedResult != null) {
+        return cachedResult;
+      }
+      byte[] serializedUast = uastGenerator.createSerializedUast(content);
+      timings.lap(FileTimings.Phase.PARSE);
+      put(cacheKeys.uast, serializedUast);
+      timings.lap(FileTimings.Phase.CACHE);
+      return analyze(inputFile, content.length, serializedUast, cacheKeys, timings);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      timings.lap(FileTimings.Phase.PARSE);
+      return new Result(inputFile, null, e, timings);
+    } catch (Exception e) {
+      timings.lap(FileTimings.Phase.PARSE);
+      return new Result(inputFile, null, e, timings);
+    }
+  }
+
+  /**
+   * Lets the UAST generator read the files from disk, see {@link UastGeneratorWrapper#createUasts}.
+   * Files are still read here when the analysis cache is enabled, to compute their cache keys.
+   * The files of a batch are parsed concurrently, so the parse time of a file is the time spent waiting for its UAST
+   * after the previous one was analyzed.
+   */
+  List<Result> analyzeBatch(List<InputFile> inputFiles, int parallelism) {
+    List<Result> results = new ArrayList<>(inputFiles.size());
+    Map<InputFile, CacheKeys> fileCacheKeys = new HashMap<>();
+    Map<InputFile, FileTimings> fileTimings = new HashMap<>();
+    List<InputFile> filesToParse = new ArrayList<>(inputFiles.size());
+    for (InputFile inputFile : inputFiles) {
+      FileTimings timings = new FileTimings();
+      fileTimings.put(inputFile, timings);
+      if (analysisCache == null) {
+        filesToParse.add(inputFile);
+        continue;
+      }
+      try {
+        byte[] content = readContent(inputFile);
+        CacheKeys cacheKeys = cacheKeys(inputFile, content);
+        fileCacheKeys.put(inputFile, cacheKeys);
+        timings.lap(FileTimings.Phase.READ);
+        Result cachedResult = cachedResult(inputFile, content.length, cacheKeys, timings);
+        if (cachedResult == null) {
+          filesToParse.add(inputFile);
+        } else {
+          results.add(cachedResult);
+        }
+      } catch (IOException e) {
+        timings.lap(FileTimings.Phase.READ);
+        results.add(new Result(inputFile, null, e, timings));
+      }
+    }
+    if (filesToParse.isEmpty()) {
+      return results;
+    }
+    long[] waitStart = {System.nanoTime()};
+    try {
+      uastGenerator.createUasts(filesToParse, parallelism, (inputFile, serializedUast, failure) -> {
+        FileTimings timings = fileTimings.get(inputFile);
+        timings.add(FileTimings.Phase.PARSE, System.nanoTime() - waitStart[0]);
+        timings.restart();
+        if (serializedUast == null) {
+          results.add(new Result(inputFile, null, failure, timings));
+        } else {
+          CacheKeys cacheKeys = fileCacheKeys.getOrDefault(inputFile, CacheKeys.NONE);
+          put(cacheKeys.uast, serializedUast);
+          timings.lap(FileTimings.Phase.CACHE);
+          results.add(analyze(inputFile, sourceSize(inputFile), serializedUast, cacheKeys, timings));
+        }
+        waitStart[0] = System.nanoTime();
+      });
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      addFailures(results, filesToParse, e, fileTimings);
+    } catch (Exception e) {
+      addFailures(results, filesToParse, e, fileTimings);
+    }
+    return results;
+  }
+
+  /**
+   * @param sourceSize size of the file in bytes, -1 when unknown
+   */
+  private Result analyze(InputFile inputFile, long sourceSize, byte[] serializedUast, CacheKeys cacheKeys, FileTimings timings) {
+    try {
+      boolean reduced = isReducedAnalysis(inputFile, sourceSize, serializedUast.length);
+      FileAnalysis fileAnalysis = analyze(inputFile, serializedUast, reduced);
+      timings.lap(FileTimings.Phase.SCAN);
+      if (cacheKeys.fileAnalysis != null && !reduced) {
+        put(cacheKeys.fileAnalysis, fileAnalysis.serialize());
+        timings.lap(FileTimings.Phase.CACHE);
+      }
+      return new Result(inputFile, fileAnalysis, null, timings);
+    } catch (Exception e) {
+      timings.lap(FileTimings.Phase.SCAN);
+      return new Result(inputFile, null, e, timings);
+    }
+  }
+
+  /**
+   * @return true when the file is too large to be analyzed with the rules, see {@link #HEAP_BYTES_PER_SERIALIZED_UAST_BYTE}
+   */
+  private boolean isReducedAnalysis(InputFile inputFile, long sourceSize, long serializedUastSize) {
+    if (reducedAnalysisFileSize <= 0) {
+      return false;
+    }
+    long estimatedHeapUsage = serializedUastSize * HEAP_BYTES_PER_SERIALIZED_UAST_BYTE;
+    if (sourceSize > reducedAnalysisFileSize || estimatedHeapUsage > heapShare / 2) {
+      LOG.warn("Analyzing {} ({} KB) without rules, only metrics, highlighting and duplications are computed. " +
+        "Estimated heap usage of its UAST: {} MB, heap share of an analysis thread: {} MB", inputFile, Math.max(0, sourceSize) / 1024,
+        estimatedHeapUsage / (1024 * 1024), heapShare / (1024 * 1024));
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * The UAST is streamed through the rule engine, so that only the subtrees needed by the rules are kept in memory.
+   * CPD tokens and highlighting are computed by the engine too, in the same walk as the rules and metrics.
+   *
+   * @param reduced no rule is run, see {@link #isReducedAnalysis}
+   */
+  private FileAnalysis analyze(InputFile inputFile, byte[] serializedUast, boolean reduced) throws IOException {
+    FileAnalysis fileAnalysis = new FileAnalysis();
+    HighlightingVisitor highlightingVisitor = new HighlightingVisitor(inputFile, fileAnalysis);
+    // FIXME currently *_test.go files are MAIN and not TEST, see issue #140
+    if (inputFile.type() == InputFile.Type.MAIN) {
+      CpdVisitor cpdVisitor = new CpdVisitor(inputFile, fileAnalysis);
+      Engine.ScanResult scanResult = (reduced ? reducedEngine : engine).scan(
+        listener -> UastGeneratorWrapper.read(serializedUast, listener),
+        inputFile,
+        Arrays.asList(cpdVisitor, highlightingVisitor));
+      for (Issue issue : scanResult.issues) {
+        // TODO improve common rule engine to handle this out of the box
+        RuleKey ruleKey = checks.ruleKey(issue.getCheck());
+        Objects.requireNonNull(ruleKey, "Rule key not found for " + issue.getCheck().getClass());
+        fileAnalysis.addIssue(inputFile, ruleKey, issue);
+      }
+      fileAnalysis.setMetrics(scanResult.metrics);
+      if (identicalFunctionsCheck != null && !reduced) {
+        for (NoIdenticalFunctionsCheck.FunctionFingerprint fingerprint : identicalFunctionsCheck.fingerprints()) {
+          fileAnalysis.addFunction(inputFile, fingerprint.value, fingerprint.function.node(), fingerprint.function.name());
+        }
+      }
+    } else {
+      UastGeneratorWrapper.read(serializedUast, UastListener.of(highlightingVisitor));
+    }
+    return fileAnalysis;
+  }
+
+  /**
+   * @return the cached file analysis, or the analysis of the cached UAST, or null when the file has to be parsed
+   */
+  @CheckForNull
+  private Result cachedResult(InputFile inputFile, long sourceSize, CacheKeys cacheKeys, FileTimings timings) {
+    if (analysisCache == null) {
+      return null;
+    }
+    if (cacheKeys.fileAnalysis != null) {
+      byte[] serializedFileAnalysis = analysisCache.get(cacheKeys.fileAnalysis);
+      if (serializedFileAnalysis != null) {
+        try {
+          FileAnalysis fileAnalysis = FileAnalysis.deserialize(serializedFileAnalysis);
+          timings.lap(FileTimings.Phase.CACHE);
+          return new Result(inputFile, fileAnalysis, null, timings);
+        } catch (IOException e) {
+          // corrupted entry, the file is analyzed again
+        }
+      }
+    }
+    byte[] serializedUast = analysisCache.get(cacheKeys.uast);
+    timings.lap(FileTimings.Phase.CACHE);
+    return serializedUast == null ? null : analyze(inputFile, sourceSize, serializedUast, cacheKeys, timings);
+  }
+
+  private CacheKeys cacheKeys(InputFile inputFile, byte[] content) {
+    if (analysisCache == null) {
+      return CacheKeys.NONE;
+    }
+    String uastKey = AnalysisCache.key(uastGenerator.version(), content);
+    String fileAnalysisKey = null;
+    if (fileAnalysisVersion != null) {
+      fileAnalysisKey = AnalysisCache.key(fileAnalysisVersion + "|" + inputFile.type(), content);
+    }
+    return new CacheKeys(uastKey, fileAnalysisKey);
+  }
+
+  private void put(@Nullable String cacheKey, byte[] data) {
+    if (analysisCache != null && cacheKey != null) {
+      analysisCache.put(cacheKey, data);
+    }
+  }
+
+  @CheckForNull
+  private static NoIdenticalFunctionsCheck identicalFunctionsCheck(Checks<Check> checks) {
+    return checks.all().stream()
+      .filter(NoIdenticalFunctionsCheck.class::isInstance)
+      .map(NoIdenticalFunctionsCheck.class::cast)
+      .findFirst()
+      .orElse(null);
+  }
+
+  /**
+   * Active rules and the values of their parameters
+   */
+  static String rulesFingerprint(Checks<Check> checks) {
+    return checks.all().stream()
+      .map(check -> checks.ruleKey(check) + ruleProperties(check))
+      .sorted()
+      .collect(Collectors.joining(";"));
+  }
+
+  private static String ruleProperties(Check check) {
+    StringBuilder properties = new StringBuilder();
+    for (Class<?> checkClass = check.getClass(); checkClass != null; checkClass = checkClass.getSuperclass()) {
+      for (Field field : checkClass.getDeclaredFields()) {
+        if (field.isAnnotationPresent(RuleProperty.class)) {
+          field.setAccessible(true);
+          try {
+            properties.append(',').append(field.getName()).append('=').append(field.get(check));
+          } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+          }
+        }
+      }
+    }
+    return properties.toString();
+  }
+
+  /**
+   * @return the size of a file read from disk by the UAST generator, -1 when unknown
+   */
+  private static long sourceSize(InputFile inputFile) {
+    try {
+      return Files.size(Paths.get(inputFile.uri()));
+    } catch (IOException | RuntimeException e) {
+      return -1;
+    }
+  }
+
+  private static byte[] readContent(InputFile inputFile) throws IOException {
+    try (InputStream inputStream = inputFile.inputStream()) {
+      return UastGeneratorWrapper.readAllBytes(inputStream);
+    }
+  }
+
+  private static void addFailures(List<Result> results, List<InputFile> inputFiles, Exception failure, Map<InputFile, FileTimings> fileTimings) {
+    Set<InputFile> analyzedFiles = results.stream().map(result -> result.inputFile).collect(Collectors.toSet());
+    inputFiles.stream()
+      .filter(inputFile -> !analyzedFiles.contains(inputFile))
+      .forEach(inputFile -> results.add(new Result(inputFile, null, failure, fileTimings.get(inputFile))));
+  }
+
+  @Override
+  public void close() {
+    uastGenerator.close();
+  }
+
+  private static class CacheKeys {
+    private static final CacheKeys NONE = new CacheKeys(null, null);
+
+    @Nullable
+    private final String uast;
+    @Nullable
+    private final String fileAnalysis;
+
+    private CacheKeys(@Nullable String uast, @Nullable String fileAnalysis) {
+      this.uast = uast;
+      this.fileAnalysis = fileAnalysis;
+    }
+  }
+
+  static class Result {
+    final InputFile inputFile;
+    @Nullable
+    final FileAnalysis fileAnalysis;
+    @Nullable
+    final Exception failure;
+    final FileTimings timings;
+
+    private Result(InputFile inputFile, @Nullable FileAnalysis fileAnalysis, @Nullable Exception failure, FileTimings timings) {
+      this.inputFile = inputFile;
+      this.fileAnalysis = fileAnalysis;
+      this.failure = failure;
+      this.timings = timings;
+    }
+  }
+}
@@ -0,0 +1,320 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.go.plugin;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Parses the coverage profiles written by "go test -coverprofile", whose lines are "mode: set|count|atomic" followed by
+ * one line per block: "file:startLine.startCol,endLine.endCol numStmt count".
+ * See the ParseProfiles function: https://github.com/golang/go/blob/master/src/cmd/cover/profile.go
+ * <p>
+ * The profiles of large projects weigh gigabytes, so the lines are decoded from the bytes read from a file channel
+ * without building a String nor a Matcher per line: the numbers are parsed from the end of the line, as the file path
+ * may contain ':', and the file paths, which repeat for every block of a file, are decoded once and shared.
+ * <p>
+ * A report can be split in {@link Chunk}s of whole lines, parsed independently, only the first one starts with the mode line.
+ */
+final class CoverageProfileParser {
+
+  static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  private static final byte[] MODE_PREFIX = "mode: ".getBytes(UTF_8);
+
+  interface BlockConsumer {
+    void accept(String filePath, int startLine, int startCol, int endLine, int endCol, int numStmt, int count);
+  }
+
+  /**
+   * Byte range of a report, from the start of a line to the start of another line or the end of the report
+   */
+  static final class Chunk {
+    static final Chunk WHOLE_REPORT = new Chunk(0, Long.MAX_VALUE);
+
+    final long start;
+    final long end;
+
+    Chunk(long start, long end) {
+      this.start = start;
+      this.end = end;
+    }
+  }
+
+  private final Path reportPath;
+  private final Chunk chunk;
+  private final BlockConsumer consumer;
+  private final Map<String, String> filePaths = new HashMap<>();
+  private byte[] line = new byte[256];
+  private int lineLength = 0;
+  private int lineNumber = 0;
+  private byte[] lastFilePath = new byte[0];
+  private int lastFilePathLength = -1;
+  private String lastFilePathValue = null;
+  // position of the last parsed field, from the end of the line
+  private int position;
+
+  private CoverageProfileParser(Path reportPath, Chunk chunk, BlockConsumer consumer) {
+    this.reportPath = reportPath;
+    this.chunk = chunk;
+    this.consumer = consumer;
+  }
+
+  static void parse(Path reportPath, BlockConsumer consumer) throws IOException {
+    parse(reportPath, Chunk.WHOLE_REPORT, consumer, DEFAULT_BUFFER_SIZE);
+  }
+
+  static void parse(Path reportPath, BlockConsumer consumer, int bufferSize) throws IOException {
+    parse(reportPath, Chunk.WHOLE_REPORT, consumer, bufferSize);
+  }
+
+  static void parse(Path reportPath, Chunk chunk, BlockConsumer consumer) throws IOException {
+    parse(reportPath, chunk, consumer, DEFAULT_BUFFER_SIZE);
+  }
+
+  private static void parse(Path reportPath, Chunk chunk, BlockConsumer consumer, int bufferSize) throws IOException {
+    CoverageProfileParser parser = new CoverageProfileParser(reportPath, chunk, consumer);
+    try (FileChannel channel = FileChannel.open(reportPath, StandardOpenOption.READ)) {
+      channel.position(chunk.start);
+      ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+      byte[] bytes = buffer.array();
+      long remaining = chunk.end - chunk.start;
+      while (remaining > 0) {
+        if (remaining < bufferSize) {
+          buffer.limit((int) remaining);
+        }
+        int read = channel.read(buffer);
+        if (read == -1) {
+          break;
+        }
+        parser.feed(bytes, buffer.position());
+        remaining -= read;
+        buffer.clear();
+      }
+    }
+    parser.endOfInput();
+  }
+
+  /**
+   * Splits a report in chunks of about {@code chunkSize} bytes, which end with a line
+   */
+  static List<Chunk> chunks(Path reportPath, long chunkSize) throws IOException {
+    List<Chunk> chunks = new ArrayList<>();
+    try (FileChannel channel = FileChannel.open(reportPath, StandardOpenOption.READ)) {
+      long size = channel.size();
+      ByteBuffer buffer = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
+      long start = 0;
+      do {
+        long end = size - start > chunkSize ? nextLineStart(channel, start + chunkSize, buffer) : size;
+        chunks.add(new Chunk(start, end));
+        start = end;
+      } while (start < size);
+    }
+    return chunks;
+  }
+
+  /**
+   * @return the position following the first line feed at or after {@code position - 1}, or the end of the channel
+   */
+  private static long nextLineStart(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+    long offset = position - 1;
+    while (true) {
+      buffer.clear();
+      int read = channel.read(buffer, offset);
+      if (read == -1) {
+        return channel.size();
+      }
+      byte[] bytes = buffer.array();
+      for (int i = 0; i < read; i++) {
+        if (bytes[i] == '\n') {
+          return offset + i + 1;
+        }
+      }
+      offset += read;
+    }
+  }
+
+  private void feed(byte[] bytes, int length) throws IOException {
+    int lineStart = 0;
+    for (int i = 0; i < length; i++) {
+      if (bytes[i] == '\n') {
+        append(bytes, lineStart, i);
+        endOfLine();
+        lineStart = i + 1;
+      }
+    }
+    append(bytes, lineStart, length);
+  }
+
+  private void append(byte[] bytes, int from, int to) {
+    int length = to - from;
+    if (lineLength + length > line.length) {
+      line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+    }
+    System.arraycopy(bytes, from, line, lineLength, length);
+    lineLength += length;
+  }
+
+  private void endOfInput() throws IOException {
+    if (lineLength > 0 || (lineNumber == 0 && chunk.start == 0)) {
+      endOfLine();
+    }
+  }
+
+  private void endOfLine() throws IOException {
+    lineNumber++;
+    if (lineLength > 0 && line[lineLength - 1] == '\r') {
+      lineLength--;
+    }
+    if (lineNumber == 1 && chunk.start == 0) {
+      if (!isModeLine()) {
+        throw new IOException("Invalid go coverage, expect 'mode:' on the first line.");
+      }
+    } else if (lineLength > 0) {
+      parseBlock();
+    }
+    lineLength = 0;
+  }
+
+  private boolean isModeLine() {
+    if (lineLength <= MODE_PREFIX.length) {
+      return false;
+    }
+    for (int i = 0; i < MODE_PREFIX.length; i++) {
+      if (line[i] != MODE_PREFIX[i]) {
+        return false;
+      }
+    }
+    for (int i = MODE_PREFIX.length; i < lineLength; i++) {
+      byte b = line[i];
+      if (!(isDigit(b) || (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || b == '_')) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void parseBlock() {
+    position = lineLength;
+    int count = previousNumber(' ');
+    int numStmt = previousNumber(' ');
+    int endCol = previousNumber('.');
+    int endLine = previousNumber(',');
+    int startCol = previousNumber('.');
+    int startLine = previousNumber(':');
+    if (position == 0) {
+      throw invalidLine();
+    }
+    consumer.accept(filePath(position), startLine, startCol, endLine, endCol, numStmt, count);
+  }
+
+  /**
+   * Parses the number ending before {@link #position}, and moves {@link #position} to the separator preceding it
+   */
+  private int previousNumber(char separator) {
+    int end = position;
+    int start = end;
+    while (start > 0 && isDigit(line[start - 1])) {
+      start--;
+    }
+    if (start == end || start == 0 || line[start - 1] != separator || end - start > 10) {
+      throw invalidLine();
+    }
+    long value = 0;
+    for (int i = start; i < end; i++) {
+      value = value * 10 + (line[i] - '0');
+    }
+    if (value > Integer.MAX_VALUE) {
+      throw invalidLine();
+    }
+    position = start - 1;
+    return (int) value;
+  }
+
+  private String filePath(int length) {
+    if (length != lastFilePathLength || !startsWith(lastFilePath, length)) {
+      if (lastFilePath.length < length) {
+        lastFilePath = new byte[length];
+      }
+      System.arraycopy(line, 0, lastFilePath, 0, length);
+      lastFilePathLength = length;
+      String filePath = new String(line, 0, length, UTF_8);
+      lastFilePathValue = filePaths.computeIfAbsent(filePath, path -> path);
+    }
+    return lastFilePathValue;
+  }
+
+  private boolean startsWith(byte[] prefix, int length) {
+    for (int i = 0; i < length; i++) {
+      if (line[i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private IllegalArgumentException invalidLine() {
+    return new IllegalArgumentException("Invalid go coverage at line " + (linesBeforeChunk() + lineNumber));
+  }
+
+  private long linesBeforeChunk() {
+    long lines = 0;
+    if (chunk.start == 0) {
+      return lines;
+    }
+    try (FileChannel channel = FileChannel.open(reportPath, StandardOpenOption.READ)) {
+      ByteBuffer buffer = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
+      long offset = 0;
+      while (offset < chunk.start) {
+        buffer.clear();
+        buffer.limit((int) Math.min(buffer.capacity(), chunk.start - offset));
+        int read = channel.read(buffer, offset);
+        if (read == -1) {
+          break;
+        }
+        for (int i = 0; i < read; i++) {
+          if (buffer.get(i) == '\n') {
+            lines++;
+          }
+        }
+        offset += read;
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return lines;
+  }
+
+  private static boolean isDigit(byte b) {
+    return b >= '0' && b <= '9';
+  }
+
+}
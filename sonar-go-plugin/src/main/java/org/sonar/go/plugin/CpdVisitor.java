@@ -20,27 +20,56 @@
 package org.sonar.go.plugin;
 
 import org.sonar.api.batch.fs.InputFile;
-import org.sonar.api.batch.sensor.SensorContext;
-import org.sonar.api.batch.sensor.cpd.NewCpdTokens;
+import org.sonar.uast.UastListener;
 import org.sonar.uast.UastNode;
+import org.sonar.uast.Visitor;
 
 import static org.sonar.go.plugin.utils.PluginApiUtils.newRange;
 
-public class CpdVisitor {
+/**
+ * Visits all the nodes of a file, see {@link org.sonar.commonruleengine.Engine#scan(UastListener.Source, InputFile, java.util.List)}
+ */
+public class CpdVisitor extends Visitor {
 
   private final InputFile inputFile;
-  private final NewCpdTokens cpdTokens;
+  private final FileAnalysis fileAnalysis;
+  /**
+   * Depth of the visited nodes inside a comment or the end of file, which are ignored
+   */
+  private int ignoredDepth = 0;
 
-  CpdVisitor(SensorContext sensorContext, InputFile inputFile) {
+  CpdVisitor(InputFile inputFile, FileAnalysis fileAnalysis) {
     this.inputFile = inputFile;
-    cpdTokens = sensorContext.newCpdTokens().onFile(inputFile);
+    this.fileAnalysis = fileAnalysis;
   }
 
   public void scan(UastNode node) {
-    if (node.is(UastNode.Kind.COMMENT, UastNode.Kind.EOF)) {
-      return;
+    visitNode(node);
+    node.children.forEach(this::scan);
+    leaveNode(node);
+  }
+
+  @Override
+  public void visitNode(UastNode node) {
+    if (ignoredDepth > 0 || isIgnored(node)) {
+      ignoredDepth++;
+    } else {
+      visitToken(node);
     }
+  }
+
+  @Override
+  public void leaveNode(UastNode node) {
+    if (ignoredDepth > 0) {
+      ignoredDepth--;
+    }
+  }
 
+  private static boolean isIgnored(UastNode node) {
+    return node.is(UastNode.Kind.COMMENT, UastNode.Kind.EOF);
+  }
+
+  private void visitToken(UastNode node) {
     UastNode.Token token = node.token;
     if (token != null) {
       String text = token.value;
@@ -48,16 +77,8 @@ public class CpdVisitor {
         text = "LITERAL";
       }
 
-      cpdTokens.addToken(newRange(inputFile, token), text);
-    }
-
-    for (UastNode child : node.children) {
-      scan(child);
+      fileAnalysis.addCpdToken(newRange(inputFile, token), text);
     }
   }
 
-  public void save() {
-    cpdTokens.save();
-  }
-
 }
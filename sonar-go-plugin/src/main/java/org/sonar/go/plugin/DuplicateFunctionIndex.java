@@ -0,0 +1,183 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.go.plugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.TextRange;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.issue.NewIssue;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Fingerprints of the functions of all the files of the module, see
+ * {@link org.sonar.commonruleengine.checks.NoIdenticalFunctionsCheck#fingerprints()}, used to report the functions which
+ * are identical with a function of another file once all the files are analyzed. Identical functions of the same file
+ * are reported by the check itself.
+ * <p>
+ * No UAST is kept: functions with the same fingerprint are considered identical, and only primitive arrays are kept per
+ * function, 32 bytes. At most {@code maxFunctions} functions are indexed, so the memory used is bounded whatever the
+ * size of the module.
+ */
+class DuplicateFunctionIndex {
+
+  private static final Logger LOG = Loggers.get(DuplicateFunctionIndex.class);
+
+  static final int MAX_FUNCTIONS_DEFAULT_VALUE = 500_000;
+  private static final int INITIAL_CAPACITY = 1024;
+  // line of the function, and start line, start line offset, end line, end line offset of its name
+  private static final int POSITIONS = 5;
+
+  private final int maxFunctions;
+  private final List<InputFile> files = new ArrayList<>();
+  private long[] fingerprints = new long[INITIAL_CAPACITY];
+  private int[] fileIndexes = new int[INITIAL_CAPACITY];
+  private int[] positions = new int[INITIAL_CAPACITY * POSITIONS];
+  private int size = 0;
+  private boolean full = false;
+
+  DuplicateFunctionIndex(int maxFunctions) {
+    this.maxFunctions = maxFunctions;
+  }
+
+  /**
+   * Functions are added file by file, by the sensor thread
+   */
+  void add(InputFile inputFile, long fingerprint, int line, TextRange name) {
+    if (size == maxFunctions) {
+      if (!full) {
+        LOG.warn("Only the first {} functions are compared with the functions of other files", maxFunctions);
+        full = true;
+      }
+      return;
+    }
+    if (files.isEmpty() || files.get(files.size() - 1) != inputFile) {
+      files.add(inputFile);
+    }
+    if (size == fingerprints.length) {
+      int capacity = (int) Math.min(maxFunctions, 2L * size);
+      fingerprints = Arrays.copyOf(fingerprints, capacity);
+      fileIndexes = Arrays.copyOf(fileIndexes, capacity);
+      positions = Arrays.copyOf(positions, capacity * POSITIONS);
+    }
+    fingerprints[size] = fingerprint;
+    fileIndexes[size] = files.size() - 1;
+    int offset = size * POSITIONS;
+    positions[offset] = line;
+    positions[offset + 1] = name.start().line();
+    positions[offset + 2] = name.start().lineOffset();
+    positions[offset + 3] = name.end().line();
+    positions[offset + 4] = name.end().lineOffset();
+    size++;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * In each group of functions with the same fingerprint, the function of the first file by path is the original one.
+   * An issue is reported on the first function of each other file of the group, the next ones being reported by the
+   * check on the file.
+   *
+   * @return the number of issues
+   */
+  int reportIssues(SensorContext context, RuleKey ruleKey) {
+    List<Integer> duplicated = duplicatedFunctions();
+    duplicated.sort(Comparator.<Integer>comparingLong(function -> fingerprints[function])
+      .thenComparing(function -> files.get(fileIndexes[function]).toString())
+      .thenComparingInt(function -> positions[function * POSITIONS]));
+    int issues = 0;
+    int original = -1;
+    int previous = -1;
+    for (int function : duplicated) {
+      if (original < 0 || fingerprints[function] != fingerprints[original]) {
+        original = function;
+      } else if (fileIndexes[function] != fileIndexes[original] && fileIndexes[function] != fileIndexes[previous]) {
+        reportIssue(context, ruleKey, function, original);
+        issues++;
+      }
+      previous = function;
+    }
+    if (issues > 0) {
+      LOG.info("{} functions identical with a function of another file", issues);
+    }
+    return issues;
+  }
+
+  /**
+   * @return the functions whose fingerprint is shared with another function, found without boxing all the fingerprints
+   */
+  private List<Integer> duplicatedFunctions() {
+    long[] sorted = Arrays.copyOf(fingerprints, size);
+    Arrays.sort(sorted);
+    int duplicatedCount = 0;
+    for (int i = 1; i < sorted.length; i++) {
+      if (isFirstDuplicate(sorted, i)) {
+        duplicatedCount++;
+      }
+    }
+    long[] duplicatedFingerprints = new long[duplicatedCount];
+    duplicatedCount = 0;
+    for (int i = 1; i < sorted.length; i++) {
+      if (isFirstDuplicate(sorted, i)) {
+        duplicatedFingerprints[duplicatedCount] = sorted[i];
+        duplicatedCount++;
+      }
+    }
+    List<Integer> duplicated = new ArrayList<>();
+    for (int function = 0; function < size; function++) {
+      if (Arrays.binarySearch(duplicatedFingerprints, fingerprints[function]) >= 0) {
+        duplicated.add(function);
+      }
+    }
+    return duplicated;
+  }
+
+  private static boolean isFirstDuplicate(long[] sorted, int i) {
+    return sorted[i] == sorted[i - 1] && (i == 1 || sorted[i - 2] != sorted[i]);
+  }
+
+  private void reportIssue(SensorContext context, RuleKey ruleKey, int function, int original) {
+    InputFile inputFile = files.get(fileIndexes[function]);
+    InputFile originalFile = files.get(fileIndexes[original]);
+    NewIssue newIssue = context.newIssue();
+    newIssue.forRule(ruleKey)
+      .at(newIssue.newLocation()
+        .on(inputFile)
+        .at(name(inputFile, function))
+        .message("Function is identical with function in \"" + originalFile + "\" on line " + positions[original * POSITIONS] + "."))
+      .addLocation(newIssue.newLocation()
+        .on(originalFile)
+        .at(name(originalFile, original))
+        .message("Original implementation"))
+      .save();
+  }
+
+  private TextRange name(InputFile inputFile, int function) {
+    int offset = function * POSITIONS;
+    return inputFile.newRange(positions[offset + 1], positions[offset + 2], positions[offset + 3], positions[offset + 4]);
+  }
+}
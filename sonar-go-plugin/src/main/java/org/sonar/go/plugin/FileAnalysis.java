@@ -0,0 +1,397 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.go.plugin;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.TextRange;
+import org.sonar.api.batch.measure.Metric;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.cpd.NewCpdTokens;
+import org.sonar.api.batch.sensor.highlighting.NewHighlighting;
+import org.sonar.api.batch.sensor.highlighting.TypeOfText;
+import org.sonar.api.batch.sensor.issue.NewIssue;
+import org.sonar.api.batch.sensor.issue.NewIssueLocation;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.FileLinesContext;
+import org.sonar.api.measures.FileLinesContextFactory;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.commonruleengine.Issue;
+import org.sonar.commonruleengine.LineSet;
+import org.sonar.commonruleengine.Metrics;
+import org.sonar.uast.UastNode;
+
+import static org.sonar.go.plugin.utils.PluginApiUtils.newRange;
+
+/**
+ * Everything saved into the SensorContext for a file: issues, metrics, highlighting and CPD tokens. It is computed by an
+ * analysis worker, saved by the sensor thread, and can be serialized so that the next analysis replays it when neither
+ * the file nor the active rules changed. The fingerprints of its functions are kept too, when identical functions are
+ * looked for across files, see {@link DuplicateFunctionIndex}.
+ */
+class FileAnalysis {
+
+  private static final int FORMAT_VERSION = 2;
+  private static final TypeOfText[] TYPES_OF_TEXT = TypeOfText.values();
+
+  private final List<FileIssue> issues = new ArrayList<>();
+  @Nullable
+  private Metrics metrics = null;
+  private final List<Range> highlightingRanges = new ArrayList<>();
+  private final List<TypeOfText> highlightingTypes = new ArrayList<>();
+  @Nullable
+  private List<Range> cpdRanges = null;
+  @Nullable
+  private List<String> cpdImages = null;
+  private final List<IndexedFunction> functions = new ArrayList<>();
+
+  void addIssue(InputFile inputFile, RuleKey ruleKey, Issue issue) {
+    Range primaryRange = null;
+    int line = 0;
+    if (issue.hasNodeLocation()) {
+      primaryRange = new Range(newRange(inputFile, issue.getPrimary().from, issue.getPrimary().to));
+    } else if (issue.hasLineLocation()) {
+      line = issue.getPrimary().line;
+    }
+    FileIssue fileIssue = new FileIssue(ruleKey.toString(), issue.getMessage(), primaryRange, line, issue.getEffortToFix());
+    for (Issue.Message secondary : issue.getSecondaries()) {
+      fileIssue.secondaryRanges.add(new Range(newRange(inputFile, secondary.from, secondary.to)));
+      fileIssue.secondaryMessages.add(secondary.description == null ? "" : secondary.description);
+    }
+    issues.add(fileIssue);
+  }
+
+  void setMetrics(Metrics metrics) {
+    this.metrics = metrics;
+  }
+
+  void highlight(TextRange range, TypeOfText typeOfText) {
+    highlightingRanges.add(new Range(range));
+    highlightingTypes.add(typeOfText);
+  }
+
+  void addCpdToken(TextRange range, String image) {
+    if (cpdRanges == null) {
+      cpdRanges = new ArrayList<>();
+      cpdImages = new ArrayList<>();
+    }
+    cpdRanges.add(new Range(range));
+    cpdImages.add(image);
+  }
+
+  /**
+   * @param fingerprint see {@link org.sonar.commonruleengine.checks.NoIdenticalFunctionsCheck#fingerprints()}
+   */
+  void addFunction(InputFile inputFile, long fingerprint, UastNode function, UastNode name) {
+    functions.add(new IndexedFunction(fingerprint, function.firstToken().line, new Range(newRange(inputFile, name, name))));
+  }
+
+  void indexFunctions(InputFile inputFile, DuplicateFunctionIndex index) {
+    for (IndexedFunction function : functions) {
+      index.add(inputFile, function.fingerprint, function.line, function.name.toTextRange(inputFile));
+    }
+  }
+
+  void save(SensorContext context, InputFile inputFile, FileLinesContextFactory fileLinesContextFactory) {
+    issues.forEach(issue -> issue.save(context, inputFile));
+    if (metrics != null) {
+      saveMetrics(metrics, context, inputFile, fileLinesContextFactory);
+    }
+    if (cpdRanges != null) {
+      NewCpdTokens cpdTokens = context.newCpdTokens().onFile(inputFile);
+      for (int i = 0; i < cpdRanges.size(); i++) {
+        cpdTokens.addToken(cpdRanges.get(i).toTextRange(inputFile), cpdImages.get(i));
+      }
+      cpdTokens.save();
+    }
+    NewHighlighting highlighting = context.newHighlighting().onFile(inputFile);
+    for (int i = 0; i < highlightingRanges.size(); i++) {
+      highlighting.highlight(highlightingRanges.get(i).toTextRange(inputFile), highlightingTypes.get(i));
+    }
+    highlighting.save();
+  }
+
+  private static void saveMetrics(Metrics metrics, SensorContext context, InputFile inputFile, FileLinesContextFactory fileLinesContextFactory) {
+    saveMetric(context, inputFile, CoreMetrics.NCLOC, metrics.linesOfCode.size());
+    saveMetric(context, inputFile, CoreMetrics.COMMENT_LINES, metrics.commentLines.size());
+    saveMetric(context, inputFile, CoreMetrics.CLASSES, metrics.numberOfClasses);
+    saveMetric(context, inputFile, CoreMetrics.FUNCTIONS, metrics.numberOfFunctions);
+    saveMetric(context, inputFile, CoreMetrics.STATEMENTS, metrics.numberOfStatements);
+    saveMetric(context, inputFile, CoreMetrics.COGNITIVE_COMPLEXITY, metrics.cognitiveComplexity);
+
+    FileLinesContext linesContext = fileLinesContextFactory.createFor(inputFile);
+    saveLinesMetrics(linesContext, metrics.linesOfCode, CoreMetrics.NCLOC_DATA_KEY);
+    saveLinesMetrics(linesContext, metrics.executableLines, CoreMetrics.EXECUTABLE_LINES_DATA_KEY);
+    linesContext.save();
+  }
+
+  private static void saveLinesMetrics(FileLinesContext linesContext, LineSet lines, String metricKey) {
+    lines.forEach(line -> linesContext.setIntValue(metricKey, line, 1));
+  }
+
+  private static <T extends Serializable> void saveMetric(SensorContext context, InputFile inputFile, Metric<T> metric, T value) {
+    context.<T>newMeasure()
+      .on(inputFile)
+      .forMetric(metric)
+      .withValue(value)
+      .save();
+  }
+
+  byte[] serialize() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeByte(FORMAT_VERSION);
+    out.writeInt(issues.size());
+    for (FileIssue issue : issues) {
+      issue.write(out);
+    }
+    out.writeBoolean(metrics != null);
+    if (metrics != null) {
+      out.writeInt(metrics.numberOfClasses);
+      out.writeInt(metrics.numberOfFunctions);
+      out.writeInt(metrics.numberOfStatements);
+      out.writeInt(metrics.cognitiveComplexity);
+      writeLines(out, metrics.linesOfCode);
+      writeLines(out, metrics.executableLines);
+      writeLines(out, metrics.commentLines);
+    }
+    out.writeInt(highlightingRanges.size());
+    for (int i = 0; i < highlightingRanges.size(); i++) {
+      highlightingRanges.get(i).write(out);
+      out.writeByte(highlightingTypes.get(i).ordinal());
+    }
+    out.writeBoolean(cpdRanges != null);
+    if (cpdRanges != null) {
+      out.writeInt(cpdRanges.size());
+      for (int i = 0; i < cpdRanges.size(); i++) {
+        cpdRanges.get(i).write(out);
+        writeString(out, cpdImages.get(i));
+      }
+    }
+    out.writeInt(functions.size());
+    for (IndexedFunction function : functions) {
+      out.writeLong(function.fingerprint);
+      out.writeInt(function.line);
+      function.name.write(out);
+    }
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  static FileAnalysis deserialize(byte[] data) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+    int version = in.readUnsignedByte();
+    if (version != FORMAT_VERSION) {
+      throw new IOException("Unsupported file analysis format version: " + version);
+    }
+    FileAnalysis fileAnalysis = new FileAnalysis();
+    int issueCount = in.readInt();
+    for (int i = 0; i < issueCount; i++) {
+      fileAnalysis.issues.add(FileIssue.read(in));
+    }
+    if (in.readBoolean()) {
+      Metrics metrics = new Metrics();
+      metrics.numberOfClasses = in.readInt();
+      metrics.numberOfFunctions = in.readInt();
+      metrics.numberOfStatements = in.readInt();
+      metrics.cognitiveComplexity = in.readInt();
+      metrics.linesOfCode = readLines(in);
+      metrics.executableLines = readLines(in);
+      metrics.commentLines = readLines(in);
+      fileAnalysis.metrics = metrics;
+    }
+    int highlightingCount = in.readInt();
+    for (int i = 0; i < highlightingCount; i++) {
+      fileAnalysis.highlightingRanges.add(Range.read(in));
+      fileAnalysis.highlightingTypes.add(TYPES_OF_TEXT[in.readUnsignedByte()]);
+    }
+    if (in.readBoolean()) {
+      int cpdTokenCount = in.readInt();
+      fileAnalysis.cpdRanges = new ArrayList<>(cpdTokenCount);
+      fileAnalysis.cpdImages = new ArrayList<>(cpdTokenCount);
+      for (int i = 0; i < cpdTokenCount; i++) {
+        fileAnalysis.cpdRanges.add(Range.read(in));
+        fileAnalysis.cpdImages.add(readString(in));
+      }
+    }
+    int functionCount = in.readInt();
+    for (int i = 0; i < functionCount; i++) {
+      fileAnalysis.functions.add(new IndexedFunction(in.readLong(), in.readInt(), Range.read(in)));
+    }
+    if (in.available() > 0) {
+      throw new IOException("Unexpected data after the file analysis");
+    }
+    return fileAnalysis;
+  }
+
+  private static void writeLines(DataOutputStream out, LineSet lines) throws IOException {
+    out.writeInt(lines.size());
+    for (int line : lines.toArray()) {
+      out.writeInt(line);
+    }
+  }
+
+  private static LineSet readLines(DataInputStream in) throws IOException {
+    int size = in.readInt();
+    LineSet lines = new LineSet();
+    for (int i = 0; i < size; i++) {
+      lines.add(in.readInt());
+    }
+    return lines;
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static class FileIssue {
+    private final String ruleKey;
+    private final String message;
+    @Nullable
+    private final Range primaryRange;
+    /**
+     * 0 when the issue is on the file or on a range
+     */
+    private final int line;
+    @Nullable
+    private final Double effortToFix;
+    private final List<Range> secondaryRanges = new ArrayList<>();
+    private final List<String> secondaryMessages = new ArrayList<>();
+
+    private FileIssue(String ruleKey, String message, @Nullable Range primaryRange, int line, @Nullable Double effortToFix) {
+      this.ruleKey = ruleKey;
+      this.message = message;
+      this.primaryRange = primaryRange;
+      this.line = line;
+      this.effortToFix = effortToFix;
+    }
+
+    private void save(SensorContext context, InputFile inputFile) {
+      NewIssue newIssue = context.newIssue();
+      NewIssueLocation location = newIssue.newLocation()
+        .on(inputFile)
+        .message(message);
+      if (primaryRange != null) {
+        location.at(primaryRange.toTextRange(inputFile));
+      } else if (line > 0) {
+        location.at(inputFile.selectLine(line));
+      }
+      newIssue.forRule(RuleKey.parse(ruleKey)).at(location).gap(effortToFix);
+
+      for (int i = 0; i < secondaryRanges.size(); i++) {
+        newIssue.addLocation(newIssue.newLocation()
+          .on(inputFile)
+          .at(secondaryRanges.get(i).toTextRange(inputFile))
+          .message(secondaryMessages.get(i)));
+      }
+
+      newIssue.save();
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+      writeString(out, ruleKey);
+      writeString(out, message);
+      out.writeBoolean(primaryRange != null);
+      if (primaryRange != null) {
+        primaryRange.write(out);
+      }
+      out.writeInt(line);
+      out.writeBoolean(effortToFix != null);
+      if (effortToFix != null) {
+        out.writeDouble(effortToFix);
+      }
+      out.writeInt(secondaryRanges.size());
+      for (int i = 0; i < secondaryRanges.size(); i++) {
+        secondaryRanges.get(i).write(out);
+        writeString(out, secondaryMessages.get(i));
+      }
+    }
+
+    private static FileIssue read(DataInputStream in) throws IOException {
+      String ruleKey = readString(in);
+      String message = readString(in);
+      Range primaryRange = in.readBoolean() ? Range.read(in) : null;
+      int line = in.readInt();
+      Double effortToFix = in.readBoolean() ? in.readDouble() : null;
+      FileIssue issue = new FileIssue(ruleKey, message, primaryRange, line, effortToFix);
+      int secondaryCount = in.readInt();
+      for (int i = 0; i < secondaryCount; i++) {
+        issue.secondaryRanges.add(Range.read(in));
+        issue.secondaryMessages.add(readString(in));
+      }
+      return issue;
+    }
+  }
+
+  private static class IndexedFunction {
+    private final long fingerprint;
+    private final int line;
+    private final Range name;
+
+    private IndexedFunction(long fingerprint, int line, Range name) {
+      this.fingerprint = fingerprint;
+      this.line = line;
+      this.name = name;
+    }
+  }
+
+  private static class Range {
+    private final int[] positions;
+
+    private Range(TextRange range) {
+      this(new int[] {range.start().line(), range.start().lineOffset(), range.end().line(), range.end().lineOffset()});
+    }
+
+    private Range(int[] positions) {
+      this.positions = positions;
+    }
+
+    private TextRange toTextRange(InputFile inputFile) {
+      return inputFile.newRange(positions[0], positions[1], positions[2], positions[3]);
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+      for (int position : positions) {
+        out.writeInt(position);
+      }
+    }
+
+    private static Range read(DataInputStream in) throws IOException {
+      return new Range(new int[] {in.readInt(), in.readInt(), in.readInt(), in.readInt()});
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.go.plugin;
+
+/**
+ * Durations of the analysis phases of a file, measured as laps: each call to {@link #lap} attributes the time elapsed
+ * since the previous lap, or since {@link #restart}, to the given phase.
+ * <p>
+ * The UAST is streamed through the rule engine, highlighting and CPD at once, so decoding, validation, rules and
+ * metrics are all part of {@link Phase#SCAN}. Time spent by each rule can be measured with the rule profiler.
+ */
+class FileTimings {
+
+  enum Phase {
+    /**
+     * Reading the file and computing its cache keys
+     */
+    READ,
+    /**
+     * Looking up and decoding cached results
+     */
+    CACHE,
+    /**
+     * Waiting for the UAST generator
+     */
+    PARSE,
+    /**
+     * Decoding and validating the UAST, computing issues, metrics, highlighting and CPD tokens
+     */
+    SCAN,
+    /**
+     * Saving the results into the sensor context
+     */
+    SAVE
+  }
+
+  private final long[] nanos = new long[Phase.values().length];
+  private long lapStart = System.nanoTime();
+
+  void restart() {
+    lapStart = System.nanoTime();
+  }
+
+  void lap(Phase phase) {
+    long now = System.nanoTime();
+    nanos[phase.ordinal()] += now - lapStart;
+    lapStart = now;
+  }
+
+  void add(Phase phase, long phaseNanos) {
+    nanos[phase.ordinal()] += phaseNanos;
+  }
+
+  long nanos(Phase phase) {
+    return nanos[phase.ordinal()];
+  }
+
+  long totalNanos() {
+    long total = 0;
+    for (long phaseNanos : nanos) {
+      total += phaseNanos;
+    }
+    return total;
+  }
+}
@@ -19,25 +19,27 @@
  */
 package org.sonar.go.plugin;
 
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
-import org.sonar.api.batch.fs.FilePredicates;
-import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.batch.sensor.coverage.NewCoverage;
@@ -46,48 +48,160 @@ import org.sonar.api.utils.WildcardPattern;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-
 public final class GoCoverageReport {
 
   private static final Logger LOG = Loggers.get(GoCoverageReport.class);
 
   public static final String REPORT_PATH_KEY = "sonar.go.coverage.reportPaths";
 
-  // See ParseProfiles function:
-  // https://github.com/golang/go/blob/master/src/cmd/cover/profile.go
-  static final Pattern MODE_LINE_REGEXP = Pattern.compile("^mode: (\\w+)$");
-  static final Pattern COVERAGE_LINE_REGEXP = Pattern.compile("^(.+):(\\d+)\\.(\\d+),(\\d+)\\.(\\d+) (\\d+) (\\d+)$");
+  // size of the chunks of a report parsed concurrently
+  static final long CHUNK_SIZE = 32L * 1024 * 1024;
 
   private GoCoverageReport() {
   }
 
   public static void saveCoverageReports(SensorContext sensorContext, GoPathContext goContext) {
-    Coverage coverage = new Coverage(goContext);
-    getReportPaths(sensorContext).forEach(reportPath -> parse(reportPath, coverage));
-    coverage.fileMap.forEach((filePath, coverageStats) -> {
+    saveCoverageReports(sensorContext, goContext, 1);
+  }
+
+  /**
+   * The reports, and the chunks of the large reports, are parsed concurrently, then the line hits of the files are
+   * computed concurrently, each file by a single task, and saved in the {@link SensorContext} by the calling thread
+   * because it is not thread-safe.
+   */
+  static void saveCoverageReports(SensorContext sensorContext, GoPathContext goContext, int threads) {
+    ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+      Thread thread = new Thread(r);
+      thread.setName("go-coverage-import");
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      Coverage coverage = new Coverage(goContext);
+      long chunkSize = threads > 1 ? CHUNK_SIZE : Long.MAX_VALUE;
+      List<Path> reportPaths = getReportPaths(sensorContext).collect(Collectors.toList());
+      List<List<Future<Coverage>>> reportChunks = new ArrayList<>();
+      for (Path reportPath : reportPaths) {
+        reportChunks.add(parse(reportPath, goContext, chunkSize, executor));
+      }
+      for (int i = 0; i < reportPaths.size(); i++) {
+        merge(reportPaths.get(i), reportChunks.get(i), coverage);
+      }
+      saveFilesCoverage(sensorContext, coverage, executor, 2 * threads);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      LOG.error("Coverage import interrupted", e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static List<Future<Coverage>> parse(Path reportPath, GoPathContext goContext, long chunkSize, ExecutorService executor) {
+    LOG.info("Load coverage report from '{}'", reportPath);
+    List<CoverageProfileParser.Chunk> chunks;
+    try {
+      chunks = CoverageProfileParser.chunks(reportPath, chunkSize);
+    } catch (IOException e) {
+      LOG.error("Error parsing coverage info for file {}: {}", reportPath, e.getMessage());
+      return Collections.emptyList();
+    }
+    List<Future<Coverage>> chunkCoverages = new ArrayList<>();
+    for (CoverageProfileParser.Chunk chunk : chunks) {
+      chunkCoverages.add(executor.submit(() -> {
+        Coverage chunkCoverage = new Coverage(goContext);
+        CoverageProfileParser.parse(reportPath, chunk, chunkCoverage::add);
+        return chunkCoverage;
+      }));
+    }
+    return chunkCoverages;
+  }
+
+  /**
+   * Adds the blocks of a report once all its chunks are parsed, so that an invalid report is ignored as a whole
+   */
+  private static void merge(Path reportPath, List<Future<Coverage>> chunkCoverages, Coverage coverage) throws InterruptedException {
+    List<Coverage> parsedChunks = new ArrayList<>();
+    for (Future<Coverage> chunkCoverage : chunkCoverages) {
       try {
-        saveFileCoverage(sensorContext, filePath, coverageStats);
-      } catch (Exception e) {
+        parsedChunks.add(chunkCoverage.get());
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          LOG.error("Error parsing coverage info for file {}: {}", reportPath, cause.getMessage());
+          return;
+        }
+        throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+      }
+    }
+    parsedChunks.forEach(coverage::addAll);
+  }
+
+  /**
+   * The number of pending files is bounded to limit the number of file contents in memory
+   */
+  private static void saveFilesCoverage(SensorContext sensorContext, Coverage coverage, ExecutorService executor, int maxPendingFiles)
+    throws InterruptedException {
+    if (coverage.fileMap.isEmpty()) {
+      return;
+    }
+    InputFileIndex inputFileIndex = InputFileIndex.of(sensorContext.fileSystem());
+    Deque<PendingFile> pendingFiles = new ArrayDeque<>();
+    for (Map.Entry<String, FileBlocks> entry : coverage.fileMap.entrySet()) {
+      String filePath = entry.getKey();
+      InputFile inputFile;
+      try {
+        inputFile = findInputFile(filePath, inputFileIndex);
+      } catch (RuntimeException e) {
         LOG.error("Error saving coverage info for file " + filePath, e);
+        continue;
       }
-    });
+      if (inputFile == null) {
+        LOG.warn("File '{}' is not included in the project, ignoring coverage", filePath);
+        continue;
+      }
+      if (pendingFiles.size() == maxPendingFiles) {
+        saveFileCoverage(sensorContext, pendingFiles.removeFirst());
+      }
+      FileBlocks blocks = entry.getValue();
+      pendingFiles.addLast(new PendingFile(filePath, inputFile, executor.submit(() -> fileCoverage(inputFile, blocks))));
+    }
+    while (!pendingFiles.isEmpty()) {
+      saveFileCoverage(sensorContext, pendingFiles.removeFirst());
+    }
+  }
+
+  private static FileCoverage fileCoverage(InputFile inputFile, FileBlocks blocks) throws IOException {
+    return new FileCoverage(blocks, LineIndex.of(inputFile));
   }
 
-  private static void saveFileCoverage(SensorContext sensorContext, String filePath, List<CoverageStat> coverageStats) throws IOException {
-    FileSystem fileSystem = sensorContext.fileSystem();
-    InputFile inputFile = findInputFile(filePath, fileSystem);
-    if (inputFile != null) {
-      LOG.debug("Saving coverage measures for file '{}'", filePath);
-      List<String> lines = Arrays.asList(inputFile.contents().split("\\r?\\n"));
-      NewCoverage newCoverage = sensorContext.newCoverage().onFile(inputFile);
-      FileCoverage fileCoverage = new FileCoverage(coverageStats, lines);
-      for (Map.Entry<Integer, LineCoverage> entry : fileCoverage.lineMap.entrySet()) {
-        newCoverage.lineHits(entry.getKey(), entry.getValue().hits);
+  private static void saveFileCoverage(SensorContext sensorContext, PendingFile pendingFile) throws InterruptedException {
+    try {
+      FileCoverage fileCoverage = pendingFile.fileCoverage.get();
+      LOG.debug("Saving coverage measures for file '{}'", pendingFile.filePath);
+      NewCoverage newCoverage = sensorContext.newCoverage().onFile(pendingFile.inputFile);
+      int[] hits = fileCoverage.hits;
+      for (int line = 1; line < hits.length; line++) {
+        if (hits[line] != FileCoverage.NOT_EXECUTABLE) {
+          newCoverage.lineHits(line, hits[line]);
+        }
       }
       newCoverage.save();
-    } else {
-      LOG.warn("File '{}' is not included in the project, ignoring coverage", filePath);
+    } catch (ExecutionException e) {
+      LOG.error("Error saving coverage info for file " + pendingFile.filePath, e.getCause());
+    } catch (RuntimeException e) {
+      LOG.error("Error saving coverage info for file " + pendingFile.filePath, e);
+    }
+  }
+
+  private static class PendingFile {
+    final String filePath;
+    final InputFile inputFile;
+    final Future<FileCoverage> fileCoverage;
+
+    PendingFile(String filePath, InputFile inputFile, Future<FileCoverage> fileCoverage) {
+      this.filePath = filePath;
+      this.inputFile = inputFile;
+      this.fileCoverage = fileCoverage;
     }
   }
 
@@ -98,20 +212,9 @@ public final class GoCoverageReport {
    *  mach using a shorter relative path.
    *  @see <a href="https://github.com/SonarSource/sonar-go/issues/218">sonar-go/issues/218</a>
    */
-  private static InputFile findInputFile(String absolutePath, FileSystem fileSystem) {
-    FilePredicates predicates = fileSystem.predicates();
-    InputFile inputFile = fileSystem.inputFile(predicates.hasAbsolutePath(absolutePath));
-    if (inputFile != null) {
-      return inputFile;
-    }
-    LOG.debug("Resolving file {} using relative path", absolutePath);
-    Path path = Paths.get(absolutePath);
-    inputFile = fileSystem.inputFile(predicates.hasRelativePath(path.toString()));
-    while (inputFile == null && path.getNameCount() > 1) {
-      path = path.subpath(1, path.getNameCount());
-      inputFile = fileSystem.inputFile(predicates.hasRelativePath(path.toString()));
-    }
-    return inputFile;
+  @CheckForNull
+  private static InputFile findInputFile(String absolutePath, InputFileIndex inputFileIndex) {
+    return inputFileIndex.inputFileBySuffix(absolutePath);
   }
 
   static Stream<Path> getReportPaths(SensorContext sensorContext) {
@@ -175,19 +278,8 @@ public final class GoCoverageReport {
 
   static void parse(Path reportPath, Coverage coverage) {
     LOG.info("Load coverage report from '{}'", reportPath);
-    try (InputStream input = new FileInputStream(reportPath.toFile())) {
-      Scanner scanner = new Scanner(input, UTF_8.name());
-      if (!scanner.hasNextLine() || !MODE_LINE_REGEXP.matcher(scanner.nextLine()).matches()) {
-        throw new IOException("Invalid go coverage, expect 'mode:' on the first line.");
-      }
-      int lineNumber = 2;
-      while (scanner.hasNextLine()) {
-        String line = scanner.nextLine();
-        if (!line.isEmpty()) {
-          coverage.add(new CoverageStat(lineNumber, line));
-        }
-        lineNumber++;
-      }
+    try {
+      CoverageProfileParser.parse(reportPath, coverage::add);
     } catch (IOException e) {
       LOG.error("Error parsing coverage info for file {}: {}", reportPath, e.getMessage());
     }
@@ -195,44 +287,136 @@ public final class GoCoverageReport {
 
   static class Coverage {
     final GoPathContext goContext;
-    Map<String, List<CoverageStat>> fileMap = new HashMap<>();
+    Map<String, FileBlocks> fileMap = new HashMap<>();
+    private String lastFilePath;
+    private FileBlocks lastFileBlocks;
 
     Coverage(GoPathContext goContext) {
       this.goContext = goContext;
     }
 
-    void add(CoverageStat coverage) {
-      fileMap
-        .computeIfAbsent(goContext.resolve(coverage.filePath), key -> new ArrayList<>())
-        .add(coverage);
+    void add(String filePath, int startLine, int startCol, int endLine, int endCol, int numStmt, int count) {
+      blocks(filePath).add(startLine, startCol, endLine, endCol, count);
+    }
+
+    /**
+     * The blocks of a file are consecutive in a report, the blocks of the last file are kept to not lock the shared context
+     * to resolve the path of each block
+     */
+    private FileBlocks blocks(String filePath) {
+      if (!filePath.equals(lastFilePath)) {
+        lastFileBlocks = fileMap.computeIfAbsent(goContext.resolve(filePath), key -> new FileBlocks());
+        lastFilePath = filePath;
+      }
+      return lastFileBlocks;
+    }
+
+    void addAll(Coverage other) {
+      other.fileMap.forEach((filePath, blocks) -> fileMap.merge(filePath, blocks, (fileBlocks, otherBlocks) -> {
+        fileBlocks.addAll(otherBlocks);
+        return fileBlocks;
+      }));
+    }
+  }
+
+  /**
+   * Coverage blocks of a file, stored by column: a block is the same index in each array
+   */
+  static class FileBlocks {
+    private static final int INITIAL_CAPACITY = 16;
+
+    int size = 0;
+    int[] startLines = new int[INITIAL_CAPACITY];
+    int[] startCols = new int[INITIAL_CAPACITY];
+    int[] endLines = new int[INITIAL_CAPACITY];
+    int[] endCols = new int[INITIAL_CAPACITY];
+    int[] counts = new int[INITIAL_CAPACITY];
+
+    void add(int startLine, int startCol, int endLine, int endCol, int count) {
+      ensureCapacity(size + 1);
+      startLines[size] = startLine;
+      startCols[size] = startCol;
+      endLines[size] = endLine;
+      endCols[size] = endCol;
+      counts[size] = count;
+      size++;
+    }
+
+    void addAll(FileBlocks other) {
+      ensureCapacity(size + other.size);
+      System.arraycopy(other.startLines, 0, startLines, size, other.size);
+      System.arraycopy(other.startCols, 0, startCols, size, other.size);
+      System.arraycopy(other.endLines, 0, endLines, size, other.size);
+      System.arraycopy(other.endCols, 0, endCols, size, other.size);
+      System.arraycopy(other.counts, 0, counts, size, other.size);
+      size += other.size;
+    }
+
+    private void ensureCapacity(int capacity) {
+      if (capacity > startLines.length) {
+        int newCapacity = Math.max(capacity, startLines.length * 2);
+        startLines = Arrays.copyOf(startLines, newCapacity);
+        startCols = Arrays.copyOf(startCols, newCapacity);
+        endLines = Arrays.copyOf(endLines, newCapacity);
+        endCols = Arrays.copyOf(endCols, newCapacity);
+        counts = Arrays.copyOf(counts, newCapacity);
+      }
     }
   }
 
   static class FileCoverage {
-    Map<Integer, LineCoverage> lineMap = new HashMap<>();
-    List<String> lines;
+    static final int NOT_EXECUTABLE = -1;
+
+    // hits by line number, NOT_EXECUTABLE for the lines which are not in a block
+    final int[] hits;
+    @Nullable
+    final LineIndex lines;
 
-    public FileCoverage(List<CoverageStat> coverageStats, @Nullable List<String> lines) {
+    public FileCoverage(FileBlocks blocks, @Nullable LineIndex lines) {
       this.lines = lines;
-      coverageStats.forEach(this::add);
+      int lastLine = 0;
+      if (lines != null) {
+        lastLine = lines.lineCount();
+      } else {
+        for (int i = 0; i < blocks.size; i++) {
+          lastLine = Math.max(lastLine, blocks.endLines[i]);
+        }
+      }
+      hits = new int[lastLine + 1];
+      Arrays.fill(hits, NOT_EXECUTABLE);
+      for (int i = 0; i < blocks.size; i++) {
+        add(blocks.startLines[i], blocks.startCols[i], blocks.endLines[i], blocks.endCols[i], blocks.counts[i]);
+      }
     }
 
-    private void add(CoverageStat coverage) {
-      int startLine = findStartIgnoringBrace(coverage);
-      int endLine = findEndIgnoringBrace(coverage, startLine);
+    private void add(int blockStartLine, int blockStartCol, int blockEndLine, int blockEndCol, int count) {
+      int startLine = Math.max(1, findStartIgnoringBrace(blockStartLine, blockStartCol));
+      int endLine = Math.min(hits.length - 1, findEndIgnoringBrace(blockEndLine, blockEndCol, startLine));
       for (int line = startLine; line <= endLine; line++) {
-        lineMap
-          .computeIfAbsent(line, key -> new LineCoverage())
-          .add(coverage);
+        hits[line] = hits[line] == NOT_EXECUTABLE ? count : (hits[line] + count);
       }
     }
 
-    int findStartIgnoringBrace(CoverageStat coverage) {
-      int line = coverage.startLine;
-      int column = coverage.startCol;
+    /**
+     * @return the hits of a line, or {@link #NOT_EXECUTABLE}
+     */
+    int hits(int line) {
+      return line > 0 && line < hits.length ? hits[line] : NOT_EXECUTABLE;
+    }
+
+    /**
+     * @return the lines in a block, in ascending order
+     */
+    int[] lines() {
+      return IntStream.range(1, hits.length).filter(line -> hits[line] != NOT_EXECUTABLE).toArray();
+    }
+
+    int findStartIgnoringBrace(int startLine, int startCol) {
+      int line = startLine;
+      int column = startCol;
       while (shouldIgnore(line, column)) {
         column++;
-        if (column > lines.get(line - 1).length()) {
+        if (column > lines.lineLength(line)) {
           line++;
           column = 1;
         }
@@ -240,64 +424,30 @@ public final class GoCoverageReport {
       return line;
     }
 
-    int findEndIgnoringBrace(CoverageStat coverage, int startLine) {
-      int line = coverage.endLine;
-      int column = coverage.endCol - 1;
-      if (lines != null && line > lines.size()) {
-        line = lines.size();
-        column = lines.get(line - 1).length();
+    int findEndIgnoringBrace(int endLine, int endCol, int startLine) {
+      int line = endLine;
+      int column = endCol - 1;
+      if (lines != null && line > lines.lineCount()) {
+        line = lines.lineCount();
+        column = lines.lineLength(line);
       }
       while (line > startLine && shouldIgnore(line, column)) {
         column--;
         if (column == 0) {
           line--;
-          column = lines.get(line - 1).length();
+          column = lines.lineLength(line);
         }
       }
       return line;
     }
 
     boolean shouldIgnore(int line, int column) {
-      if (lines != null && line > 0 && line <= lines.size() && column > 0 && column <= lines.get(line - 1).length()) {
-        int ch = lines.get(line - 1).charAt(column - 1);
+      if (lines != null && column > 0 && column <= lines.lineLength(line)) {
+        int ch = lines.byteAt(line, column);
         return ch < ' ' || ch == '{' || ch == '}';
       }
       return false;
     }
   }
 
-  static class LineCoverage {
-    int hits = 0;
-
-    void add(CoverageStat coverage) {
-      hits += coverage.count;
-    }
-  }
-
-  static class CoverageStat {
-
-    final String filePath;
-    final int startLine;
-    final int startCol;
-    final int endLine;
-    final int endCol;
-    final int numStmt;
-    final int count;
-
-    CoverageStat(int lineNumber, String line) {
-      Matcher matcher = COVERAGE_LINE_REGEXP.matcher(line);
-      if (!matcher.matches()) {
-        throw new IllegalArgumentException("Invalid go coverage at line " + lineNumber);
-      }
-      filePath = matcher.group(1);
-      startLine = Integer.parseInt(matcher.group(2));
-      startCol = Integer.parseInt(matcher.group(3));
-      endLine = Integer.parseInt(matcher.group(4));
-      endCol = Integer.parseInt(matcher.group(5));
-      numStmt = Integer.parseInt(matcher.group(6));
-      count = Integer.parseInt(matcher.group(7));
-    }
-
-  }
-
 }
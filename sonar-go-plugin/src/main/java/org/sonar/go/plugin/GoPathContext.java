@@ -30,7 +30,6 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
-import org.sonar.api.batch.fs.FileSystem;
 
 class GoPathContext {
   private static final String LINUX_ABSOLUTE_PREFIX = "_/";
@@ -73,9 +72,9 @@ class GoPathContext {
    * try to append the first GOPATH entry where this file exists, otherwise return
    * a non-existing absolute path using the first GOPATH entry (or just filePath itself
    * if GOPATH is empty).
-   * See {@link GoCoverageReport#findInputFile(String, FileSystem)}
+   * See {@link GoCoverageReport#findInputFile(String, InputFileIndex)}
    */
-  String resolve(String filePath) {
+  synchronized String resolve(String filePath) {
     return resolvedPaths.computeIfAbsent(filePath, path -> {
       if (path.startsWith(LINUX_ABSOLUTE_PREFIX)) {
         return path.substring(1);
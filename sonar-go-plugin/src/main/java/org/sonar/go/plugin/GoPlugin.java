@@ -20,6 +20,7 @@
 package org.sonar.go.plugin;
 
 import org.sonar.api.Plugin;
+import org.sonar.api.PropertyType;
 import org.sonar.api.config.PropertyDefinition;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.utils.Version;
@@ -76,6 +77,114 @@ public class GoPlugin implements Plugin {
         .multiValues(true)
         .build(),
 
+      PropertyDefinition.builder(GoSensor.ANALYSIS_THREADS_KEY)
+        .index(12)
+        .defaultValue(String.valueOf(GoSensor.ANALYSIS_THREADS_DEFAULT_VALUE))
+        .name("Analysis Threads")
+        .description("Number of Go files parsed and analyzed concurrently, and of coverage reports parsed concurrently.")
+        .category(GO_CATEGORY)
+        .subCategory(GENERAL_SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.INTEGER)
+        .build(),
+
+      PropertyDefinition.builder(GoSensor.ANALYSIS_BATCH_SIZE_KEY)
+        .index(13)
+        .defaultValue(String.valueOf(GoSensor.ANALYSIS_BATCH_SIZE_DEFAULT_VALUE))
+        .name("Analysis Batch Size")
+        .description("Number of Go files read from disk by a single UAST generator process. " +
+          "With 0, the content of each file is sent to a long-lived UAST generator process.")
+        .category(GO_CATEGORY)
+        .subCategory(GENERAL_SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.INTEGER)
+        .build(),
+
+      PropertyDefinition.builder(GoSensor.ANALYSIS_CACHE_SIZE_KEY)
+        .index(14)
+        .defaultValue(String.valueOf(GoSensor.ANALYSIS_CACHE_SIZE_DEFAULT_VALUE))
+        .name("Analysis Cache Size")
+        .description("Maximum size in megabytes of the UASTs and analysis results kept in the working directory, " +
+          "so that unchanged files are not parsed again. " +
+          "Disabled by default, with 0: set a size to enable the cache, for example on analyses of a stable working directory.")
+        .category(GO_CATEGORY)
+        .subCategory(GENERAL_SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.INTEGER)
+        .build(),
+
+      PropertyDefinition.builder(GoSensor.INCREMENTAL_ANALYSIS_KEY)
+        .index(15)
+        .defaultValue("false")
+        .name("Incremental Analysis")
+        .description("Replay the issues, metrics, highlighting and duplication tokens of files which did not change since the previous analysis " +
+          "with the same plugin and active rules. Requires the analysis cache.")
+        .category(GO_CATEGORY)
+        .subCategory(GENERAL_SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.BOOLEAN)
+        .build(),
+
+      PropertyDefinition.builder(GoSensor.RULE_PROFILING_KEY)
+        .index(16)
+        .defaultValue("false")
+        .name("Rule Profiling")
+        .description("Measure the time spent by each rule and on each file. The measures are written to \"" + RuleProfileReport.FILE_NAME +
+          "\" in the working directory and the slowest rules are logged.")
+        .category(GO_CATEGORY)
+        .subCategory(GENERAL_SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.BOOLEAN)
+        .build(),
+
+      PropertyDefinition.builder(GoSensor.RULE_PROFILING_ALLOCATIONS_KEY)
+        .index(17)
+        .defaultValue("false")
+        .name("Rule Profiling Allocations")
+        .description("Also measure the memory allocated by each rule, when rule profiling is enabled. Slows down the analysis.")
+        .category(GO_CATEGORY)
+        .subCategory(GENERAL_SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.BOOLEAN)
+        .build(),
+
+      PropertyDefinition.builder(GoSensor.TIMINGS_REPORT_KEY)
+        .index(18)
+        .defaultValue("false")
+        .name("Analysis Timings Report")
+        .description("Measure the time spent reading, parsing, scanning and saving each file. The distribution of these durations " +
+          "and the slowest files are written to \"" + AnalysisTimings.FILE_NAME + "\" in the working directory and logged.")
+        .category(GO_CATEGORY)
+        .subCategory(GENERAL_SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.BOOLEAN)
+        .build(),
+
+      PropertyDefinition.builder(GoSensor.CROSS_FILE_IDENTICAL_FUNCTIONS_KEY)
+        .index(21)
+        .defaultValue("false")
+        .name("Identical Functions Across Files")
+        .description("Also report the functions which are identical with a function of another file of the module, when the rule " +
+          "about identical functions is active. Up to " + DuplicateFunctionIndex.MAX_FUNCTIONS_DEFAULT_VALUE + " functions are compared.")
+        .category(GO_CATEGORY)
+        .subCategory(GENERAL_SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.BOOLEAN)
+        .build(),
+
+      PropertyDefinition.builder(GoSensor.REDUCED_ANALYSIS_FILE_SIZE_KEY)
+        .index(22)
+        .defaultValue(String.valueOf(GoSensor.REDUCED_ANALYSIS_FILE_SIZE_DEFAULT_VALUE))
+        .name("Reduced Analysis File Size")
+        .description("Size in kilobytes above which a file, usually generated, is analyzed without rules: only its metrics, highlighting " +
+          "and duplications are computed, to bound the memory used. When set, files whose syntax tree is estimated to use more than half " +
+          "of the heap share of an analysis thread are analyzed this way too. Disabled by default, with 0.")
+        .category(GO_CATEGORY)
+        .subCategory(GENERAL_SUBCATEGORY)
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.INTEGER)
+        .build(),
+
       PropertyDefinition.builder(GoTestSensor.REPORT_PATH_KEY)
         .index(19)
         .name("Path to test execution report(s)")
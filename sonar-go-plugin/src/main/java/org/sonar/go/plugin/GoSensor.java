@@ -19,47 +19,69 @@
  */
 package org.sonar.go.plugin;
 
-import java.io.InputStream;
-import java.io.Serializable;
-import java.util.Arrays;
-import java.util.Objects;
-import java.util.Set;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.batch.fs.InputFile;
-import org.sonar.api.batch.measure.Metric;
 import org.sonar.api.batch.rule.CheckFactory;
 import org.sonar.api.batch.rule.Checks;
 import org.sonar.api.batch.sensor.Sensor;
 import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.batch.sensor.SensorDescriptor;
-import org.sonar.api.batch.sensor.issue.NewIssue;
-import org.sonar.api.batch.sensor.issue.NewIssueLocation;
-import org.sonar.api.measures.CoreMetrics;
-import org.sonar.api.measures.FileLinesContext;
 import org.sonar.api.measures.FileLinesContextFactory;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
-import org.sonar.commonruleengine.Engine;
-import org.sonar.commonruleengine.Issue;
-import org.sonar.commonruleengine.Metrics;
+import org.sonar.check.Rule;
+import org.sonar.commonruleengine.RuleProfiler;
 import org.sonar.commonruleengine.checks.Check;
-import org.sonar.uast.UastNode;
+import org.sonar.commonruleengine.checks.NoIdenticalFunctionsCheck;
 import org.sonar.uast.validators.Validator;
 
 import static org.sonar.go.plugin.GoCoverageReport.saveCoverageReports;
-import static org.sonar.go.plugin.utils.PluginApiUtils.newRange;
 
 public class GoSensor implements Sensor {
 
   private static final Logger LOG = Loggers.get(GoSensor.class);
 
-  private final Checks<Check> checks;
+  public static final String ANALYSIS_THREADS_KEY = "sonar.go.analysis.threads";
+  static final int ANALYSIS_THREADS_DEFAULT_VALUE = 1;
+  public static final String ANALYSIS_BATCH_SIZE_KEY = "sonar.go.analysis.batchSize";
+  static final int ANALYSIS_BATCH_SIZE_DEFAULT_VALUE = 0;
+  public static final String ANALYSIS_CACHE_SIZE_KEY = "sonar.go.analysisCache.size";
+  static final int ANALYSIS_CACHE_SIZE_DEFAULT_VALUE = 0;
+  public static final String INCREMENTAL_ANALYSIS_KEY = "sonar.go.analysis.incremental";
+  public static final String RULE_PROFILING_KEY = "sonar.go.analysis.ruleProfiling";
+  public static final String RULE_PROFILING_ALLOCATIONS_KEY = "sonar.go.analysis.ruleProfiling.allocations";
+  public static final String TIMINGS_REPORT_KEY = "sonar.go.analysis.timingsReport";
+  public static final String CROSS_FILE_IDENTICAL_FUNCTIONS_KEY = "sonar.go.analysis.crossFileIdenticalFunctions";
+  public static final String REDUCED_ANALYSIS_FILE_SIZE_KEY = "sonar.go.analysis.reducedAnalysisFileSize";
+  static final int REDUCED_ANALYSIS_FILE_SIZE_DEFAULT_VALUE = 0;
+
+  private static final RuleKey IDENTICAL_FUNCTIONS_RULE = RuleKey.of(GoRulesDefinition.REPOSITORY_KEY,
+    NoIdenticalFunctionsCheck.class.getAnnotation(Rule.class).key());
+
+  private final CheckFactory checkFactory;
   private final FileLinesContextFactory fileLinesContextFactory;
 
   public GoSensor(CheckFactory checkFactory, FileLinesContextFactory fileLinesContextFactory) {
-    checks = checkFactory.<Check>create(GoRulesDefinition.REPOSITORY_KEY)
-      .addAnnotatedChecks((Iterable) GoChecks.getChecks());
+    this.checkFactory = checkFactory;
     this.fileLinesContextFactory = fileLinesContextFactory;
   }
 
@@ -71,99 +93,220 @@ public class GoSensor implements Sensor {
 
   @Override
   public void execute(SensorContext context) {
-    Engine ruleEngine = new Engine(checks.all());
-    UastGeneratorWrapper uastGenerator;
+    int threads = Math.max(1, context.config().getInt(ANALYSIS_THREADS_KEY).orElse(ANALYSIS_THREADS_DEFAULT_VALUE));
+    List<AnalysisWorker> workers = new ArrayList<>();
+    List<RuleProfiler> ruleProfilers = new ArrayList<>();
+    DuplicateFunctionIndex duplicateFunctionIndex = null;
     try {
-      uastGenerator = new UastGeneratorWrapper(context);
+      AnalysisCache analysisCache = createAnalysisCache(context);
+      String pluginBuild = context.config().getBoolean(INCREMENTAL_ANALYSIS_KEY).orElse(false) ? pluginBuild() : null;
+      boolean ruleProfiling = context.config().getBoolean(RULE_PROFILING_KEY).orElse(false);
+      boolean profileAllocations = context.config().getBoolean(RULE_PROFILING_ALLOCATIONS_KEY).orElse(false);
+      if (context.config().getBoolean(CROSS_FILE_IDENTICAL_FUNCTIONS_KEY).orElse(false) && context.activeRules().find(IDENTICAL_FUNCTIONS_RULE) != null) {
+        duplicateFunctionIndex = new DuplicateFunctionIndex(DuplicateFunctionIndex.MAX_FUNCTIONS_DEFAULT_VALUE);
+      }
+      long reducedAnalysisFileSize = Math.max(0, context.config().getInt(REDUCED_ANALYSIS_FILE_SIZE_KEY).orElse(REDUCED_ANALYSIS_FILE_SIZE_DEFAULT_VALUE)) * 1024L;
+      // the generator binary is extracted and hashed once, its command is shared by the workers
+      UastGeneratorWrapper.Command uastGeneratorCommand = new UastGeneratorWrapper.DefaultCommand(context.fileSystem().workDir());
+      for (int i = 0; i < threads; i++) {
+        RuleProfiler ruleProfiler = null;
+        if (ruleProfiling) {
+          ruleProfiler = new RuleProfiler(profileAllocations);
+          ruleProfilers.add(ruleProfiler);
+        }
+        workers.add(new AnalysisWorker(createChecks(), new UastGeneratorWrapper(uastGeneratorCommand), analysisCache, pluginBuild, ruleProfiler,
+          duplicateFunctionIndex != null, reducedAnalysisFileSize, threads));
+      }
     } catch (Exception e) {
       LOG.error("Error initializing UAST generator", e);
+      workers.forEach(AnalysisWorker::close);
       return;
     }
-
-    for (InputFile inputFile : getInputFiles(context)) {
-      try (InputStream inputStream = inputFile.inputStream()) {
-        UastNode uast = uastGenerator.createUast(inputStream);
-        // FIXME currently *_test.go files are MAIN and not TEST, see issue #140
-        if (inputFile.type() == InputFile.Type.MAIN) {
-          Engine.ScanResult scanResult = ruleEngine.scan(uast, inputFile);
-          scanResult.issues.forEach(issue -> reportIssue(issue, context, inputFile));
-          saveMetrics(scanResult.metrics, context, inputFile);
-          saveCpdTokens(uast, context, inputFile);
-        }
-        saveHighlighting(uast, context, inputFile);
-      } catch (Validator.ValidationException e) {
-        LOG.error("Unable to validate UAST of file " + inputFile.toString(), e);
-      } catch (Exception e) {
-        LOG.error("Error analyzing file " + inputFile.toString(), e);
-      }
+    AnalysisTimings timings = context.config().getBoolean(TIMINGS_REPORT_KEY).orElse(false) ? new AnalysisTimings() : null;
+    try {
+      analyzeFiles(context, workers, timings, duplicateFunctionIndex);
+    } finally {
+      workers.forEach(AnalysisWorker::close);
+    }
+    if (duplicateFunctionIndex != null) {
+      duplicateFunctionIndex.reportIssues(context, IDENTICAL_FUNCTIONS_RULE);
+    }
+    if (timings != null) {
+      saveTimings(context, timings);
+    }
+    if (!ruleProfilers.isEmpty()) {
+      saveRuleProfile(context, ruleProfilers);
     }
     try {
-      saveCoverageReports(context, GoPathContext.DEFAULT);
+      saveCoverageReports(context, GoPathContext.DEFAULT, threads);
     } catch (Exception e) {
       LOG.error("Coverage import failed: {}", e.getMessage(), e);
     }
   }
 
-  private void reportIssue(Issue issue, SensorContext context, InputFile inputFile) {
-    // TODO improve common rule engine to handle this out of the box
-    RuleKey ruleKey = checks.ruleKey(issue.getCheck());
-    Objects.requireNonNull(ruleKey, "Rule key not found for " + issue.getCheck().getClass());
-    NewIssue newIssue = context.newIssue();
-    NewIssueLocation location = newIssue.newLocation()
-      .on(inputFile)
-      .message(issue.getMessage());
-    if (issue.hasNodeLocation()) {
-      location.at(newRange(inputFile, issue.getPrimary().from, issue.getPrimary().to));
-    } else if (issue.hasLineLocation()) {
-      location.at(inputFile.selectLine(issue.getPrimary().line));
-    }
-    newIssue.forRule(ruleKey).at(location).gap(issue.getEffortToFix());
-
-    Arrays.stream(issue.getSecondaries()).forEach(secondary -> newIssue.addLocation(
-      newIssue.newLocation()
-        .on(inputFile)
-        .at(newRange(inputFile, secondary.from, secondary.to))
-        .message(secondary.description == null ? "" : secondary.description)));
-
-    newIssue.save();
+  @CheckForNull
+  private static AnalysisCache createAnalysisCache(SensorContext context) {
+    int sizeInMegabytes = context.config().getInt(ANALYSIS_CACHE_SIZE_KEY).orElse(ANALYSIS_CACHE_SIZE_DEFAULT_VALUE);
+    if (sizeInMegabytes <= 0) {
+      return null;
+    }
+    Path directory = context.fileSystem().workDir().toPath().resolve(AnalysisCache.DIRECTORY_NAME);
+    try {
+      return new AnalysisCache(directory, sizeInMegabytes * 1024L * 1024L);
+    } catch (IOException e) {
+      LOG.warn("Analysis cache disabled, unable to initialize " + directory, e);
+      return null;
+    }
+  }
+
+  private static void saveRuleProfile(SensorContext context, List<RuleProfiler> ruleProfilers) {
+    RuleProfiler ruleProfiler = ruleProfilers.get(0);
+    ruleProfilers.subList(1, ruleProfilers.size()).forEach(ruleProfiler::merge);
+    try {
+      RuleProfileReport.save(ruleProfiler, context.fileSystem().workDir().toPath());
+    } catch (IOException e) {
+      LOG.warn("Unable to write the rule profile", e);
+    }
+  }
+
+  private static void saveTimings(SensorContext context, AnalysisTimings timings) {
+    try {
+      timings.save(context.fileSystem().workDir().toPath());
+    } catch (IOException e) {
+      LOG.warn("Unable to write the analysis timings", e);
+    }
+  }
+
+  private Checks<Check> createChecks() {
+    return checkFactory.<Check>create(GoRulesDefinition.REPOSITORY_KEY)
+      .addAnnotatedChecks((Iterable) GoChecks.getChecks());
   }
 
-  private void saveMetrics(Metrics metrics, SensorContext context, InputFile inputFile) {
-    saveMetric(context, inputFile, CoreMetrics.NCLOC, metrics.linesOfCode.size());
-    saveMetric(context, inputFile, CoreMetrics.COMMENT_LINES, metrics.commentLines.size());
-    saveMetric(context, inputFile, CoreMetrics.CLASSES, metrics.numberOfClasses);
-    saveMetric(context, inputFile, CoreMetrics.FUNCTIONS, metrics.numberOfFunctions);
-    saveMetric(context, inputFile, CoreMetrics.STATEMENTS, metrics.numberOfStatements);
-    saveMetric(context, inputFile, CoreMetrics.COGNITIVE_COMPLEXITY, metrics.cognitiveComplexity);
-
-    FileLinesContext linesContext = fileLinesContextFactory.createFor(inputFile);
-    saveLinesMetrics(linesContext, metrics.linesOfCode, CoreMetrics.NCLOC_DATA_KEY);
-    saveLinesMetrics(linesContext, metrics.executableLines, CoreMetrics.EXECUTABLE_LINES_DATA_KEY);
-    linesContext.save();
+  /**
+   * Files are parsed and scanned concurrently by the workers, while results are saved one by one on the current thread
+   * because SensorContext is not thread-safe. The number of pending results is bounded to limit the number of UASTs in memory.
+   * When a batch size is configured, each task is a batch of files read from disk by a single generator process,
+   * which parses them with several goroutines so that the cores are also used when there are fewer workers than cores.
+   */
+  private void analyzeFiles(SensorContext context, List<AnalysisWorker> workers, @Nullable AnalysisTimings timings,
+    @Nullable DuplicateFunctionIndex duplicateFunctionIndex) {
+    int batchSize = context.config().getInt(ANALYSIS_BATCH_SIZE_KEY).orElse(ANALYSIS_BATCH_SIZE_DEFAULT_VALUE);
+    int batchParallelism = batchSize > 0 ? Math.max(1, Runtime.getRuntime().availableProcessors() / workers.size()) : 0;
+    BlockingQueue<AnalysisWorker> idleWorkers = new ArrayBlockingQueue<>(workers.size(), false, workers);
+    ExecutorService executor = Executors.newFixedThreadPool(workers.size(), r -> {
+      Thread thread = new Thread(r);
+      thread.setName("go-analysis-worker");
+      thread.setDaemon(true);
+      return thread;
+    });
+    CompletionService<List<AnalysisWorker.Result>> results = new ExecutorCompletionService<>(executor);
+    int maxPendingResults = 2 * workers.size();
+    int pendingResults = 0;
+    try {
+      for (List<InputFile> inputFiles : batches(getInputFiles(context), Math.max(1, batchSize))) {
+        if (pendingResults == maxPendingResults) {
+          saveResults(results.take().get(), context, timings, duplicateFunctionIndex);
+          pendingResults--;
+        }
+        results.submit(() -> analyzeFiles(idleWorkers, inputFiles, batchParallelism));
+        pendingResults++;
+      }
+      while (pendingResults > 0) {
+        saveResults(results.take().get(), context, timings, duplicateFunctionIndex);
+        pendingResults--;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      LOG.error("Analysis of Go files interrupted", e);
+    } catch (ExecutionException e) {
+      // AnalysisWorker turns the exceptions into failed results, only an Error fails the analysis, as it would on this thread
+      Throwable cause = e.getCause();
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException("Analysis of Go files failed", cause);
+    } finally {
+      executor.shutdownNow();
+    }
   }
 
-  private static void saveLinesMetrics(FileLinesContext linesContext, Set<Integer> lines, String metricKey) {
-    lines.forEach(line -> linesContext.setIntValue(metricKey, line, 1));
+  /**
+   * @param batchParallelism number of files parsed concurrently by the generator, 0 to send the content of each file to the generator
+   */
+  private static List<AnalysisWorker.Result> analyzeFiles(BlockingQueue<AnalysisWorker> idleWorkers, List<InputFile> inputFiles,
+    int batchParallelism) throws InterruptedException {
+    AnalysisWorker worker = idleWorkers.take();
+    try {
+      if (batchParallelism > 0) {
+        return worker.analyzeBatch(inputFiles, batchParallelism);
+      }
+      return inputFiles.stream().map(worker::analyze).collect(Collectors.toList());
+    } finally {
+      idleWorkers.add(worker);
+    }
   }
 
-  private static void saveHighlighting(UastNode uast, SensorContext context, InputFile inputFile) {
-    HighlightingVisitor highlighting = new HighlightingVisitor(context, inputFile);
-    highlighting.scan(uast);
-    highlighting.save();
+  private static List<List<InputFile>> batches(Iterable<InputFile> inputFiles, int batchSize) {
+    List<List<InputFile>> batches = new ArrayList<>();
+    List<InputFile> batch = new ArrayList<>(batchSize);
+    for (InputFile inputFile : inputFiles) {
+      if (batch.size() == batchSize) {
+        batches.add(batch);
+        batch = new ArrayList<>(batchSize);
+      }
+      batch.add(inputFile);
+    }
+    if (!batch.isEmpty()) {
+      batches.add(batch);
+    }
+    return batches;
   }
 
-  private static void saveCpdTokens(UastNode uast, SensorContext context, InputFile inputFile) {
-    CpdVisitor cpdVisitor = new CpdVisitor(context, inputFile);
-    cpdVisitor.scan(uast);
-    cpdVisitor.save();
+  private void saveResults(List<AnalysisWorker.Result> results, SensorContext context, @Nullable AnalysisTimings timings,
+    @Nullable DuplicateFunctionIndex duplicateFunctionIndex) {
+    for (AnalysisWorker.Result result : results) {
+      result.timings.restart();
+      saveResult(result, context);
+      if (duplicateFunctionIndex != null && result.fileAnalysis != null) {
+        result.fileAnalysis.indexFunctions(result.inputFile, duplicateFunctionIndex);
+      }
+      result.timings.lap(FileTimings.Phase.SAVE);
+      if (timings != null) {
+        timings.add(result.inputFile, result.timings);
+      }
+    }
   }
 
-  private static <T extends Serializable> void saveMetric(SensorContext context, InputFile inputFile, Metric<T> metric, T value) {
-    context.<T>newMeasure()
-      .on(inputFile)
-      .forMetric(metric)
-      .withValue(value)
-      .save();
+  private void saveResult(AnalysisWorker.Result result, SensorContext context) {
+    InputFile inputFile = result.inputFile;
+    Exception failure = result.failure;
+    if (failure instanceof Validator.ValidationException) {
+      LOG.error("Unable to validate UAST of file " + inputFile.toString(), failure);
+    } else if (failure != null) {
+      LOG.error("Error analyzing file " + inputFile.toString(), failure);
+    } else if (result.fileAnalysis != null) {
+      try {
+        result.fileAnalysis.save(context, inputFile, fileLinesContextFactory);
+      } catch (Exception e) {
+        LOG.error("Error analyzing file " + inputFile.toString(), e);
+      }
+    }
+  }
+
+  /**
+   * Identifies the plugin build, from the manifest of the plugin jar, so that results cached by another build are not replayed
+   */
+  static String pluginBuild() {
+    try {
+      URL location = GoSensor.class.getProtectionDomain().getCodeSource().getLocation();
+      try (JarFile jarFile = new JarFile(new File(location.toURI()))) {
+        Attributes attributes = jarFile.getManifest().getMainAttributes();
+        return attributes.getValue("Plugin-Version") + "@" + attributes.getValue("Build-Time");
+      }
+    } catch (Exception e) {
+      // not running from the plugin jar
+      return "dev";
+    }
   }
 
   private static Iterable<InputFile> getInputFiles(SensorContext context) {
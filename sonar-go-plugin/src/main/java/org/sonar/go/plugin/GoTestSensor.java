@@ -35,8 +35,6 @@ import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.annotation.Nullable;
-import org.sonar.api.batch.fs.FilePredicate;
-import org.sonar.api.batch.fs.FilePredicates;
 import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.InputFile.Type;
@@ -69,8 +67,9 @@ public class GoTestSensor implements Sensor {
   @Override
   public void execute(SensorContext context) {
     Map<InputFile, List<TestInfo>> testInfoByFile = new HashMap<>();
+    InputFileIndex inputFileIndex = InputFileIndex.of(context.fileSystem());
 
-    getReportPaths(context).forEach(path -> parseReport(context, path, testInfoByFile));
+    getReportPaths(context).forEach(path -> parseReport(context, inputFileIndex, path, testInfoByFile));
     testInfoByFile.forEach((key, value) -> saveTestMetrics(context, key, value));
   }
 
@@ -92,7 +91,7 @@ public class GoTestSensor implements Sensor {
     return result;
   }
 
-  private void parseReport(SensorContext context, Path reportPath, Map<InputFile, List<TestInfo>> testInfoByFile) {
+  private void parseReport(SensorContext context, InputFileIndex inputFileIndex, Path reportPath, Map<InputFile, List<TestInfo>> testInfoByFile) {
     try {
       List<TestInfo> testInfoList = Files.readAllLines(reportPath).stream()
         .filter(line -> line.startsWith("{"))
@@ -101,7 +100,7 @@ public class GoTestSensor implements Sensor {
         .collect(Collectors.toList());
 
       for (TestInfo testInfo : testInfoList) {
-        InputFile testFile = findTestFile(context.fileSystem(), testInfo);
+        InputFile testFile = findTestFile(context.fileSystem(), inputFileIndex, testInfo);
 
         if (testFile != null) {
           testInfoByFile
@@ -131,10 +130,10 @@ public class GoTestSensor implements Sensor {
   }
 
   @Nullable
-  InputFile findTestFile(FileSystem fileSystem, TestInfo testInfo) throws IOException {
+  InputFile findTestFile(FileSystem fileSystem, InputFileIndex inputFileIndex, TestInfo testInfo) throws IOException {
     List<InputFile> testInputFilesInPackage = testFilesByPackage.computeIfAbsent(
       testInfo.Package,
-      goPackage -> getTestFilesForPackage(fileSystem, goPackage));
+      goPackage -> getTestFilesForPackage(fileSystem, inputFileIndex, goPackage));
 
     // If the test was actually a sub-test, the name is of the form
     // "TestFunc/Sub_Test_Name".
@@ -150,8 +149,7 @@ public class GoTestSensor implements Sensor {
     return null;
   }
 
-  private List<InputFile> getTestFilesForPackage(FileSystem fileSystem, String goPackage) {
-    FilePredicates predicates = fileSystem.predicates();
+  private List<InputFile> getTestFilesForPackage(FileSystem fileSystem, InputFileIndex inputFileIndex, String goPackage) {
     String packageDirectory = goPathContext.resolve(goPackage);
 
     if (!new File(packageDirectory).exists()) {
@@ -163,8 +161,8 @@ public class GoTestSensor implements Sensor {
 
     try (Stream<Path> stream = Files.list(Paths.get(packageDirectory))) {
       return stream
-        .map(path -> fileSystem.inputFile(testFilePredicate(predicates, path)))
-        .filter(Objects::nonNull)
+        .map(path -> inputFileIndex.inputFile(path.toString()))
+        .filter(inputFile -> inputFile != null && inputFile.type() == Type.TEST)
         .collect(Collectors.toList());
 
     } catch (IOException e) {
@@ -173,13 +171,6 @@ public class GoTestSensor implements Sensor {
     }
   }
 
-  private static FilePredicate testFilePredicate(FilePredicates predicates, Path path) {
-    return predicates.and(
-      predicates.hasType(Type.TEST),
-      predicates.hasAbsolutePath(path.toString()),
-      predicates.hasLanguage(GoLanguage.KEY));
-  }
-
   private static String findPackageDirectory(String packagePath, FileSystem fileSystem) {
     File resolved = fileSystem.baseDir().toPath().resolve(packagePath).toFile();
     if (resolved.exists()) {
@@ -19,31 +19,55 @@
  */
 package org.sonar.go.plugin;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import org.sonar.api.batch.fs.InputFile;
-import org.sonar.api.batch.sensor.SensorContext;
-import org.sonar.api.batch.sensor.highlighting.NewHighlighting;
 import org.sonar.api.batch.sensor.highlighting.TypeOfText;
+import org.sonar.uast.UastListener;
 import org.sonar.uast.UastNode;
 import org.sonar.uast.UastNode.Kind;
+import org.sonar.uast.Visitor;
 
 import static org.sonar.go.plugin.utils.PluginApiUtils.newRange;
 
-public class HighlightingVisitor {
+/**
+ * Visits all the nodes of a file, see {@link org.sonar.commonruleengine.Engine#scan(UastListener.Source, InputFile, java.util.List)}
+ */
+public class HighlightingVisitor extends Visitor {
 
   private final InputFile inputFile;
-  private final NewHighlighting newHighlighting;
+  private final FileAnalysis fileAnalysis;
+  /**
+   * Whether the visited nodes are part of a type definition
+   */
+  private final Deque<Boolean> typeDefinitions = new ArrayDeque<>();
 
-  public HighlightingVisitor(SensorContext sensorContext, InputFile inputFile) {
+  public HighlightingVisitor(InputFile inputFile, FileAnalysis fileAnalysis) {
     this.inputFile = inputFile;
-    newHighlighting = sensorContext.newHighlighting()
-      .onFile(inputFile);
+    this.fileAnalysis = fileAnalysis;
   }
 
   public void scan(UastNode node) {
-    scanRecursively(node, false);
+    visitNode(node);
+    node.children.forEach(this::scan);
+    leaveNode(node);
+  }
+
+  @Override
+  public void visitNode(UastNode node) {
+    boolean parentIsATypeDefinition = !typeDefinitions.isEmpty() && typeDefinitions.peek();
+    typeDefinitions.push(visitNode(node, parentIsATypeDefinition));
+  }
+
+  @Override
+  public void leaveNode(UastNode node) {
+    typeDefinitions.pop();
   }
 
-  public void scanRecursively(UastNode node, boolean parentIsATypeDefinition) {
+  /**
+   * @return whether the node is part of a type definition
+   */
+  private boolean visitNode(UastNode node, boolean parentIsATypeDefinition) {
     UastNode.Token token = node.token;
     boolean isATypeDefinition = parentIsATypeDefinition || node.is(Kind.TYPE);
     if (token != null) {
@@ -57,17 +81,11 @@ public class HighlightingVisitor {
         highlight(token, TypeOfText.KEYWORD_LIGHT);
       }
     }
-    for (UastNode child : node.children) {
-      scanRecursively(child, isATypeDefinition);
-    }
-  }
-
-  private NewHighlighting highlight(UastNode.Token token, TypeOfText typeOfText) {
-    return newHighlighting.highlight(newRange(inputFile, token), typeOfText);
+    return isATypeDefinition;
   }
 
-  public void save() {
-    newHighlighting.save();
+  private void highlight(UastNode.Token token, TypeOfText typeOfText) {
+    fileAnalysis.highlight(newRange(inputFile, token), typeOfText);
   }
 
 }
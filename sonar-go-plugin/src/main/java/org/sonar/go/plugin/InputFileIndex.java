@@ -0,0 +1,135 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.go.plugin;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.utils.PathUtils;
+
+/**
+ * Index of the Go input files of a module, built once per sensor execution, to resolve the paths found in reports
+ * without a {@link FileSystem} query per attempt: by absolute path, and by the longest suffix of a path which is the
+ * path of a file relative to the base directory, using a trie of the reversed segments of the file URIs, for the
+ * reports generated on another computer. Relative paths are resolved by the indexed relative path predicate of the
+ * file system.
+ */
+public final class InputFileIndex {
+
+  private final FileSystem fileSystem;
+  private final Map<String, InputFile> filesByAbsolutePath = new HashMap<>();
+  private final Node suffixes = new Node();
+
+  private InputFileIndex(FileSystem fileSystem) {
+    this.fileSystem = fileSystem;
+    String baseDir = absolutePath(fileSystem.baseDir().getAbsolutePath());
+    String baseDirPrefix = baseDir.endsWith("/") ? baseDir : (baseDir + "/");
+    for (InputFile inputFile : fileSystem.inputFiles(fileSystem.predicates().hasLanguage(GoLanguage.KEY))) {
+      String absolutePath = absolutePath(Paths.get(inputFile.uri()).toString());
+      filesByAbsolutePath.put(absolutePath, inputFile);
+      if (absolutePath.startsWith(baseDirPrefix)) {
+        List<String> segments = segments(absolutePath.substring(baseDirPrefix.length()));
+        Node node = suffixes;
+        for (int i = segments.size() - 1; i >= 0; i--) {
+          node = node.children.computeIfAbsent(segments.get(i), key -> new Node());
+        }
+        node.inputFile = inputFile;
+      }
+    }
+  }
+
+  public static InputFileIndex of(FileSystem fileSystem) {
+    return new InputFileIndex(fileSystem);
+  }
+
+  /**
+   * @return the file with this absolute path or path relative to the module
+   */
+  @CheckForNull
+  public InputFile inputFile(String path) {
+    InputFile inputFile = byAbsolutePath(path);
+    if (inputFile == null) {
+      inputFile = fileSystem.inputFile(fileSystem.predicates().hasRelativePath(path));
+    }
+    return inputFile != null && GoLanguage.KEY.equals(inputFile.language()) ? inputFile : null;
+  }
+
+  /**
+   * @return the file with this absolute path, or else the file whose path relative to the module base directory is
+   * the longest suffix of this path
+   */
+  @CheckForNull
+  public InputFile inputFileBySuffix(String path) {
+    InputFile inputFile = byAbsolutePath(path);
+    return inputFile != null ? inputFile : longestSuffixMatch(path);
+  }
+
+  @CheckForNull
+  private InputFile byAbsolutePath(String path) {
+    return filesByAbsolutePath.get(absolutePath(path));
+  }
+
+  private static String absolutePath(String path) {
+    String sanitizedPath = PathUtils.sanitize(path);
+    return sanitizedPath == null ? "" : sanitizedPath;
+  }
+
+  @CheckForNull
+  private InputFile longestSuffixMatch(String path) {
+    List<String> segments = segments(path);
+    Node node = suffixes;
+    InputFile longestMatch = null;
+    for (int i = segments.size() - 1; i >= 0 && node != null; i--) {
+      node = node.children.get(segments.get(i));
+      if (node != null && node.inputFile != null) {
+        longestMatch = node.inputFile;
+      }
+    }
+    return longestMatch;
+  }
+
+  private static List<String> segments(String path) {
+    List<String> segments = new ArrayList<>();
+    int start = 0;
+    for (int i = 0; i <= path.length(); i++) {
+      if (i == path.length() || path.charAt(i) == '/' || path.charAt(i) == '\\') {
+        String segment = path.substring(start, i);
+        if (!segment.isEmpty() && !".".equals(segment)) {
+          segments.add(segment);
+        }
+        start = i + 1;
+      }
+    }
+    return segments;
+  }
+
+  private static class Node {
+    private final Map<String, Node> children = new HashMap<>();
+    @Nullable
+    private InputFile inputFile;
+  }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.go.plugin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import org.sonar.api.batch.fs.InputFile;
+
+/**
+ * Start offsets of the lines of the raw bytes of a file, to get the byte at a line and column as the Go tools count them,
+ * from 1 and in bytes, without decoding nor splitting the content.
+ * <p>
+ * Lines end with "\n" or "\r\n". As with {@code String.split}, the empty lines at the end of the content are not counted.
+ */
+final class LineIndex {
+
+  private final byte[] content;
+  // lineStarts[i] is the offset of line i + 1, followed by the offset of the end of the last line plus 1
+  private final int[] lineStarts;
+  private final int lineCount;
+
+  private LineIndex(byte[] content, int[] lineStarts, int lineCount) {
+    this.content = content;
+    this.lineStarts = lineStarts;
+    this.lineCount = lineCount;
+  }
+
+  static LineIndex of(InputFile inputFile) throws IOException {
+    try (InputStream inputStream = inputFile.inputStream()) {
+      return of(UastGeneratorWrapper.readAllBytes(inputStream));
+    }
+  }
+
+  static LineIndex of(byte[] content) {
+    int[] lineStarts = new int[16];
+    int count = 1;
+    for (int i = 0; i < content.length; i++) {
+      if (content[i] == '\n') {
+        if (count == lineStarts.length) {
+          lineStarts = Arrays.copyOf(lineStarts, count * 2);
+        }
+        lineStarts[count] = i + 1;
+        count++;
+      }
+    }
+    if (count == lineStarts.length) {
+      lineStarts = Arrays.copyOf(lineStarts, count + 1);
+    }
+    lineStarts[count] = content.length + 1;
+    LineIndex index = new LineIndex(content, lineStarts, count);
+    int lineCount = count;
+    while (lineCount > 0 && index.lineLength(lineCount) == 0) {
+      lineCount--;
+    }
+    return lineCount == count ? index : new LineIndex(content, lineStarts, lineCount);
+  }
+
+  int lineCount() {
+    return lineCount;
+  }
+
+  /**
+   * @return the number of bytes of a line, without its line terminator, 0 for the lines which are not counted
+   */
+  int lineLength(int line) {
+    if (line < 1 || line > lineCount) {
+      return 0;
+    }
+    int start = lineStarts[line - 1];
+    int end = lineStarts[line] - 1;
+    if (end > start && content[end - 1] == '\r') {
+      end--;
+    }
+    return end - start;
+  }
+
+  /**
+   * @param column from 1 to {@link #lineLength(int)}
+   * @return the unsigned value of the byte
+   */
+  int byteAt(int line, int column) {
+    if (column < 1 || column > lineLength(line)) {
+      throw new IndexOutOfBoundsException("No column " + column + " on line " + line);
+    }
+    return content[lineStarts[line - 1] + column - 1] & 0xFF;
+  }
+
+}
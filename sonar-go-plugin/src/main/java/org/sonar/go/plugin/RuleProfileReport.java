@@ -0,0 +1,90 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.go.plugin;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.commonruleengine.RuleProfiler;
+
+/**
+ * Writes the measures of a {@link RuleProfiler} as json into the working directory, and logs the slowest rules
+ */
+class RuleProfileReport {
+
+  private static final Logger LOG = Loggers.get(RuleProfileReport.class);
+  private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+  static final String FILE_NAME = "go-rule-profile.json";
+  static final int MAX_REPORTED_FILES = 1000;
+  private static final int MAX_LOGGED_RULES = 10;
+
+  private RuleProfileReport() {
+    // utility class
+  }
+
+  static Path save(RuleProfiler ruleProfiler, Path workDir) throws IOException {
+    List<RuleProfiler.Measure> ruleMeasures = ruleProfiler.ruleMeasures();
+    List<RuleProfiler.Measure> fileMeasures = ruleProfiler.fileMeasures();
+    JsonObject report = new JsonObject();
+    report.addProperty("allocationsMeasured", ruleProfiler.measuresAllocations());
+    report.addProperty("files", fileMeasures.size());
+    report.add("rules", toJson(ruleMeasures));
+    report.add("slowestFiles", toJson(fileMeasures.subList(0, Math.min(MAX_REPORTED_FILES, fileMeasures.size()))));
+    Path reportFile = workDir.resolve(FILE_NAME);
+    try (Writer writer = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8)) {
+      GSON.toJson(report, writer);
+    }
+
+    LOG.info("Rule profile of {} files written to {}", fileMeasures.size(), reportFile);
+    for (RuleProfiler.Measure measure : ruleMeasures.subList(0, Math.min(MAX_LOGGED_RULES, ruleMeasures.size()))) {
+      if (ruleProfiler.measuresAllocations()) {
+        LOG.info("  {}: {} ms, {} calls, {} KB allocated", measure.name(), TimeUnit.NANOSECONDS.toMillis(measure.nanos()), measure.calls(),
+          measure.allocatedBytes() / 1024);
+      } else {
+        LOG.info("  {}: {} ms, {} calls", measure.name(), TimeUnit.NANOSECONDS.toMillis(measure.nanos()), measure.calls());
+      }
+    }
+    return reportFile;
+  }
+
+  private static JsonArray toJson(List<RuleProfiler.Measure> measures) {
+    JsonArray array = new JsonArray();
+    for (RuleProfiler.Measure measure : measures) {
+      JsonObject object = new JsonObject();
+      object.addProperty("name", measure.name());
+      object.addProperty("calls", measure.calls());
+      object.addProperty("nanos", measure.nanos());
+      object.addProperty("allocatedBytes", measure.allocatedBytes());
+      array.add(object);
+    }
+    return array;
+  }
+}
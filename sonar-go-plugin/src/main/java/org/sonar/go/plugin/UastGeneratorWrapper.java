@@ -19,58 +19,286 @@
  */
 package org.sonar.go.plugin;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.annotation.Nullable;
+import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.uast.UastListener;
 import org.sonar.uast.UastNode;
 
-class UastGeneratorWrapper {
+/**
+ * Keeps one uast-generator-go process alive in server mode ("-s") and exchanges length-prefixed frames with it:
+ * <ul>
+ *   <li>request: [int size][size bytes of go source]</li>
+ *   <li>response: [byte status][int size][size bytes of UAST, or error message when status is not 0]</li>
+ * </ul>
+ * The generator is started with "-b" and answers with binary UASTs. A UAST starting with '{' is read as json,
+ * which allows to debug with a generator started without "-b".
+ * The process is (re)started on demand, so a crash only fails the file being parsed.
+ * <p>
+ * {@link #createUasts} uses instead the batch mode ("-m"): a short-lived process reads a list of files from disk, parses them
+ * with "-j" goroutines and answers with [int file index][byte status][int size][size bytes of UAST, or error message]
+ * for each of them, in completion order.
+ * This class is not thread-safe.
+ */
+class UastGeneratorWrapper implements Closeable {
 
   private static final Logger LOG = Loggers.get(UastGeneratorWrapper.class);
 
+  static final long DEFAULT_TIMEOUT_MS = 10_000;
+  private static final byte STATUS_OK = 0;
+
+  private final List<String> command;
+  private final String version;
   private final ProcessBuilder processBuilder;
   private final ExternalProcessStreamConsumer errorConsumer;
+  private final ExecutorService responseReader;
+  private final long timeoutMs;
+
+  @Nullable
+  private Process process;
+  @Nullable
+  private DataOutputStream requests;
+  @Nullable
+  private DataInputStream responses;
 
   UastGeneratorWrapper(SensorContext sensorContext) throws IOException {
     this(new DefaultCommand(sensorContext.fileSystem().workDir()));
   }
 
   UastGeneratorWrapper(Command command) {
-    processBuilder = new ProcessBuilder(command.getCommand());
+    this(command, DEFAULT_TIMEOUT_MS);
+  }
+
+  UastGeneratorWrapper(Command command, long timeoutMs) {
+    this.command = command.getCommand();
+    this.version = command.getVersion();
+    processBuilder = new ProcessBuilder(withArguments("-s", "-b"));
     errorConsumer = new ExternalProcessStreamConsumer();
+    responseReader = Executors.newSingleThreadExecutor(r -> {
+      Thread thread = new Thread(r);
+      thread.setName("uast-generator-response-reader");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.timeoutMs = timeoutMs;
   }
 
   UastNode createUast(InputStream source) throws IOException, InterruptedException {
-    Process process = processBuilder.start();
-    errorConsumer.consumeStream(process.getErrorStream(), LOG::debug);
-    try (OutputStream out = process.getOutputStream();
-         InputStream in = process.getInputStream()) {
-      copy(source, process.getOutputStream());
-      out.close();
-      UastNode uastNode = UastNode.from(new InputStreamReader(in, StandardCharsets.UTF_8));
-      boolean exited = process.waitFor(5, TimeUnit.SECONDS);
-      if (exited && process.exitValue() != 0) {
-        throw new IllegalStateException("Parser returned non-zero exit value: " + process.exitValue());
+    return deserialize(createSerializedUast(readAllBytes(source)));
+  }
+
+  /**
+   * @return the UAST as returned by the generator, see {@link #deserialize}
+   */
+  byte[] createSerializedUast(byte[] source) throws IOException, InterruptedException {
+    startIfNeeded();
+    try {
+      requests.writeInt(source.length);
+      requests.write(source);
+      requests.flush();
+    } catch (IOException e) {
+      throw processFailure(e);
+    }
+    Future<byte[]> response = responseReader.submit(this::readResponse);
+    byte[] uast;
+    try {
+      uast = response.get(timeoutMs, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      response.cancel(true);
+      stop();
+      throw new IllegalStateException("Took too long to parse. External process killed forcibly");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof ParserException) {
+        throw (ParserException) e.getCause();
+      }
+      throw processFailure(e.getCause());
+    }
+    return uast;
+  }
+
+  /**
+   * Parses files from disk in a single generator process, the consumer is called for each file as soon as its serialized UAST
+   * is available.
+   */
+  void createUasts(List<InputFile> inputFiles, int parallelism, UastConsumer consumer) throws IOException, InterruptedException {
+    Process batchProcess = new ProcessBuilder(withArguments("-b", "-j", String.valueOf(parallelism), "-m", "-")).start();
+    errorConsumer.consumeStream(batchProcess.getErrorStream(), LOG::debug);
+    InputFile[] pendingFiles = inputFiles.toArray(new InputFile[0]);
+    int pendingCount = pendingFiles.length;
+    try {
+      // the generator reads the whole manifest before writing any response
+      try (Writer manifest = new OutputStreamWriter(new BufferedOutputStream(batchProcess.getOutputStream()), StandardCharsets.UTF_8)) {
+        for (InputFile inputFile : inputFiles) {
+          manifest.write(Paths.get(inputFile.uri()).toString());
+          manifest.write('\n');
+        }
+      }
+      DataInputStream batchResponses = new DataInputStream(new BufferedInputStream(batchProcess.getInputStream()));
+      while (pendingCount > 0) {
+        Future<BatchResponse> response = responseReader.submit(() -> readBatchResponse(batchResponses));
+        BatchResponse batchResponse;
+        try {
+          batchResponse = response.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+          response.cancel(true);
+          throw new IllegalStateException("Took too long to parse. External process killed forcibly");
+        } catch (ExecutionException e) {
+          throw new IllegalStateException("Parser process failed", e.getCause());
+        }
+        InputFile inputFile = batchResponse.index < pendingFiles.length ? pendingFiles[batchResponse.index] : null;
+        if (inputFile == null) {
+          throw new IllegalStateException("Parser returned an unexpected file index: " + batchResponse.index);
+        }
+        pendingFiles[batchResponse.index] = null;
+        pendingCount--;
+        if (batchResponse.error != null) {
+          consumer.accept(inputFile, null, new ParserException("Parser returned an error: " + batchResponse.error));
+        } else {
+          consumer.accept(inputFile, batchResponse.serializedUast, null);
+        }
       }
-      if (process.isAlive()) {
-        process.destroyForcibly();
-        throw new IllegalStateException("Took too long to parse. External process killed forcibly");
+    } catch (IOException | IllegalStateException e) {
+      for (InputFile pendingFile : pendingFiles) {
+        if (pendingFile != null) {
+          consumer.accept(pendingFile, null, e);
+        }
       }
-      return uastNode;
+    } finally {
+      if (!batchProcess.waitFor(1, TimeUnit.SECONDS)) {
+        batchProcess.destroyForcibly();
+      }
+    }
+  }
+
+  private static BatchResponse readBatchResponse(DataInputStream batchResponses) throws IOException {
+    int index = batchResponses.readInt();
+    byte status = batchResponses.readByte();
+    byte[] payload = new byte[batchResponses.readInt()];
+    batchResponses.readFully(payload);
+    if (status != STATUS_OK) {
+      return new BatchResponse(index, null, new String(payload, StandardCharsets.UTF_8));
+    }
+    return new BatchResponse(index, payload, null);
+  }
+
+  static UastNode deserialize(byte[] uast) throws IOException {
+    if (uast.length > 0 && uast[0] == '{') {
+      return UastNode.from(new InputStreamReader(new ByteArrayInputStream(uast), StandardCharsets.UTF_8));
+    }
+    return UastNode.fromBinary(uast);
+  }
+
+  /**
+   * Same as {@link #deserialize} without keeping the whole UAST in memory, see {@link UastListener}
+   */
+  static void read(byte[] uast, UastListener listener) throws IOException {
+    if (uast.length > 0 && uast[0] == '{') {
+      UastNode.read(new InputStreamReader(new ByteArrayInputStream(uast), StandardCharsets.UTF_8), listener);
+    } else {
+      UastNode.readBinary(uast, listener);
     }
   }
 
+  private List<String> withArguments(String... arguments) {
+    List<String> commandWithArguments = new ArrayList<>(command);
+    commandWithArguments.addAll(Arrays.asList(arguments));
+    return commandWithArguments;
+  }
+
+  private byte[] readResponse() throws IOException {
+    byte status = responses.readByte();
+    byte[] payload = new byte[responses.readInt()];
+    responses.readFully(payload);
+    if (status != STATUS_OK) {
+      throw new ParserException("Parser returned an error: " + new String(payload, StandardCharsets.UTF_8));
+    }
+    return payload;
+  }
+
+  private void startIfNeeded() throws IOException {
+    if (process != null && process.isAlive()) {
+      return;
+    }
+    if (process != null) {
+      LOG.debug("Restarting UAST generator, previous process exited with value {}", process.exitValue());
+    }
+    process = processBuilder.start();
+    errorConsumer.consumeStream(process.getErrorStream(), LOG::debug);
+    requests = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+    responses = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+  }
+
+  private IllegalStateException processFailure(Throwable cause) throws InterruptedException {
+    Process failedProcess = process;
+    if (failedProcess != null && failedProcess.waitFor(1, TimeUnit.SECONDS)) {
+      process = null;
+      return new IllegalStateException("Parser returned non-zero exit value: " + failedProcess.exitValue(), cause);
+    }
+    stop();
+    return new IllegalStateException("Parser process stopped responding. External process killed forcibly", cause);
+  }
+
+  private void stop() {
+    if (process != null) {
+      process.destroyForcibly();
+      process = null;
+    }
+  }
+
+  @Override
+  public void close() {
+    if (process != null) {
+      try {
+        // closing stdin lets the server terminate gracefully
+        requests.close();
+        process.waitFor(1, TimeUnit.SECONDS);
+      } catch (IOException e) {
+        LOG.debug("Error while closing UAST generator", e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      stop();
+    }
+    responseReader.shutdownNow();
+  }
+
+  static byte[] readAllBytes(InputStream in) throws IOException {
+    ByteArrayOutputStream content = new ByteArrayOutputStream();
+    copy(in, content);
+    return content.toByteArray();
+  }
+
   private static void copy(InputStream in, OutputStream out) throws IOException {
     byte[] buffer = new byte[8192];
     int read;
@@ -79,22 +307,73 @@ class UastGeneratorWrapper {
     }
   }
 
+  static class ParserException extends IllegalStateException {
 
+    private static final long serialVersionUID = 1L;
+
+    ParserException(String message) {
+      super(message);
+    }
+  }
+
+  /**
+   * Identifies the UASTs produced by the generator, for {@link AnalysisCache}
+   */
+  String version() {
+    return version;
+  }
+
+  interface UastConsumer {
+    void accept(InputFile inputFile, @Nullable byte[] serializedUast, @Nullable Exception failure);
+  }
+
+  private static class BatchResponse {
+    private final int index;
+    @Nullable
+    private final byte[] serializedUast;
+    @Nullable
+    private final String error;
+
+    private BatchResponse(int index, @Nullable byte[] serializedUast, @Nullable String error) {
+      this.index = index;
+      this.serializedUast = serializedUast;
+      this.error = error;
+    }
+  }
+
+  /**
+   * Command starting the generator, the wrapper adds the arguments selecting the mode
+   */
   interface Command {
     List<String> getCommand();
+
+    default String getVersion() {
+      return String.join(" ", getCommand());
+    }
   }
 
+  /**
+   * Extracts the generator binary of the current OS into the working directory. Immutable, so that a single instance,
+   * created once per analysis, is shared by the wrappers of all the analysis threads.
+   */
   static class DefaultCommand implements Command {
 
     private final String command;
+    private final String version;
 
     DefaultCommand(File workDir) throws IOException {
       command = extract(workDir);
+      version = AnalysisCache.key(getExecutableForCurrentOS(), Files.readAllBytes(Paths.get(command)));
     }
 
     @Override
     public List<String> getCommand() {
-      return Arrays.asList(command, "-");
+      return Collections.singletonList(command);
+    }
+
+    @Override
+    public String getVersion() {
+      return version;
     }
 
     private String extract(File workDir) throws IOException {
@@ -26,7 +26,6 @@ import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import javax.annotation.Nullable;
-import org.sonar.api.batch.fs.FilePredicates;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.rule.Severity;
 import org.sonar.api.batch.sensor.Sensor;
@@ -43,6 +42,7 @@ import org.sonar.api.utils.Version;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.go.plugin.GoLanguage;
+import org.sonar.go.plugin.InputFileIndex;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
@@ -74,9 +74,10 @@ public abstract class AbstractReportSensor implements Sensor {
       return;
     }
 
+    InputFileIndex inputFileIndex = InputFileIndex.of(context.fileSystem());
     for (String reportPath : reportPaths) {
       File report = getIOFile(context.fileSystem().baseDir(), reportPath);
-      importReport(context, report);
+      importReport(context, inputFileIndex, report);
     }
   }
 
@@ -84,14 +85,14 @@ public abstract class AbstractReportSensor implements Sensor {
     return this.getClass().getSimpleName() + ": ";
   }
 
-  private void importReport(SensorContext context, File report) {
+  private void importReport(SensorContext context, InputFileIndex inputFileIndex, File report) {
     try {
       LOG.info(logPrefix() + "Importing {}", report.getPath());
       for (String line : Files.readAllLines(report.toPath(), UTF_8)) {
         if (!line.isEmpty()) {
           ExternalIssue issue = parse(line);
           if (issue != null) {
-            addLineIssue(context, issue);
+            addLineIssue(context, inputFileIndex, issue);
           }
         }
       }
@@ -121,9 +122,8 @@ public abstract class AbstractReportSensor implements Sensor {
     return file;
   }
 
-  InputFile getInputFile(SensorContext context, String filePath) {
-    FilePredicates predicates = context.fileSystem().predicates();
-    InputFile inputFile = context.fileSystem().inputFile(predicates.or(predicates.hasRelativePath(filePath), predicates.hasAbsolutePath(filePath)));
+  InputFile getInputFile(InputFileIndex inputFileIndex, String filePath) {
+    InputFile inputFile = inputFileIndex.inputFile(filePath);
     if (inputFile == null) {
       LOG.warn(logPrefix() + "No input file found for {}. No {} issues will be imported on this file.", filePath, linterName());
       return null;
@@ -131,8 +131,8 @@ public abstract class AbstractReportSensor implements Sensor {
     return inputFile;
   }
 
-  void addLineIssue(SensorContext context, ExternalIssue issue) {
-    InputFile inputFile = getInputFile(context, issue.filename);
+  void addLineIssue(SensorContext context, InputFileIndex inputFileIndex, ExternalIssue issue) {
+    InputFile inputFile = getInputFile(inputFileIndex, issue.filename);
     if (inputFile != null) {
       NewExternalIssue newExternalIssue = context.newExternalIssue();
       NewIssueLocation primaryLocation = newExternalIssue.newLocation()
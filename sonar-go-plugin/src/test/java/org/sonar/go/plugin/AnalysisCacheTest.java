@@ -0,0 +1,118 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.go.plugin;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AnalysisCacheTest {
+
+  private Path directory;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    directory = Files.createTempDirectory("analysis-cache").resolve(AnalysisCache.DIRECTORY_NAME);
+  }
+
+  @Test
+  void key() {
+    String key = AnalysisCache.key("v1", bytes("package main"));
+    assertThat(key).hasSize(64).matches("[0-9a-f]+");
+    assertThat(AnalysisCache.key("v1", bytes("package main"))).isEqualTo(key);
+    assertThat(AnalysisCache.key("v2", bytes("package main"))).isNotEqualTo(key);
+    assertThat(AnalysisCache.key("v1", bytes("package other"))).isNotEqualTo(key);
+  }
+
+  @Test
+  void put_and_get() throws IOException {
+    AnalysisCache cache = new AnalysisCache(directory, 100);
+    assertThat(cache.get("a")).isNull();
+    cache.put("a", bytes("uast a"));
+    assertThat(cache.get("a")).isEqualTo(bytes("uast a"));
+    cache.put("a", bytes("uast a2"));
+    assertThat(cache.get("a")).isEqualTo(bytes("uast a2"));
+    assertThat(cache.size()).isEqualTo(7);
+    assertThat(new AnalysisCache(directory, 100).get("a")).isEqualTo(bytes("uast a2"));
+  }
+
+  @Test
+  void least_recently_used_entries_are_evicted() throws IOException {
+    AnalysisCache cache = new AnalysisCache(directory, 10);
+    cache.put("a", bytes("aaaa"));
+    cache.put("b", bytes("bbbb"));
+    assertThat(cache.get("a")).isNotNull();
+    cache.put("c", bytes("cccc"));
+    assertThat(cache.get("b")).isNull();
+    assertThat(directory.resolve("b")).doesNotExist();
+    assertThat(cache.get("a")).isNotNull();
+    assertThat(cache.get("c")).isNotNull();
+    assertThat(cache.size()).isEqualTo(8);
+
+    cache.put("too big", bytes("01234567890"));
+    assertThat(cache.get("too big")).isNull();
+    assertThat(cache.size()).isEqualTo(8);
+  }
+
+  @Test
+  void usage_order_is_kept_between_analyses() throws IOException {
+    Files.createDirectories(directory);
+    Files.write(directory.resolve("old"), bytes("oooo"));
+    Files.setLastModifiedTime(directory.resolve("old"), FileTime.fromMillis(1_000));
+    Files.write(directory.resolve("recent"), bytes("rrrr"));
+    Files.setLastModifiedTime(directory.resolve("recent"), FileTime.fromMillis(2_000));
+    Files.write(directory.resolve("a.tmp"), bytes("interrupted write"));
+
+    AnalysisCache cache = new AnalysisCache(directory, 10);
+    assertThat(directory.resolve("a.tmp")).doesNotExist();
+    assertThat(cache.size()).isEqualTo(8);
+    cache.put("new", bytes("nnnn"));
+    assertThat(cache.get("old")).isNull();
+    assertThat(cache.get("recent")).isEqualTo(bytes("rrrr"));
+    assertThat(cache.get("new")).isEqualTo(bytes("nnnn"));
+  }
+
+  @Test
+  void cache_is_reduced_to_max_size() throws IOException {
+    AnalysisCache cache = new AnalysisCache(directory, 100);
+    cache.put("a", bytes("aaaa"));
+    cache.put("b", bytes("bbbb"));
+    assertThat(new AnalysisCache(directory, 4).size()).isEqualTo(4);
+  }
+
+  @Test
+  void deleted_entry() throws IOException {
+    AnalysisCache cache = new AnalysisCache(directory, 100);
+    cache.put("a", bytes("aaaa"));
+    Files.delete(directory.resolve("a"));
+    assertThat(cache.get("a")).isNull();
+    assertThat(cache.size()).isZero();
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.go.plugin;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.utils.log.LoggerLevel;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AnalysisTimingsTest {
+
+  @RegisterExtension
+  static JUnit5LogTester logTester = new JUnit5LogTester();
+
+  @Test
+  void percentile() {
+    long[] values = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+    assertThat(AnalysisTimings.percentile(values, 50)).isEqualTo(5);
+    assertThat(AnalysisTimings.percentile(values, 95)).isEqualTo(10);
+    assertThat(AnalysisTimings.percentile(values, 99)).isEqualTo(10);
+    assertThat(AnalysisTimings.percentile(new long[] {42}, 50)).isEqualTo(42);
+    assertThat(AnalysisTimings.percentile(new long[0], 99)).isZero();
+  }
+
+  @Test
+  void laps_are_attributed_to_phases() throws Exception {
+    FileTimings timings = new FileTimings();
+    Thread.sleep(2);
+    timings.lap(FileTimings.Phase.PARSE);
+    timings.add(FileTimings.Phase.SCAN, 5);
+    timings.lap(FileTimings.Phase.SCAN);
+    assertThat(timings.nanos(FileTimings.Phase.PARSE)).isGreaterThanOrEqualTo(2_000_000L);
+    assertThat(timings.nanos(FileTimings.Phase.SCAN)).isGreaterThanOrEqualTo(5L);
+    assertThat(timings.nanos(FileTimings.Phase.READ)).isZero();
+    assertThat(timings.totalNanos()).isEqualTo(timings.nanos(FileTimings.Phase.PARSE) + timings.nanos(FileTimings.Phase.SCAN));
+  }
+
+  @Test
+  void report_lists_phases_and_slowest_files() throws Exception {
+    Path workDir = Files.createTempDirectory("work");
+    AnalysisTimings analysisTimings = new AnalysisTimings();
+    analysisTimings.add(TestInputFileBuilder.create("module", "fast.go").build(), timings(1_000_000L, 2_000_000L));
+    analysisTimings.add(TestInputFileBuilder.create("module", "slow.go").build(), timings(300_000_000L, 4_000_000L));
+
+    Path reportFile = analysisTimings.save(workDir);
+
+    assertThat(reportFile).isEqualTo(workDir.resolve(AnalysisTimings.FILE_NAME));
+    JsonObject report = new JsonParser().parse(new String(Files.readAllBytes(reportFile), StandardCharsets.UTF_8)).getAsJsonObject();
+    assertThat(report.get("files").getAsInt()).isEqualTo(2);
+    JsonObject parse = report.getAsJsonObject("phases").getAsJsonObject("parse");
+    assertThat(parse.get("totalMs").getAsLong()).isEqualTo(301);
+    assertThat(parse.get("p50Ms").getAsLong()).isEqualTo(1);
+    assertThat(parse.get("p99Ms").getAsLong()).isEqualTo(300);
+    assertThat(report.getAsJsonObject("phases").getAsJsonObject("total").get("maxMs").getAsLong()).isEqualTo(304);
+    JsonObject slowestFile = report.getAsJsonArray("slowestFiles").get(0).getAsJsonObject();
+    assertThat(slowestFile.get("name").getAsString()).isEqualTo("slow.go");
+    assertThat(slowestFile.get("scanMs").getAsLong()).isEqualTo(4);
+    assertThat(logTester.logs(LoggerLevel.INFO)).contains(
+      "Timings of 2 files written to " + reportFile,
+      "  parse: total 301 ms, p50 1 ms, p95 300 ms, p99 300 ms",
+      "  304 ms (parse 300 ms, scan 4 ms): slow.go");
+  }
+
+  private static FileTimings timings(long parseNanos, long scanNanos) {
+    FileTimings timings = new FileTimings();
+    timings.add(FileTimings.Phase.PARSE, parseNanos);
+    timings.add(FileTimings.Phase.SCAN, scanNanos);
+    return timings;
+  }
+}
@@ -0,0 +1,212 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.go.plugin;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CoverageProfileParserTest {
+
+  private static final Path COVERAGE_DIR = Paths.get("src", "test", "resources", "coverage");
+
+  private final List<String> blocks = new ArrayList<>();
+  private final List<String> filePaths = new ArrayList<>();
+
+  @Test
+  void blocks() throws IOException {
+    parse("mode: count\n" +
+      "_/my-app/my-app.go:3.10,4.5 2 234\n" +
+      "\n" +
+      "my-app\\other.go:1.1,2147483647.2 0 0\n");
+    assertThat(blocks).containsExactly(
+      "_/my-app/my-app.go 3.10,4.5 2 234",
+      "my-app\\other.go 1.1,2147483647.2 0 0");
+  }
+
+  @Test
+  void modes() throws IOException {
+    parse("mode: set\nmain.go:2.2,2.5 1 1\n");
+    parse("mode: count\nmain.go:2.2,2.5 1 2\n");
+    parse("mode: atomic\nmain.go:2.2,2.5 1 3\n");
+    assertThat(blocks).containsExactly("main.go 2.2,2.5 1 1", "main.go 2.2,2.5 1 2", "main.go 2.2,2.5 1 3");
+  }
+
+  @Test
+  void file_path_formats() throws IOException {
+    parse("mode: set\n" +
+      "my-app/my-app.go:3.2,3.10 1 1\n" +
+      "_/my-app/my-app.go:3.2,3.10 1 21\n" +
+      "my-app\\my-app.go:3.2,3.10 1 0\n" +
+      "_\\C_\\my-app\\my-app.go:3.2,3.10 1 42\n");
+    assertThat(blocks).containsExactly(
+      "my-app/my-app.go 3.2,3.10 1 1",
+      "_/my-app/my-app.go 3.2,3.10 1 21",
+      "my-app\\my-app.go 3.2,3.10 1 0",
+      "_\\C_\\my-app\\my-app.go 3.2,3.10 1 42");
+  }
+
+  @Test
+  void file_path_containing_colons() throws IOException {
+    parse("mode: set\nC:\\go\\src\\a:b.go:3.2,3.10 1 1");
+    assertThat(blocks).containsExactly("C:\\go\\src\\a:b.go 3.2,3.10 1 1");
+  }
+
+  @Test
+  void crlf_line_endings() throws IOException {
+    parse("mode: atomic\r\nmain.go:2.2,2.5 1 3\r\nmain.go:4.2,4.7 1 0\r\n");
+    assertThat(blocks).containsExactly("main.go 2.2,2.5 1 3", "main.go 4.2,4.7 1 0");
+  }
+
+  @Test
+  void lines_larger_than_the_buffer() throws IOException {
+    StringBuilder longPath = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      longPath.append("directory").append(i).append('/');
+    }
+    Path report = report("mode: set\n" + longPath + "a.go:1.2,3.4 5 6\nb.go:7.8,9.10 11 12\n");
+    CoverageProfileParser.parse(report, this::add, 7);
+    assertThat(blocks).containsExactly(longPath + "a.go 1.2,3.4 5 6", "b.go 7.8,9.10 11 12");
+  }
+
+  @Test
+  void file_paths_are_shared() throws IOException {
+    parse("mode: set\na.go:1.1,1.2 1 1\na.go:2.1,2.2 1 1\nb.go:1.1,1.2 1 1\na.go:3.1,3.2 1 1\n");
+    assertThat(filePaths).containsExactly("a.go", "a.go", "b.go", "a.go");
+    assertThat(filePaths.get(1)).isSameAs(filePaths.get(0));
+    assertThat(filePaths.get(3)).isSameAs(filePaths.get(0));
+  }
+
+  @Test
+  void same_blocks_as_the_regexp() throws IOException {
+    // regexp of the ParseProfiles function of the go tool
+    Pattern blockLine = Pattern.compile("^(.+):(\\d+)\\.(\\d+),(\\d+)\\.(\\d+) (\\d+) (\\d+)$");
+    List<String> expected = new ArrayList<>();
+    List<String> lines = Files.readAllLines(COVERAGE_DIR.resolve("coverage.win.absolute.out"), UTF_8);
+    for (String line : lines.subList(1, lines.size())) {
+      Matcher matcher = blockLine.matcher(line);
+      assertThat(matcher.matches()).as(line).isTrue();
+      expected.add(matcher.group(1) + " " + matcher.group(2) + "." + matcher.group(3) + "," + matcher.group(4) + "." + matcher.group(5)
+        + " " + matcher.group(6) + " " + matcher.group(7));
+    }
+    CoverageProfileParser.parse(COVERAGE_DIR.resolve("coverage.win.absolute.out"), this::add);
+    assertThat(blocks).isEqualTo(expected);
+  }
+
+  @Test
+  void chunks() throws IOException {
+    StringBuilder content = new StringBuilder("mode: count\n");
+    List<String> expected = new ArrayList<>();
+    for (int i = 1; i <= 200; i++) {
+      content.append("pkg").append(i % 3).append("/a.go:").append(i).append(".1,").append(i).append(".20 1 ").append(i).append('\n');
+      expected.add("pkg" + (i % 3) + "/a.go " + i + ".1," + i + ".20 1 " + i);
+    }
+    Path report = report(content.toString());
+    List<CoverageProfileParser.Chunk> chunks = CoverageProfileParser.chunks(report, 100);
+    assertThat(chunks.size()).isGreaterThan(40);
+    assertThat(chunks.get(0).start).isZero();
+    assertThat(chunks.get(chunks.size() - 1).end).isEqualTo(Files.size(report));
+    for (int i = 1; i < chunks.size(); i++) {
+      assertThat(chunks.get(i).start).isEqualTo(chunks.get(i - 1).end);
+    }
+    for (CoverageProfileParser.Chunk chunk : chunks) {
+      CoverageProfileParser.parse(report, chunk, this::add);
+    }
+    assertThat(blocks).isEqualTo(expected);
+
+    assertThat(CoverageProfileParser.chunks(report, Long.MAX_VALUE)).hasSize(1);
+    assertThat(CoverageProfileParser.chunks(report(""), 100)).extracting(chunk -> chunk.end).containsExactly(0L);
+  }
+
+  @Test
+  void invalid_line_in_chunk() throws IOException {
+    Path report = report("mode: set\na.go:1.1,1.2 1 1\na.go:2.1,2.2 1 1\ninvalid\n");
+    List<CoverageProfileParser.Chunk> chunks = CoverageProfileParser.chunks(report, 10);
+    assertThat(chunks).extracting(chunk -> chunk.start).containsExactly(0L, 10L, 27L, 44L);
+    for (int i = 0; i < 3; i++) {
+      CoverageProfileParser.parse(report, chunks.get(i), this::add);
+    }
+    assertThatThrownBy(() -> CoverageProfileParser.parse(report, chunks.get(3), this::add))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessage("Invalid go coverage at line 4");
+    assertThat(blocks).containsExactly("a.go 1.1,1.2 1 1", "a.go 2.1,2.2 1 1");
+  }
+
+  @Test
+  void invalid_mode_line() {
+    assertThatThrownBy(() -> parse(""))
+      .isInstanceOf(IOException.class)
+      .hasMessage("Invalid go coverage, expect 'mode:' on the first line.");
+    assertThatThrownBy(() -> parse("mode: \nmain.go:2.2,2.5 1 3\n"))
+      .isInstanceOf(IOException.class);
+    assertThatThrownBy(() -> parse("main.go:2.2,2.5 1 3\n"))
+      .isInstanceOf(IOException.class);
+  }
+
+  @Test
+  void invalid_lines() {
+    String[] invalidLines = {
+      "invalid",
+      ":2.2,2.5 1 3",
+      "main.go:2.2,2.5 1",
+      "main.go:2.2,2.5 1 3 ",
+      "main.go:2.2;2.5 1 3",
+      "main.go:2.2,2.5 1 -3",
+      "main.go:2.2,2.5 1 2147483648",
+      "main.go:2.2,2.5 1 99999999999999999999"};
+    for (String invalidLine : invalidLines) {
+      assertThatThrownBy(() -> parse("mode: set\nmain.go:1.1,1.2 1 1\n" + invalidLine + "\n"))
+        .as(invalidLine)
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Invalid go coverage at line 3");
+    }
+  }
+
+  private void parse(String content) throws IOException {
+    CoverageProfileParser.parse(report(content), this::add);
+  }
+
+  private void add(String filePath, int startLine, int startCol, int endLine, int endCol, int numStmt, int count) {
+    filePaths.add(filePath);
+    blocks.add(format(filePath, startLine, startCol, endLine, endCol, numStmt, count));
+  }
+
+  private static String format(String filePath, int startLine, int startCol, int endLine, int endCol, int numStmt, int count) {
+    return filePath + " " + startLine + "." + startCol + "," + endLine + "." + endCol + " " + numStmt + " " + count;
+  }
+
+  private static Path report(String content) throws IOException {
+    Path report = Files.createTempFile("coverage", ".out");
+    report.toFile().deleteOnExit();
+    Files.write(report, content.getBytes(UTF_8));
+    return report;
+  }
+
+}
@@ -25,6 +25,7 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -32,9 +33,12 @@ import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
 import org.sonar.api.batch.sensor.cpd.internal.TokensLine;
 import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.measures.FileLinesContextFactory;
+import org.sonar.commonruleengine.Engine;
 import org.sonar.uast.UastNode;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
 import static org.sonar.go.plugin.utils.TestUtils.readTestResource;
 
 class CpdVisitorTest {
@@ -62,11 +66,12 @@ class CpdVisitorTest {
     InputFile inputFile = createInputFile("lets.go", code);
 
     sensorContext.fileSystem().add(inputFile);
-    CpdVisitor cpdVisitor = new CpdVisitor(sensorContext, inputFile);
+    FileAnalysis fileAnalysis = new FileAnalysis();
+    CpdVisitor cpdVisitor = new CpdVisitor(inputFile, fileAnalysis);
 
     UastNode node = UastNode.from(new StringReader(codeJson));
     cpdVisitor.scan(node);
-    cpdVisitor.save();
+    fileAnalysis.save(sensorContext, inputFile, mock(FileLinesContextFactory.class));
 
     List<TokensLine> tokensLines = sensorContext.cpdTokens("module:" + inputFile.filename());
     assertThat(tokensLines).isNotNull().hasSize(5);
@@ -79,6 +84,22 @@ class CpdVisitorTest {
     assertThat(tokensLines).extracting("startLine").isEqualTo(Arrays.asList(1, 3, 4, 5, 6));
   }
 
+  @Test
+  void visited_by_the_rule_engine() throws IOException {
+    String code = readTestResource(getClass(), "lets.go");
+    String codeJson = readTestResource(getClass(), "lets.go.uast.json");
+    InputFile inputFile = createInputFile("lets.go", code);
+    sensorContext.fileSystem().add(inputFile);
+
+    FileAnalysis scanned = new FileAnalysis();
+    new CpdVisitor(inputFile, scanned).scan(UastNode.from(new StringReader(codeJson)));
+    FileAnalysis streamed = new FileAnalysis();
+    // visited by the rule engine, which reads the function subtree into memory
+    new Engine(Collections.emptyList(), Collections.emptyList())
+      .scan(listener -> UastNode.read(new StringReader(codeJson), listener), inputFile, Collections.singletonList(new CpdVisitor(inputFile, streamed)));
+    assertThat(streamed.serialize()).isEqualTo(scanned.serialize());
+  }
+
   private InputFile createInputFile(String filename, String content) {
     Path filePath = projectDir.resolve(filename);
     return TestInputFileBuilder.create("module", projectDir.toFile(), filePath.toFile())
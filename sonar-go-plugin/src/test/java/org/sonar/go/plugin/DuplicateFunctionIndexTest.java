@@ -0,0 +1,109 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.go.plugin;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.batch.sensor.issue.Issue;
+import org.sonar.api.batch.sensor.issue.IssueLocation;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.log.LoggerLevel;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DuplicateFunctionIndexTest {
+
+  private static final RuleKey RULE_KEY = RuleKey.of("go", "S4144");
+  private static final String CONTENT = "package main\n\nfunc foo() {\n}\n\nfunc bar() {\n}\n";
+
+  @RegisterExtension
+  static JUnit5LogTester logTester = new JUnit5LogTester();
+
+  private SensorContextTester sensorContext;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    Path workDir = Files.createTempDirectory("gotest");
+    workDir.toFile().deleteOnExit();
+    sensorContext = SensorContextTester.create(workDir);
+  }
+
+  @Test
+  void identical_functions_of_other_files_are_reported() {
+    InputFile a = inputFile("a.go");
+    InputFile b = inputFile("b.go");
+    InputFile c = inputFile("c.go");
+    DuplicateFunctionIndex index = new DuplicateFunctionIndex(100);
+    // files are not indexed in path order
+    index.add(c, 42L, 3, c.newRange(3, 5, 3, 8));
+    index.add(c, 42L, 6, c.newRange(6, 5, 6, 8));
+    index.add(a, 7L, 3, a.newRange(3, 5, 3, 8));
+    index.add(a, 42L, 6, a.newRange(6, 5, 6, 8));
+    index.add(b, 8L, 3, b.newRange(3, 5, 3, 8));
+    assertThat(index.size()).isEqualTo(5);
+
+    assertThat(index.reportIssues(sensorContext, RULE_KEY)).isEqualTo(1);
+
+    assertThat(sensorContext.allIssues()).hasSize(1);
+    Issue issue = sensorContext.allIssues().iterator().next();
+    assertThat(issue.ruleKey()).isEqualTo(RULE_KEY);
+    assertThat(issue.primaryLocation().inputComponent()).isEqualTo(c);
+    assertThat(issue.primaryLocation().textRange().start().line()).isEqualTo(3);
+    assertThat(issue.primaryLocation().message()).isEqualTo("Function is identical with function in \"a.go\" on line 6.");
+    IssueLocation original = issue.flows().get(0).locations().get(0);
+    assertThat(original.inputComponent()).isEqualTo(a);
+    assertThat(original.textRange().start().line()).isEqualTo(6);
+    assertThat(original.message()).isEqualTo("Original implementation");
+    assertThat(logTester.logs(LoggerLevel.INFO)).contains("1 functions identical with a function of another file");
+  }
+
+  @Test
+  void number_of_functions_is_bounded() {
+    InputFile a = inputFile("a.go");
+    InputFile b = inputFile("b.go");
+    DuplicateFunctionIndex index = new DuplicateFunctionIndex(2000);
+    for (int i = 0; i < 1500; i++) {
+      index.add(a, i, 3, a.newRange(3, 5, 3, 8));
+    }
+    for (int i = 0; i < 1500; i++) {
+      index.add(b, i, 6, b.newRange(6, 5, 6, 8));
+    }
+    assertThat(index.size()).isEqualTo(2000);
+    assertThat(logTester.logs(LoggerLevel.WARN)).containsExactly("Only the first 2000 functions are compared with the functions of other files");
+    assertThat(index.reportIssues(sensorContext, RULE_KEY)).isEqualTo(500);
+  }
+
+  private InputFile inputFile(String filename) {
+    InputFile inputFile = TestInputFileBuilder.create("module", filename)
+      .setCharset(StandardCharsets.UTF_8)
+      .setContents(CONTENT)
+      .build();
+    sensorContext.fileSystem().add(inputFile);
+    return inputFile;
+  }
+}
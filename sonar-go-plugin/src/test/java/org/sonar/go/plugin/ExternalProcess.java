@@ -19,16 +19,106 @@
  */
 package org.sonar.go.plugin;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
 
 /**
- * Used to test external process return values
+ * Used to test the protocol of the external process in server mode.
+ * Answers each request with a UAST whose token is the number of requests received by this process,
+ * in binary format for the request "binary" and in json otherwise. The request "error" is answered with
+ * an error status and the request "exit" stops the process with the exit value given as first argument.
+ * <p>
+ * In batch mode ("-m"), the files listed on stdin are answered in reverse order with a binary UAST whose token is the file content,
+ * the contents "error" and "exit" behave as in server mode.
  */
 public class ExternalProcess {
 
-  public static void main(String[] args) {
-    System.err.println(Arrays.toString(args));
-    System.out.println(args[0]);
-    System.exit(Integer.valueOf(args[1]));
+  public static void main(String[] args) throws IOException {
+    if (Arrays.asList(args).contains("-m")) {
+      batch(args);
+      return;
+    }
+    DataInputStream in = new DataInputStream(System.in);
+    DataOutputStream out = new DataOutputStream(System.out);
+    int requestCount = 0;
+    while (true) {
+      byte[] request;
+      try {
+        request = new byte[in.readInt()];
+      } catch (EOFException e) {
+        return;
+      }
+      in.readFully(request);
+      requestCount++;
+      String source = new String(request, StandardCharsets.UTF_8);
+      if (source.equals("exit")) {
+        System.err.println("exit requested");
+        System.exit(Integer.parseInt(args[0]));
+      } else if (source.equals("error")) {
+        writeResponse(out, 1, "invalid source".getBytes(StandardCharsets.UTF_8));
+      } else if (source.equals("binary")) {
+        writeResponse(out, 0, binaryUast(String.valueOf(requestCount)));
+      } else {
+        String uast = "{\"kinds\": [\"COMPILATION_UNIT\"], \"token\": {\"value\": \"" + requestCount + "\", \"line\": 1, \"column\": 1}}";
+        writeResponse(out, 0, uast.getBytes(StandardCharsets.UTF_8));
+      }
+    }
+  }
+
+  private static void batch(String[] args) throws IOException {
+    BufferedReader manifest = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+    List<String> paths = manifest.lines().collect(Collectors.toList());
+    DataOutputStream out = new DataOutputStream(System.out);
+    for (int index = paths.size() - 1; index >= 0; index--) {
+      String content = new String(Files.readAllBytes(Paths.get(paths.get(index))), StandardCharsets.UTF_8);
+      out.writeInt(index);
+      if (content.equals("exit")) {
+        out.flush();
+        System.exit(Integer.parseInt(args[0]));
+      } else if (content.equals("error")) {
+        writeResponse(out, 1, "invalid source".getBytes(StandardCharsets.UTF_8));
+      } else {
+        writeResponse(out, 0, binaryUast(content));
+      }
+    }
+  }
+
+  private static byte[] binaryUast(String tokenValue) {
+    ByteArrayOutputStream uast = new ByteArrayOutputStream();
+    // version, kind table, string table
+    uast.write(1);
+    uast.write(1);
+    writeString(uast, "COMPILATION_UNIT");
+    uast.write(2);
+    writeString(uast, "");
+    writeString(uast, tokenValue);
+    // kinds, native node, token value, line and column (zigzag encoded), no children
+    byte[] node = {1, 0, 0, 2, 2, 2, 0};
+    uast.write(node, 0, node.length);
+    return uast.toByteArray();
+  }
+
+  private static void writeString(ByteArrayOutputStream out, String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.write(bytes.length);
+    out.write(bytes, 0, bytes.length);
+  }
+
+  private static void writeResponse(DataOutputStream out, int status, byte[] bytes) throws IOException {
+    out.writeByte(status);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+    out.flush();
   }
 }
@@ -0,0 +1,110 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.go.plugin;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.sensor.highlighting.TypeOfText;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.batch.sensor.issue.Issue;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.FileLinesContext;
+import org.sonar.api.measures.FileLinesContextFactory;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.commonruleengine.LineSet;
+import org.sonar.commonruleengine.Metrics;
+import org.sonar.commonruleengine.checks.Check;
+import org.sonar.uast.UastNode;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FileAnalysisTest {
+
+  private SensorContextTester sensorContext;
+  private InputFile inputFile;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    Path workDir = Files.createTempDirectory("gotest");
+    workDir.toFile().deleteOnExit();
+    sensorContext = SensorContextTester.create(workDir);
+    inputFile = TestInputFileBuilder.create("module", "lets.go")
+      .setCharset(StandardCharsets.UTF_8)
+      .setContents("package main\n\nfunc foo() {\n}\n")
+      .build();
+    sensorContext.fileSystem().add(inputFile);
+  }
+
+  @Test
+  void serialization_roundtrip() throws IOException {
+    Check check = mock(Check.class);
+    FileAnalysis fileAnalysis = new FileAnalysis();
+    fileAnalysis.addIssue(inputFile, RuleKey.of("go", "S1"), org.sonar.commonruleengine.Issue.issueOnFile(check, "on file"));
+    fileAnalysis.addIssue(inputFile, RuleKey.of("go", "S2"), org.sonar.commonruleengine.Issue.issueOnLine(check, 3, "on line"));
+    Metrics metrics = new Metrics();
+    metrics.numberOfFunctions = 1;
+    metrics.cognitiveComplexity = 2;
+    metrics.linesOfCode = LineSet.of(1, 3, 4);
+    metrics.executableLines = LineSet.of(3);
+    fileAnalysis.setMetrics(metrics);
+    fileAnalysis.highlight(inputFile.newRange(1, 0, 1, 7), TypeOfText.KEYWORD);
+    fileAnalysis.addCpdToken(inputFile.newRange(1, 0, 1, 7), "package");
+    fileAnalysis.addCpdToken(inputFile.newRange(1, 8, 1, 12), "main");
+    UastNode name = new UastNode(Collections.singleton(UastNode.Kind.FUNCTION_NAME), "", new UastNode.Token(3, 6, "foo"), Collections.emptyList());
+    fileAnalysis.addFunction(inputFile, 42L, name, name);
+
+    FileLinesContext fileLinesContext = mock(FileLinesContext.class);
+    FileLinesContextFactory fileLinesContextFactory = mock(FileLinesContextFactory.class);
+    when(fileLinesContextFactory.createFor(any(InputFile.class))).thenReturn(fileLinesContext);
+    FileAnalysis.deserialize(fileAnalysis.serialize()).save(sensorContext, inputFile, fileLinesContextFactory);
+
+    assertThat(sensorContext.allIssues()).extracting(Issue::ruleKey).containsExactly(RuleKey.of("go", "S1"), RuleKey.of("go", "S2"));
+    assertThat(sensorContext.allIssues()).extracting(issue -> issue.primaryLocation().message()).containsExactly("on file", "on line");
+    assertThat(sensorContext.allIssues().stream().skip(1).findFirst().get().primaryLocation().textRange().start().line()).isEqualTo(3);
+    assertThat(sensorContext.measure(inputFile.key(), CoreMetrics.NCLOC).value()).isEqualTo(3);
+    assertThat(sensorContext.measure(inputFile.key(), CoreMetrics.FUNCTIONS).value()).isEqualTo(1);
+    assertThat(sensorContext.measure(inputFile.key(), CoreMetrics.COGNITIVE_COMPLEXITY).value()).isEqualTo(2);
+    verify(fileLinesContext).setIntValue(CoreMetrics.EXECUTABLE_LINES_DATA_KEY, 3, 1);
+    assertThat(sensorContext.highlightingTypeAt(inputFile.key(), 1, 3)).containsExactly(TypeOfText.KEYWORD);
+    assertThat(sensorContext.cpdTokens(inputFile.key())).extracting("value").containsExactly("packagemain");
+    DuplicateFunctionIndex index = new DuplicateFunctionIndex(10);
+    FileAnalysis.deserialize(fileAnalysis.serialize()).indexFunctions(inputFile, index);
+    assertThat(index.size()).isEqualTo(1);
+  }
+
+  @Test
+  void unsupported_format_version() {
+    assertThatThrownBy(() -> FileAnalysis.deserialize(new byte[] {42}))
+      .isInstanceOf(IOException.class)
+      .hasMessage("Unsupported file analysis format version: 42");
+  }
+}
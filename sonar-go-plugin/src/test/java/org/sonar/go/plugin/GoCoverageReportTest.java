@@ -24,9 +24,6 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Arrays;
-import java.util.List;
-import java.util.function.Predicate;
 import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
@@ -36,13 +33,11 @@ import org.sonar.api.batch.sensor.internal.SensorContextTester;
 import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.go.plugin.GoCoverageReport.Coverage;
-import org.sonar.go.plugin.GoCoverageReport.CoverageStat;
+import org.sonar.go.plugin.GoCoverageReport.FileBlocks;
 import org.sonar.go.plugin.GoCoverageReport.FileCoverage;
-import org.sonar.go.plugin.GoCoverageReport.LineCoverage;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class GoCoverageReportTest {
 
@@ -52,85 +47,69 @@ class GoCoverageReportTest {
   static JUnit5LogTester logTester = new JUnit5LogTester();
 
   @Test
-  void mode_line() {
-    Predicate<String> regexp = (line) -> GoCoverageReport.MODE_LINE_REGEXP.matcher(line).matches();
-    assertThat(regexp.test("mode: set")).isTrue();
-    assertThat(regexp.test("mode: count")).isTrue();
-    assertThat(regexp.test("mode: atomic")).isTrue();
-    assertThat(regexp.test("my-app/my-app.go:3.2,3.10 1 1")).isFalse();
-  }
+  void line_coverage() {
+    FileBlocks blocks = new FileBlocks();
+    assertThat(new FileCoverage(blocks, null).hits(2)).isEqualTo(FileCoverage.NOT_EXECUTABLE);
 
-  @Test
-  void line_regexp() {
-    Predicate<String> regexp = (line) -> GoCoverageReport.COVERAGE_LINE_REGEXP.matcher(line).matches();
-    assertThat(regexp.test("my-app/my-app.go:3.2,3.10 1 1")).isTrue();
-    assertThat(regexp.test("_/my-app/my-app.go:3.2,3.10 1 21")).isTrue();
-    assertThat(regexp.test("my-app\\my-app.go:3.2,3.10 1 0")).isTrue();
-    assertThat(regexp.test("_\\C_\\my-app\\my-app.go:3.2,3.10 1 42")).isTrue();
-    assertThat(regexp.test("mode: set")).isFalse();
-  }
+    blocks.add(2, 2, 2, 5, 0);
+    assertThat(new FileCoverage(blocks, null).hits(2)).isEqualTo(0);
 
-  @Test
-  void coverage_stat() {
-    CoverageStat coverage = new CoverageStat(2, "_/my-app/my-app.go:3.10,4.5 2 234");
-    assertThat(coverage.filePath).isEqualTo("_/my-app/my-app.go");
-    assertThat(coverage.startLine).isEqualTo(3);
-    assertThat(coverage.startCol).isEqualTo(10);
-    assertThat(coverage.endLine).isEqualTo(4);
-    assertThat(coverage.endCol).isEqualTo(5);
-    assertThat(coverage.numStmt).isEqualTo(2);
-    assertThat(coverage.count).isEqualTo(234);
+    blocks.add(2, 2, 2, 5, 3);
+    assertThat(new FileCoverage(blocks, null).hits(2)).isEqualTo(3);
 
-    assertThat(
-      assertThrows(IllegalArgumentException.class, () -> new CoverageStat(42, "invalid"))
-        .getMessage()).isEqualTo("Invalid go coverage at line 42");
+    blocks.add(2, 2, 2, 5, 2);
+    assertThat(new FileCoverage(blocks, null).hits(2)).isEqualTo(5);
+
+    blocks.add(2, 8, 2, 10, 0);
+    assertThat(new FileCoverage(blocks, null).hits(2)).isEqualTo(5);
   }
 
   @Test
-  void line_coverage() {
-    LineCoverage line = new LineCoverage();
-    assertThat(line.hits).isEqualTo(0);
-
-    line.add(new CoverageStat(2, "main.go:2.2,2.5 1 0"));
-    assertThat(line.hits).isEqualTo(0);
-
-    line.add(new CoverageStat(2, "main.go:2.2,2.5 1 3"));
-    assertThat(line.hits).isEqualTo(3);
-
-    line.add(new CoverageStat(2, "main.go:2.2,2.5 1 2"));
-    assertThat(line.hits).isEqualTo(5);
-
-    line.add(new CoverageStat(2, "main.go:2.8,2.10 1 0"));
-    assertThat(line.hits).isEqualTo(5);
+  void file_blocks() {
+    FileBlocks blocks = new FileBlocks();
+    for (int i = 0; i < 100; i++) {
+      blocks.add(i, i + 1, i + 2, i + 3, i + 4);
+    }
+    FileBlocks other = new FileBlocks();
+    other.add(1000, 1001, 1002, 1003, 1004);
+    blocks.addAll(other);
+    assertThat(blocks.size).isEqualTo(101);
+    assertThat(blocks.startLines[99]).isEqualTo(99);
+    assertThat(blocks.startCols[99]).isEqualTo(100);
+    assertThat(blocks.endLines[99]).isEqualTo(101);
+    assertThat(blocks.endCols[99]).isEqualTo(102);
+    assertThat(blocks.counts[99]).isEqualTo(103);
+    assertThat(blocks.startLines[100]).isEqualTo(1000);
+    assertThat(blocks.counts[100]).isEqualTo(1004);
   }
 
   @Test
   void file_coverage() throws Exception {
-    List<CoverageStat> coverageStats = Arrays.asList(
-      new CoverageStat(2, "cover.go:4.11,6.3 1 3"),
-      new CoverageStat(3, "cover.go:6.3,8.3 1 0"));
-    FileCoverage file = new FileCoverage(coverageStats, Files.readAllLines(COVERAGE_DIR.resolve("cover.go")));
+    FileBlocks blocks = new FileBlocks();
+    blocks.add(4, 11, 6, 3, 3);
+    blocks.add(6, 3, 8, 3, 0);
+    FileCoverage file = new FileCoverage(blocks, LineIndex.of(Files.readAllBytes(COVERAGE_DIR.resolve("cover.go"))));
 
-    assertThat(file.lineMap.keySet()).containsExactlyInAnyOrder(5, 6, 7);
-    assertThat(file.lineMap.get(4)).isNull();
-    assertThat(file.lineMap.get(5).hits).isEqualTo(3);
-    assertThat(file.lineMap.get(6).hits).isEqualTo(0);
-    assertThat(file.lineMap.get(7).hits).isEqualTo(0);
-    assertThat(file.lineMap.get(8)).isNull();
+    assertThat(file.lines()).containsExactly(5, 6, 7);
+    assertThat(file.hits(4)).isEqualTo(FileCoverage.NOT_EXECUTABLE);
+    assertThat(file.hits(5)).isEqualTo(3);
+    assertThat(file.hits(6)).isEqualTo(0);
+    assertThat(file.hits(7)).isEqualTo(0);
+    assertThat(file.hits(8)).isEqualTo(FileCoverage.NOT_EXECUTABLE);
   }
 
   @Test
   void coverage() {
     GoPathContext linuxContext = new GoPathContext('/', ":", "/home/paul/go");
     Coverage coverage = new Coverage(linuxContext);
-    coverage.add(new CoverageStat(2, "main.go:2.2,2.5 1 1"));
-    coverage.add(new CoverageStat(3, "main.go:4.2,4.7 1 0"));
-    coverage.add(new CoverageStat(4, "other.go:3.2,4.12 1 1"));
+    coverage.add("main.go", 2, 2, 2, 5, 1, 1);
+    coverage.add("main.go", 4, 2, 4, 7, 1, 0);
+    coverage.add("other.go", 3, 2, 4, 12, 1, 1);
     assertThat(coverage.fileMap.keySet()).containsExactlyInAnyOrder("/home/paul/go/src/main.go", "/home/paul/go/src/other.go");
-    List<CoverageStat> coverageStats = coverage.fileMap.get("/home/paul/go/src/main.go");
-    FileCoverage fileCoverage = new FileCoverage(coverageStats, null);
-    assertThat(fileCoverage.lineMap.keySet()).containsExactlyInAnyOrder(2, 4);
-    assertThat(new FileCoverage(coverage.fileMap.get("/home/paul/go/src/other.go"), null).lineMap.keySet()).containsExactlyInAnyOrder(3, 4);
+    FileBlocks blocks = coverage.fileMap.get("/home/paul/go/src/main.go");
+    FileCoverage fileCoverage = new FileCoverage(blocks, null);
+    assertThat(fileCoverage.lines()).containsExactly(2, 4);
+    assertThat(new FileCoverage(coverage.fileMap.get("/home/paul/go/src/other.go"), null).lines()).containsExactly(3, 4);
   }
 
   @Test
@@ -224,6 +203,7 @@ class GoCoverageReportTest {
     context.fileSystem().add(TestInputFileBuilder.create("moduleKey", baseDir.toFile(), goFilePath.toFile())
       .setLanguage("go")
       .setType(InputFile.Type.MAIN)
+      .setCharset(UTF_8)
       .initMetadata(content)
       .setContents(content)
       .build());
@@ -240,6 +220,49 @@ class GoCoverageReportTest {
     assertThat(context.lineHits(fileKey, 8)).isNull();
   }
 
+  @Test
+  void upload_reports_with_several_threads() throws IOException {
+    Path baseDir = COVERAGE_DIR.toAbsolutePath();
+    SensorContextTester context = SensorContextTester.create(baseDir);
+    context.setSettings(new MapSettings());
+    context.settings().setProperty("sonar.go.coverage.reportPaths",
+      "coverage.relative.out, test1" + File.separator + "coverage.out, coverage.relative.out");
+    Path goFilePath = baseDir.resolve("cover.go");
+    String content = new String(Files.readAllBytes(goFilePath), UTF_8);
+    context.fileSystem().add(TestInputFileBuilder.create("moduleKey", baseDir.toFile(), goFilePath.toFile())
+      .setLanguage("go")
+      .setType(InputFile.Type.MAIN)
+      .setCharset(UTF_8)
+      .initMetadata(content)
+      .setContents(content)
+      .build());
+    GoPathContext goContext = new GoPathContext(File.separatorChar, File.pathSeparator, baseDir.toString());
+    GoCoverageReport.saveCoverageReports(context, goContext, 3);
+    String fileKey = "moduleKey:cover.go";
+    assertThat(context.lineHits(fileKey, 3)).isNull();
+    assertThat(context.lineHits(fileKey, 4)).isEqualTo(2);
+    assertThat(context.lineHits(fileKey, 5)).isEqualTo(4);
+    assertThat(context.lineHits(fileKey, 6)).isEqualTo(0);
+    assertThat(context.lineHits(fileKey, 7)).isEqualTo(0);
+    assertThat(context.lineHits(fileKey, 8)).isNull();
+    assertThat(logTester.logs(LoggerLevel.ERROR)).contains("Error parsing coverage info for file " + baseDir.resolve("test1").resolve("coverage.out") +
+      ": Invalid go coverage, expect 'mode:' on the first line.");
+  }
+
+  @Test
+  void coverage_merge() {
+    GoPathContext linuxContext = new GoPathContext('/', ":", "/home/paul/go");
+    Coverage coverage = new Coverage(linuxContext);
+    coverage.add("main.go", 2, 2, 2, 5, 1, 1);
+    Coverage other = new Coverage(linuxContext);
+    other.add("main.go", 2, 2, 2, 5, 1, 3);
+    other.add("other.go", 3, 2, 4, 12, 1, 1);
+    coverage.addAll(other);
+    assertThat(coverage.fileMap.keySet()).containsExactlyInAnyOrder("/home/paul/go/src/main.go", "/home/paul/go/src/other.go");
+    FileCoverage fileCoverage = new FileCoverage(coverage.fileMap.get("/home/paul/go/src/main.go"), null);
+    assertThat(fileCoverage.hits(2)).isEqualTo(4);
+  }
+
   @Test
   void coverage_fuzzy_inputfile() throws Exception {
     Path baseDir = COVERAGE_DIR.toAbsolutePath();
@@ -251,6 +274,7 @@ class GoCoverageReportTest {
     context.fileSystem().add(TestInputFileBuilder.create("moduleKey", baseDir.toFile(), goFilePath.toFile())
       .setLanguage("go")
       .setType(InputFile.Type.MAIN)
+      .setCharset(UTF_8)
       .initMetadata(content)
       .setContents(content)
       .build());
@@ -274,17 +298,16 @@ class GoCoverageReportTest {
     Coverage coverage = new Coverage(goContext);
     GoCoverageReport.parse(coverageFile, coverage);
     assertThat(coverage.fileMap.keySet()).containsExactlyInAnyOrder(absolutePath);
-    List<CoverageStat> coverageStats = coverage.fileMap.get(absolutePath);
-    FileCoverage fileCoverage = new FileCoverage(coverageStats, null);
-    assertThat(fileCoverage.lineMap.keySet()).containsExactlyInAnyOrder(3, 4, 5, 6, 7, 8);
-    assertThat(fileCoverage.lineMap.get(2)).isNull();
-    assertThat(fileCoverage.lineMap.get(3).hits).isEqualTo(1);
-    assertThat(fileCoverage.lineMap.get(4).hits).isEqualTo(2);
-    assertThat(fileCoverage.lineMap.get(5).hits).isEqualTo(2);
-    assertThat(fileCoverage.lineMap.get(6).hits).isEqualTo(0);
-    assertThat(fileCoverage.lineMap.get(7).hits).isEqualTo(0);
-    assertThat(fileCoverage.lineMap.get(8).hits).isEqualTo(0);
-    assertThat(fileCoverage.lineMap.get(9)).isNull();
+    FileCoverage fileCoverage = new FileCoverage(coverage.fileMap.get(absolutePath), null);
+    assertThat(fileCoverage.lines()).containsExactly(3, 4, 5, 6, 7, 8);
+    assertThat(fileCoverage.hits(2)).isEqualTo(FileCoverage.NOT_EXECUTABLE);
+    assertThat(fileCoverage.hits(3)).isEqualTo(1);
+    assertThat(fileCoverage.hits(4)).isEqualTo(2);
+    assertThat(fileCoverage.hits(5)).isEqualTo(2);
+    assertThat(fileCoverage.hits(6)).isEqualTo(0);
+    assertThat(fileCoverage.hits(7)).isEqualTo(0);
+    assertThat(fileCoverage.hits(8)).isEqualTo(0);
+    assertThat(fileCoverage.hits(9)).isEqualTo(FileCoverage.NOT_EXECUTABLE);
   }
 
 }
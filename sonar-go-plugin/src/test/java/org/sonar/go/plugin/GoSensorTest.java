@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -53,6 +54,7 @@ import org.sonar.commonruleengine.checks.Check;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
@@ -104,6 +106,223 @@ class GoSensorTest {
     assertThat(sensorContext.allIssues()).hasSize(1);
   }
 
+  @Test
+  void test_issues_with_several_analysis_threads() {
+    List<InputFile> inputFiles = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      InputFile inputFile = createInputFile("file" + i + ".go", InputFile.Type.MAIN,
+        "package main \n" +
+          "\n" +
+          "func test() {\n" +
+          " pwd := \"secret\"\n" +
+          "}");
+      sensorContext.fileSystem().add(inputFile);
+      inputFiles.add(inputFile);
+    }
+    sensorContext.settings().setProperty(GoSensor.ANALYSIS_THREADS_KEY, 3);
+    GoSensor goSensor = getSensor("S2068");
+    goSensor.execute(sensorContext);
+    assertThat(sensorContext.allIssues()).hasSize(10);
+    assertThat(sensorContext.allIssues().stream().map(issue -> issue.primaryLocation().inputComponent()))
+      .containsExactlyInAnyOrderElementsOf(inputFiles);
+    inputFiles.forEach(inputFile -> assertThat(sensorContext.measure(inputFile.key(), CoreMetrics.NCLOC).value()).isEqualTo(4));
+  }
+
+  @Test
+  void test_issues_with_batch_analysis() throws IOException {
+    List<InputFile> inputFiles = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      String content = "package main \n" +
+        "\n" +
+        "func test() {\n" +
+        " pwd := \"secret\"\n" +
+        "}";
+      // in batch mode, files are read from disk by the UAST generator
+      Files.write(projectDir.resolve("file" + i + ".go"), content.getBytes(StandardCharsets.UTF_8));
+      InputFile inputFile = createInputFile("file" + i + ".go", InputFile.Type.MAIN, content);
+      sensorContext.fileSystem().add(inputFile);
+      inputFiles.add(inputFile);
+    }
+    sensorContext.settings().setProperty(GoSensor.ANALYSIS_THREADS_KEY, 2);
+    sensorContext.settings().setProperty(GoSensor.ANALYSIS_BATCH_SIZE_KEY, 2);
+    GoSensor goSensor = getSensor("S2068");
+    goSensor.execute(sensorContext);
+    assertThat(sensorContext.allIssues()).hasSize(5);
+    assertThat(sensorContext.allIssues().stream().map(issue -> issue.primaryLocation().inputComponent()))
+      .containsExactlyInAnyOrderElementsOf(inputFiles);
+    inputFiles.forEach(inputFile -> assertThat(sensorContext.measure(inputFile.key(), CoreMetrics.NCLOC).value()).isEqualTo(4));
+  }
+
+  @Test
+  void test_uast_cache() throws IOException {
+    InputFile inputFile = createInputFile("lets.go", InputFile.Type.MAIN,
+      "package main \n" +
+        "\n" +
+        "func test() {\n" +
+        " pwd := \"secret\"\n" +
+        "}");
+    sensorContext.fileSystem().add(inputFile);
+    sensorContext.settings().setProperty(GoSensor.ANALYSIS_CACHE_SIZE_KEY, 10);
+    getSensor("S2068").execute(sensorContext);
+    Path cacheDirectory = workDir.resolve(AnalysisCache.DIRECTORY_NAME);
+    assertThat(cacheDirectory.toFile().list()).hasSize(1);
+
+    SensorContextTester secondContext = SensorContextTester.create(workDir);
+    secondContext.fileSystem().setWorkDir(workDir);
+    secondContext.fileSystem().add(inputFile);
+    secondContext.settings().setProperty(GoSensor.ANALYSIS_CACHE_SIZE_KEY, 10);
+    getSensor("S2068").execute(secondContext);
+    assertThat(cacheDirectory.toFile().list()).hasSize(1);
+    assertThat(secondContext.allIssues()).hasSize(1);
+    assertThat(secondContext.measure(inputFile.key(), CoreMetrics.NCLOC).value()).isEqualTo(4);
+  }
+
+  @Test
+  void test_incremental_analysis() {
+    InputFile inputFile = createInputFile("lets.go", InputFile.Type.MAIN,
+      "package main \n" +
+        "\n" +
+        "func test() {\n" +
+        " pwd := \"secret\"\n" +
+        "}");
+    sensorContext.fileSystem().add(inputFile);
+    sensorContext.settings().setProperty(GoSensor.ANALYSIS_CACHE_SIZE_KEY, 10);
+    sensorContext.settings().setProperty(GoSensor.INCREMENTAL_ANALYSIS_KEY, true);
+    getSensor("S2068").execute(sensorContext);
+    Path cacheDirectory = workDir.resolve(AnalysisCache.DIRECTORY_NAME);
+    // UAST and file analysis
+    assertThat(cacheDirectory.toFile().list()).hasSize(2);
+
+    SensorContextTester secondContext = SensorContextTester.create(workDir);
+    secondContext.fileSystem().setWorkDir(workDir);
+    secondContext.fileSystem().add(inputFile);
+    secondContext.settings().setProperty(GoSensor.ANALYSIS_CACHE_SIZE_KEY, 10);
+    secondContext.settings().setProperty(GoSensor.INCREMENTAL_ANALYSIS_KEY, true);
+    getSensor("S2068").execute(secondContext);
+    assertThat(cacheDirectory.toFile().list()).hasSize(2);
+    assertThat(secondContext.allIssues()).hasSize(1);
+    assertThat(secondContext.measure(inputFile.key(), CoreMetrics.NCLOC).value()).isEqualTo(4);
+    assertThat(secondContext.highlightingTypeAt(inputFile.key(), 1, 0)).containsExactly(TypeOfText.KEYWORD);
+    assertThat(secondContext.cpdTokens(inputFile.key())).hasSize(4);
+
+    // other active rules, the cached UAST is scanned again
+    SensorContextTester thirdContext = SensorContextTester.create(workDir);
+    thirdContext.fileSystem().setWorkDir(workDir);
+    thirdContext.fileSystem().add(inputFile);
+    thirdContext.settings().setProperty(GoSensor.ANALYSIS_CACHE_SIZE_KEY, 10);
+    thirdContext.settings().setProperty(GoSensor.INCREMENTAL_ANALYSIS_KEY, true);
+    getSensor("S1451").execute(thirdContext);
+    assertThat(cacheDirectory.toFile().list()).hasSize(3);
+    assertThat(thirdContext.allIssues()).hasSize(1);
+    assertThat(thirdContext.allIssues().iterator().next().ruleKey().rule()).isEqualTo("S1451");
+  }
+
+  @Test
+  void test_uast_cache_disabled() {
+    InputFile inputFile = createInputFile("lets.go", InputFile.Type.MAIN, "package main\n");
+    sensorContext.fileSystem().add(inputFile);
+    sensorContext.settings().setProperty(GoSensor.ANALYSIS_CACHE_SIZE_KEY, 0);
+    getSensor().execute(sensorContext);
+    assertThat(workDir.resolve(AnalysisCache.DIRECTORY_NAME)).doesNotExist();
+    assertThat(sensorContext.measure(inputFile.key(), CoreMetrics.NCLOC).value()).isEqualTo(1);
+  }
+
+  @Test
+  void test_uast_cache_disabled_by_default() {
+    InputFile inputFile = createInputFile("lets.go", InputFile.Type.MAIN, "package main\n");
+    sensorContext.fileSystem().add(inputFile);
+    getSensor().execute(sensorContext);
+    assertThat(workDir.resolve(AnalysisCache.DIRECTORY_NAME)).doesNotExist();
+  }
+
+  @Test
+  void test_rule_profiling() {
+    sensorContext.fileSystem().add(createInputFile("lets.go", InputFile.Type.MAIN, "package main\n"));
+    sensorContext.settings().setProperty(GoSensor.ANALYSIS_THREADS_KEY, 2);
+    sensorContext.settings().setProperty(GoSensor.RULE_PROFILING_KEY, true);
+    getSensor("S2068").execute(sensorContext);
+    assertThat(workDir.resolve(RuleProfileReport.FILE_NAME)).exists();
+    assertThat(logTester.logs(LoggerLevel.INFO)).contains("Rule profile of 1 files written to " + workDir.resolve(RuleProfileReport.FILE_NAME));
+  }
+
+  @Test
+  void test_rule_profiling_disabled() {
+    sensorContext.fileSystem().add(createInputFile("lets.go", InputFile.Type.MAIN, "package main\n"));
+    getSensor("S2068").execute(sensorContext);
+    assertThat(workDir.resolve(RuleProfileReport.FILE_NAME)).doesNotExist();
+  }
+
+  @Test
+  void test_timings_report() {
+    sensorContext.fileSystem().add(createInputFile("lets.go", InputFile.Type.MAIN, "package main\n"));
+    sensorContext.settings().setProperty(GoSensor.TIMINGS_REPORT_KEY, true);
+    getSensor("S2068").execute(sensorContext);
+    assertThat(workDir.resolve(AnalysisTimings.FILE_NAME)).exists();
+    assertThat(logTester.logs(LoggerLevel.INFO)).contains("Timings of 1 files written to " + workDir.resolve(AnalysisTimings.FILE_NAME));
+  }
+
+  @Test
+  void test_identical_functions_across_files() {
+    String function = "func %s() {\n  a := 1\n  b := a\n}\n";
+    sensorContext.fileSystem().add(createInputFile("a.go", InputFile.Type.MAIN, "package main\n" + String.format(function, "foo")));
+    sensorContext.fileSystem().add(createInputFile("b.go", InputFile.Type.MAIN, "package main\n" + String.format(function, "bar")
+      + String.format(function, "baz")));
+    sensorContext.settings().setProperty(GoSensor.CROSS_FILE_IDENTICAL_FUNCTIONS_KEY, true);
+    getSensor("S4144").execute(sensorContext);
+    assertThat(sensorContext.allIssues()).extracting(issue -> issue.primaryLocation().message()).containsExactlyInAnyOrder(
+      "Function is identical with function on line 2.",
+      "Function is identical with function in \"a.go\" on line 2.");
+  }
+
+  @Test
+  void test_identical_functions_across_files_disabled() {
+    String function = "func foo() {\n  a := 1\n  b := a\n}\n";
+    sensorContext.fileSystem().add(createInputFile("a.go", InputFile.Type.MAIN, "package main\n" + function));
+    sensorContext.fileSystem().add(createInputFile("b.go", InputFile.Type.MAIN, "package main\n" + function));
+    getSensor("S4144").execute(sensorContext);
+    assertThat(sensorContext.allIssues()).isEmpty();
+  }
+
+  @Test
+  void test_reduced_analysis_of_large_files() {
+    StringBuilder generated = new StringBuilder("package main\n");
+    for (int i = 0; i < 100; i++) {
+      generated.append("func test").append(i).append("() {\n pwd := \"secret\"\n}\n");
+    }
+    sensorContext.fileSystem().add(createInputFile("generated.go", InputFile.Type.MAIN, generated.toString()));
+    sensorContext.fileSystem().add(createInputFile("small.go", InputFile.Type.MAIN, "package main\nfunc test() {\n pwd := \"secret\"\n}\n"));
+    sensorContext.settings().setProperty(GoSensor.REDUCED_ANALYSIS_FILE_SIZE_KEY, 1);
+    getSensor("S2068").execute(sensorContext);
+    assertThat(sensorContext.allIssues()).extracting(issue -> issue.primaryLocation().inputComponent().key()).containsExactly("module:small.go");
+    assertThat(sensorContext.measure("module:generated.go", CoreMetrics.NCLOC).value()).isEqualTo(301);
+    assertThat(sensorContext.highlightingTypeAt("module:generated.go", 2, 1)).containsExactly(TypeOfText.KEYWORD);
+    assertThat(logTester.logs(LoggerLevel.WARN)).anySatisfy(log -> assertThat(log)
+      .startsWith("Analyzing generated.go (")
+      .contains("without rules, only metrics, highlighting and duplications are computed"));
+  }
+
+  @Test
+  void test_reduced_analysis_disabled_by_zero() {
+    StringBuilder generated = new StringBuilder("package main\n");
+    for (int i = 0; i < 100; i++) {
+      generated.append("func test").append(i).append("() {\n pwd := \"secret\"\n}\n");
+    }
+    sensorContext.fileSystem().add(createInputFile("generated.go", InputFile.Type.MAIN, generated.toString()));
+    sensorContext.settings().setProperty(GoSensor.REDUCED_ANALYSIS_FILE_SIZE_KEY, 0);
+    getSensor("S2068").execute(sensorContext);
+    assertThat(sensorContext.allIssues()).hasSize(100);
+    assertThat(logTester.logs(LoggerLevel.WARN)).noneMatch(log -> log.startsWith("Analyzing generated.go ("));
+  }
+
+  @Test
+  void test_error_fails_the_analysis() throws IOException {
+    InputFile failingFile = spy(createInputFile("lets.go", InputFile.Type.MAIN, "package main\n"));
+    when(failingFile.inputStream()).thenThrow(new StackOverflowError());
+    sensorContext.fileSystem().add(failingFile);
+    GoSensor goSensor = getSensor("S2068");
+    assertThrows(StackOverflowError.class, () -> goSensor.execute(sensorContext));
+  }
+
   @Test
   void test_file_issue() throws IOException {
     InputFile inputFile = createInputFile("lets.go", InputFile.Type.MAIN,
@@ -154,7 +373,7 @@ class GoSensorTest {
 
     assertThat(logTester.logs(LoggerLevel.ERROR)).contains("Error analyzing file lets.go");
     // test log from external process asynchronously
-    await().until(() -> logTester.logs(LoggerLevel.DEBUG).contains("panic: -:1:1: expected 'package', found 'EOF'"));
+    await().until(() -> logTester.logs(LoggerLevel.DEBUG).contains("-:1:1: expected 'package', found 'EOF'"));
   }
 
   @Test
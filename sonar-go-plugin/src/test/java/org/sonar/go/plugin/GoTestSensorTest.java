@@ -66,7 +66,7 @@ class GoTestSensorTest {
     DefaultFileSystem fs = contextTester.fileSystem();
     DefaultInputFile testFile = getTestInputFile(fs, "func TestFoo(", "foo_test.go");
 
-    InputFile foundTestFile = goTestSensor.findTestFile(fs, testInfo);
+    InputFile foundTestFile = goTestSensor.findTestFile(fs, InputFileIndex.of(fs), testInfo);
     assertThat(foundTestFile).isEqualTo(testFile);
   }
 
@@ -82,7 +82,7 @@ class GoTestSensorTest {
     DefaultFileSystem fs = contextTester.fileSystem();
     DefaultInputFile testFile = getTestInputFile(fs, "func TestFoo(", "foo_test.go");
 
-    InputFile foundTestFile = goTestSensor.findTestFile(fs, testInfo);
+    InputFile foundTestFile = goTestSensor.findTestFile(fs, InputFileIndex.of(fs), testInfo);
     assertThat(foundTestFile).isEqualTo(testFile);
   }
 
@@ -104,11 +104,12 @@ class GoTestSensorTest {
     DefaultInputFile topTestFile = getTestInputFile(fs, "func TestFoo(", "foo_test.go");
     DefaultInputFile nestedTestFile = getTestInputFile(fs, "\nfunc   TestFoo (", "packageFoo/foo_test.go");
 
+    InputFileIndex inputFileIndex = InputFileIndex.of(fs);
     InputFile foundTestFile;
-    foundTestFile = goTestSensor.findTestFile(fs, testInfoTop);
+    foundTestFile = goTestSensor.findTestFile(fs, inputFileIndex, testInfoTop);
     assertThat(foundTestFile).isEqualTo(topTestFile);
 
-    foundTestFile = goTestSensor.findTestFile(fs, testInfoNested);
+    foundTestFile = goTestSensor.findTestFile(fs, inputFileIndex, testInfoNested);
     assertThat(foundTestFile).isEqualTo(nestedTestFile);
   }
 
@@ -157,7 +158,7 @@ class GoTestSensorTest {
   }
 
   private DefaultInputFile getTestInputFile(DefaultFileSystem fs, String content, String relativePath) {
-    DefaultInputFile nestedTestFile = new TestInputFileBuilder("moduleKey", relativePath)
+    DefaultInputFile nestedTestFile = TestInputFileBuilder.create("moduleKey", fs.baseDir(), new File(fs.baseDir(), relativePath))
       .setLanguage("go")
       .setType(Type.TEST)
       .setContents(content)
@@ -0,0 +1,95 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.go.plugin;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultFileSystem;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InputFileIndexTest {
+
+  private final Path baseDir = Paths.get("src", "test", "resources", "myProject").toAbsolutePath();
+
+  private InputFile main;
+  private InputFile nested;
+  private InputFileIndex index;
+
+  @BeforeEach
+  void setUp() {
+    DefaultFileSystem fileSystem = new DefaultFileSystem(baseDir);
+    main = inputFile(fileSystem, "main.go", GoLanguage.KEY);
+    nested = inputFile(fileSystem, "pkg/sub/main.go", GoLanguage.KEY);
+    inputFile(fileSystem, "pkg/other.txt", null);
+    index = InputFileIndex.of(fileSystem);
+  }
+
+  @Test
+  void by_relative_or_absolute_path() {
+    assertThat(index.inputFile("main.go")).isSameAs(main);
+    assertThat(index.inputFile("pkg/sub/main.go")).isSameAs(nested);
+    assertThat(index.inputFile("pkg\\sub\\main.go")).isSameAs(nested);
+    assertThat(index.inputFile(baseDir.resolve("pkg").resolve("sub").resolve("main.go").toString())).isSameAs(nested);
+    assertThat(index.inputFile(baseDir.resolve("pkg").resolve("..").resolve("main.go").toString())).isSameAs(main);
+    assertThat(index.inputFile("sub/main.go")).isNull();
+    assertThat(index.inputFile("/other/pkg/sub/main.go")).isNull();
+    assertThat(index.inputFile("pkg/other.txt")).isNull();
+  }
+
+  @Test
+  void by_longest_suffix() {
+    assertThat(index.inputFileBySuffix(baseDir.resolve("main.go").toString())).isSameAs(main);
+    assertThat(index.inputFileBySuffix("/home/ci/go/src/github.com/org/project/pkg/sub/main.go")).isSameAs(nested);
+    assertThat(index.inputFileBySuffix("C:\\go\\src\\project\\pkg\\sub\\main.go")).isSameAs(nested);
+    assertThat(index.inputFileBySuffix("/home/ci/project/other/sub/main.go")).isSameAs(main);
+    assertThat(index.inputFileBySuffix("/home/ci/project/./pkg/sub/main.go")).isSameAs(nested);
+    assertThat(index.inputFileBySuffix("/home/ci/project/pkg/sub/other.go")).isNull();
+    assertThat(index.inputFileBySuffix("")).isNull();
+  }
+
+  @Test
+  void by_absolute_path_outside_of_base_dir() {
+    DefaultFileSystem fileSystem = new DefaultFileSystem(baseDir.resolve("pkg"));
+    InputFile inputFile = inputFile(fileSystem, baseDir.toFile(), "main.go", GoLanguage.KEY);
+    InputFileIndex moduleIndex = InputFileIndex.of(fileSystem);
+    assertThat(moduleIndex.inputFile(baseDir.resolve("main.go").toString())).isSameAs(inputFile);
+    assertThat(moduleIndex.inputFileBySuffix(baseDir.resolve("main.go").toString())).isSameAs(inputFile);
+    assertThat(moduleIndex.inputFileBySuffix("/other/main.go")).isNull();
+  }
+
+  private static InputFile inputFile(DefaultFileSystem fileSystem, String relativePath, String language) {
+    return inputFile(fileSystem, fileSystem.baseDir(), relativePath, language);
+  }
+
+  private static InputFile inputFile(DefaultFileSystem fileSystem, File moduleBaseDir, String relativePath, String language) {
+    InputFile inputFile = TestInputFileBuilder.create("module", moduleBaseDir, new File(moduleBaseDir, relativePath))
+      .setLanguage(language)
+      .build();
+    fileSystem.add(inputFile);
+    return inputFile;
+  }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.go.plugin;
+
+import org.junit.jupiter.api.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LineIndexTest {
+
+  @Test
+  void lines() {
+    LineIndex index = index("package main\r\n\nfunc foo() {}\n  ");
+    assertThat(index.lineCount()).isEqualTo(4);
+    assertThat(index.lineLength(1)).isEqualTo(12);
+    assertThat(index.lineLength(2)).isZero();
+    assertThat(index.lineLength(3)).isEqualTo(13);
+    assertThat(index.lineLength(4)).isEqualTo(2);
+    assertThat(index.lineLength(0)).isZero();
+    assertThat(index.lineLength(5)).isZero();
+    assertThat(index.byteAt(1, 1)).isEqualTo('p');
+    assertThat(index.byteAt(1, 12)).isEqualTo('n');
+    assertThat(index.byteAt(3, 12)).isEqualTo('{');
+    assertThat(index.byteAt(4, 2)).isEqualTo(' ');
+  }
+
+  @Test
+  void empty_lines_at_the_end_are_not_counted() {
+    assertThat(index("a\nb\n").lineCount()).isEqualTo(2);
+    assertThat(index("a\n\r\n\n").lineCount()).isEqualTo(1);
+    assertThat(index("").lineCount()).isZero();
+    assertThat(index("\n\n").lineCount()).isZero();
+  }
+
+  @Test
+  void many_lines() {
+    StringBuilder content = new StringBuilder();
+    for (int i = 1; i <= 1000; i++) {
+      content.append(i).append('\n');
+    }
+    LineIndex index = index(content.toString());
+    assertThat(index.lineCount()).isEqualTo(1000);
+    assertThat(index.lineLength(1000)).isEqualTo(4);
+    assertThat(index.byteAt(1000, 4)).isEqualTo('0');
+  }
+
+  @Test
+  void columns_are_in_bytes() {
+    LineIndex index = index("s := \"été\" }");
+    assertThat(index.lineLength(1)).isEqualTo(14);
+    assertThat(index.byteAt(1, 7)).isEqualTo(0xC3);
+    assertThat(index.byteAt(1, 14)).isEqualTo('}');
+  }
+
+  @Test
+  void out_of_line() {
+    LineIndex index = index("a\r\nb");
+    assertThatThrownBy(() -> index.byteAt(1, 2)).isInstanceOf(IndexOutOfBoundsException.class).hasMessage("No column 2 on line 1");
+    assertThatThrownBy(() -> index.byteAt(3, 1)).isInstanceOf(IndexOutOfBoundsException.class);
+  }
+
+  private static LineIndex index(String content) {
+    return LineIndex.of(content.getBytes(UTF_8));
+  }
+
+}
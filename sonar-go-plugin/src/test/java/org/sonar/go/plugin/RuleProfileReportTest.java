@@ -0,0 +1,66 @@
+/*
+ * SonarQube Go Plugin
+ * Copyright (C) 2018-2019 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.go.plugin;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.utils.log.LoggerLevel;
+import org.sonar.commonruleengine.Engine;
+import org.sonar.commonruleengine.RuleProfiler;
+import org.sonar.commonruleengine.checks.FunctionNameConventionCheck;
+import org.sonar.uast.UastNode;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RuleProfileReportTest {
+
+  @RegisterExtension
+  static JUnit5LogTester logTester = new JUnit5LogTester();
+
+  @Test
+  void report_is_written_to_work_dir() throws Exception {
+    Path workDir = Files.createTempDirectory("work");
+    RuleProfiler ruleProfiler = new RuleProfiler(false);
+    Engine engine = new Engine(Collections.singletonList(new FunctionNameConventionCheck()), Collections.emptyList(), ruleProfiler);
+    engine.scan(UastNode.from(new StringReader("{ kinds: ['COMPILATION_UNIT'] }")), TestInputFileBuilder.create("module", "a.go").build());
+
+    Path reportFile = RuleProfileReport.save(ruleProfiler, workDir);
+
+    assertThat(reportFile).isEqualTo(workDir.resolve(RuleProfileReport.FILE_NAME));
+    JsonObject report = new JsonParser().parse(new String(Files.readAllBytes(reportFile), StandardCharsets.UTF_8)).getAsJsonObject();
+    assertThat(report.get("allocationsMeasured").getAsBoolean()).isFalse();
+    assertThat(report.get("files").getAsInt()).isEqualTo(1);
+    JsonObject rule = report.getAsJsonArray("rules").get(0).getAsJsonObject();
+    assertThat(rule.get("name").getAsString()).isEqualTo("FunctionNameConventionCheck");
+    assertThat(rule.get("calls").getAsLong()).isEqualTo(1);
+    assertThat(report.getAsJsonArray("slowestFiles").get(0).getAsJsonObject().get("name").getAsString()).isEqualTo("a.go");
+    assertThat(logTester.logs(LoggerLevel.INFO)).contains(
+      "Rule profile of 1 files written to " + reportFile);
+    assertThat(logTester.logs(LoggerLevel.INFO)).anyMatch(log -> log.startsWith("  FunctionNameConventionCheck: "));
+  }
+}
@@ -20,12 +20,11 @@
 package org.sonar.go.plugin;
 
 /**
- * Used to test external process return values
+ * Used to test external process which never answers
  */
 public class StuckExternalProcess {
 
   public static void main(String[] args) throws InterruptedException {
-    System.out.println(args[0]);
     Thread.sleep(10_000);
   }
 }
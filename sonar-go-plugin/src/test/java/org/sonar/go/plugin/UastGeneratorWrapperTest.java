@@ -21,16 +21,25 @@ package org.sonar.go.plugin;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import org.assertj.core.util.Files;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
 import org.sonar.api.batch.sensor.internal.SensorContextTester;
 import org.sonar.uast.UastNode;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
 
 class UastGeneratorWrapperTest {
 
@@ -50,28 +59,126 @@ class UastGeneratorWrapperTest {
     ByteArrayInputStream in = new ByteArrayInputStream("package main\nfunc foo() {}".getBytes(StandardCharsets.UTF_8));
 
     UastNode uast = generator.createUast(in);
+    generator.close();
     assertThat(uast.joinTokens()).isEqualTo("package main\n" +
       "func foo() {}");
   }
 
   @Test
-  void test_non_zero_return_value() throws Exception {
-    String cp = System.getProperty("java.class.path");
-    UastGeneratorWrapper generator = new UastGeneratorWrapper(() -> Arrays.asList("java", "-cp", cp, ExternalProcess.class.getCanonicalName(), "{kinds: []}", "2"));
+  void test_process_is_reused() throws Exception {
+    SensorContextTester sensorContext = SensorContextTester.create(workDir);
+    sensorContext.fileSystem().setWorkDir(workDir.toPath());
+    try (UastGeneratorWrapper generator = new UastGeneratorWrapper(sensorContext)) {
+      assertThat(generator.createUast(source("package main\nfunc foo() {}")).joinTokens()).isEqualTo("package main\nfunc foo() {}");
+      assertThatThrownBy(() -> generator.createUast(source("")))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessage("Parser returned an error: -:1:1: expected 'package', found 'EOF'");
+      assertThat(generator.createUast(source("package other\n")).joinTokens()).isEqualTo("package other\n");
+    }
+  }
 
-    assertThatThrownBy(() -> generator.createUast(new ByteArrayInputStream(new byte[] {})))
-      .isInstanceOf(IllegalStateException.class);
+  @Test
+  void test_batch() throws Exception {
+    SensorContextTester sensorContext = SensorContextTester.create(workDir);
+    sensorContext.fileSystem().setWorkDir(workDir.toPath());
+    List<InputFile> inputFiles = Arrays.asList(
+      inputFile("a.go", "package a\nfunc foo() {}"),
+      inputFile("b.go", ""),
+      inputFile("c.go", "package c\n"));
+    Map<String, String> results = new HashMap<>();
+    try (UastGeneratorWrapper generator = new UastGeneratorWrapper(sensorContext)) {
+      generator.createUasts(inputFiles, 2, (inputFile, uast, failure) -> results.put(inputFile.filename(), uast != null ? deserialize(uast).joinTokens() : failure.getMessage()));
+    }
+    assertThat(results).containsOnlyKeys("a.go", "b.go", "c.go");
+    assertThat(results.get("a.go")).isEqualTo("package a\nfunc foo() {}");
+    assertThat(results.get("b.go")).startsWith("Parser returned an error: ").endsWith("b.go:1:1: expected 'package', found 'EOF'");
+    assertThat(results.get("c.go")).isEqualTo("package c\n");
+  }
+
+  @Test
+  void test_batch_results_are_consumed_as_they_arrive() throws Exception {
+    List<InputFile> inputFiles = Arrays.asList(inputFile("a.go", "a"), inputFile("b.go", "error"), inputFile("c.go", "c"));
+    Map<String, String> results = new LinkedHashMap<>();
+    try (UastGeneratorWrapper generator = new UastGeneratorWrapper(externalProcess(ExternalProcess.class, "2"))) {
+      generator.createUasts(inputFiles, 2, (inputFile, uast, failure) -> results.put(inputFile.filename(), uast != null ? deserialize(uast).token.value : failure.getMessage()));
+    }
+    assertThat(results).containsExactly(
+      entry("c.go", "c"),
+      entry("b.go", "Parser returned an error: invalid source"),
+      entry("a.go", "a"));
+  }
+
+  @Test
+  void test_batch_process_failure() throws Exception {
+    List<InputFile> inputFiles = Arrays.asList(inputFile("a.go", "a"), inputFile("b.go", "exit"), inputFile("c.go", "c"));
+    Map<String, Exception> failures = new LinkedHashMap<>();
+    try (UastGeneratorWrapper generator = new UastGeneratorWrapper(externalProcess(ExternalProcess.class, "2"))) {
+      generator.createUasts(inputFiles, 2, (inputFile, uast, failure) -> failures.put(inputFile.filename(), failure));
+    }
+    assertThat(failures).containsOnlyKeys("a.go", "b.go", "c.go");
+    assertThat(failures.get("c.go")).isNull();
+    assertThat(failures.get("a.go")).hasMessage("Parser process failed").isSameAs(failures.get("b.go"));
+  }
+
+  @Test
+  void test_requests_are_sent_to_the_same_process() throws Exception {
+    try (UastGeneratorWrapper generator = new UastGeneratorWrapper(externalProcess(ExternalProcess.class, "2"))) {
+      assertThat(generator.createUast(source("a")).token.value).isEqualTo("1");
+      assertThat(generator.createUast(source("b")).token.value).isEqualTo("2");
+      assertThatThrownBy(() -> generator.createUast(source("error")))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessage("Parser returned an error: invalid source");
+      assertThat(generator.createUast(source("c")).token.value).isEqualTo("4");
+      assertThat(generator.createUast(source("binary")).token.value).isEqualTo("5");
+    }
+  }
+
+  @Test
+  void test_non_zero_return_value() throws Exception {
+    try (UastGeneratorWrapper generator = new UastGeneratorWrapper(externalProcess(ExternalProcess.class, "2"))) {
+      assertThatThrownBy(() -> generator.createUast(source("exit")))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessage("Parser returned non-zero exit value: 2");
+      // process is restarted
+      assertThat(generator.createUast(source("a")).token.value).isEqualTo("1");
+    }
   }
 
   @Test
   void test_stuck_process() throws Exception {
-    String cp = System.getProperty("java.class.path");
-    UastGeneratorWrapper generator = new UastGeneratorWrapper(() -> Arrays.asList("java", "-cp", cp, StuckExternalProcess.class.getCanonicalName(), "{kinds: []}"));
+    try (UastGeneratorWrapper generator = new UastGeneratorWrapper(externalProcess(StuckExternalProcess.class), 1_000)) {
+      assertThatThrownBy(() -> generator.createUast(source("")))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessage("Took too long to parse. External process killed forcibly");
+    }
+  }
+
+  private static UastNode deserialize(byte[] serializedUast) {
+    try {
+      return UastGeneratorWrapper.deserialize(serializedUast);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
 
-    assertThatThrownBy(() -> generator.createUast(new ByteArrayInputStream(new byte[] {})))
-      .isInstanceOf(IllegalStateException.class)
-      .hasMessage("Took too long to parse. External process killed forcibly");
+  private InputFile inputFile(String filename, String content) throws IOException {
+    File file = new File(workDir, filename);
+    java.nio.file.Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    return TestInputFileBuilder.create("module", workDir, file)
+      .setCharset(StandardCharsets.UTF_8)
+      .setLanguage(GoLanguage.KEY)
+      .build();
   }
 
+  private static ByteArrayInputStream source(String content) {
+    return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static UastGeneratorWrapper.Command externalProcess(Class<?> mainClass, String... args) {
+    String cp = System.getProperty("java.class.path");
+    List<String> command = new ArrayList<>(Arrays.asList("java", "-cp", cp, mainClass.getCanonicalName()));
+    command.addAll(Arrays.asList(args));
+    return () -> command;
+  }
 
 }
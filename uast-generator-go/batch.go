@@ -0,0 +1,152 @@
+// SonarQube Go Plugin
+// Copyright (C) 2018-2019 SonarSource SA
+// mailto:info AT sonarsource DOT com
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 3 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with this program; if not, write to the Free Software Foundation,
+// Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+
+package main
+
+import (
+	"bufio"
+	"encoding/binary"
+	"fmt"
+	"io"
+	"os"
+	"path/filepath"
+	"strings"
+	"sync"
+)
+
+// Batch mode protocol, all integers are big-endian, one response per file of the manifest:
+//   response: [uint32 file index][uint8 status][uint32 size][size bytes of payload]
+// The file index is the position of the file in the manifest, status and payload are the same as in server mode.
+// Files are read from disk by the generator, the manifest lists one path per line.
+// Files are parsed by the given number of goroutines, responses are written in completion order.
+func batch(paths []string, out io.Writer, encode func(*Node) []byte, parallelism int) error {
+	if parallelism < 1 {
+		parallelism = 1
+	}
+	indexes := make(chan int)
+	results := make(chan batchResult, parallelism)
+	var workers sync.WaitGroup
+	for i := 0; i < parallelism; i++ {
+		workers.Add(1)
+		go func() {
+			defer workers.Done()
+			for index := range indexes {
+				uast, err := uastFromFile(paths[index], encode)
+				results <- batchResult{index, uast, err}
+			}
+		}()
+	}
+	go func() {
+		for index := range paths {
+			indexes <- index
+		}
+		close(indexes)
+		workers.Wait()
+		close(results)
+	}()
+
+	writer := bufio.NewWriter(out)
+	var writeErr error
+	for result := range results {
+		// on write error, keep draining the results so that the goroutines can terminate
+		if writeErr != nil {
+			continue
+		}
+		if writeErr = writeBatchResponse(writer, result.index, result.uast, result.err); writeErr == nil {
+			// flush each response, the client processes results as they arrive
+			writeErr = writer.Flush()
+		}
+	}
+	return writeErr
+}
+
+type batchResult struct {
+	index int
+	uast  []byte
+	err   error
+}
+
+func writeBatchResponse(writer io.Writer, index int, uast []byte, uastErr error) error {
+	var header [4]byte
+	binary.BigEndian.PutUint32(header[:], uint32(index))
+	if _, err := writer.Write(header[:]); err != nil {
+		return err
+	}
+	if uastErr != nil {
+		fmt.Fprintln(os.Stderr, uastErr)
+		return writeFrame(writer, statusError, []byte(uastErr.Error()))
+	}
+	return writeFrame(writer, statusOk, uast)
+}
+
+func uastFromFile(path string, encode func(*Node) []byte) (uast []byte, err error) {
+	defer recoverAsError(&err)
+	fileSet, astFile, fileContent, err := readAstFile(path)
+	if err != nil {
+		return nil, err
+	}
+	return encode(toUast(fileSet, astFile, fileContent)), nil
+}
+
+// readManifest returns the paths listed in the given manifest, "-" for stdin,
+// or all the go files of the given directory
+func readManifest(manifest string) ([]string, error) {
+	if manifest == "-" {
+		return readPaths(os.Stdin)
+	}
+	info, err := os.Stat(manifest)
+	if err != nil {
+		return nil, err
+	}
+	if info.IsDir() {
+		return listGoFiles(manifest)
+	}
+	file, err := os.Open(manifest)
+	if err != nil {
+		return nil, err
+	}
+	defer file.Close()
+	return readPaths(file)
+}
+
+func readPaths(reader io.Reader) ([]string, error) {
+	var paths []string
+	scanner := bufio.NewScanner(reader)
+	for scanner.Scan() {
+		path := strings.TrimSuffix(scanner.Text(), "\r")
+		if len(path) > 0 {
+			paths = append(paths, path)
+		}
+	}
+	return paths, scanner.Err()
+}
+
+func listGoFiles(dir string) ([]string, error) {
+	var paths []string
+	err := filepath.Walk(dir, func(path string, info os.FileInfo, err error) error {
+		if err != nil {
+			return err
+		}
+		if !info.IsDir() && strings.HasSuffix(path, ".go") {
+			paths = append(paths, path)
+		}
+		return nil
+	})
+	return paths, err
+}
@@ -0,0 +1,158 @@
+// SonarQube Go Plugin
+// Copyright (C) 2018-2019 SonarSource SA
+// mailto:info AT sonarsource DOT com
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 3 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with this program; if not, write to the Free Software Foundation,
+// Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+
+package main
+
+import (
+	"bytes"
+	"encoding/binary"
+	"fmt"
+	"io/ioutil"
+	"os"
+	"path/filepath"
+	"reflect"
+	"strings"
+	"testing"
+)
+
+func Test_batch(t *testing.T) {
+	dir := createTestDir(t, map[string]string{
+		"a.go":     "package a\n",
+		"b.go":     "",
+		"sub/c.go": "package c\nfunc foo() {}",
+	})
+	defer os.RemoveAll(dir)
+	paths := []string{filepath.Join(dir, "a.go"), filepath.Join(dir, "b.go"), filepath.Join(dir, "sub", "c.go"), filepath.Join(dir, "missing.go")}
+
+	var out bytes.Buffer
+	if err := batch(paths, &out, toJsonBytes, 1); err != nil {
+		t.Fatal(err)
+	}
+
+	index, status, payload := readBatchResponse(t, &out)
+	if index != 0 || status != statusOk || payload != toJson(uastFromString(t, "package a\n", "")) {
+		t.Fatalf("unexpected response %d %d: %s", index, status, payload)
+	}
+	index, status, payload = readBatchResponse(t, &out)
+	if index != 1 || status != statusError || !strings.HasSuffix(payload, "b.go:1:1: expected 'package', found 'EOF'") {
+		t.Fatalf("unexpected response %d %d: %s", index, status, payload)
+	}
+	index, status, payload = readBatchResponse(t, &out)
+	if index != 2 || status != statusOk || !strings.Contains(payload, "\"value\":\"foo\"") {
+		t.Fatalf("unexpected response %d %d: %s", index, status, payload)
+	}
+	index, status, payload = readBatchResponse(t, &out)
+	if index != 3 || status != statusError || !strings.Contains(payload, "missing.go") {
+		t.Fatalf("unexpected response %d %d: %s", index, status, payload)
+	}
+	if out.Len() != 0 {
+		t.Fatalf("unexpected remaining output: %s", out.String())
+	}
+}
+
+func Test_batch_parallelism(t *testing.T) {
+	files := make(map[string]string)
+	for i := 0; i < 20; i++ {
+		name := fmt.Sprintf("f%d.go", i)
+		files[name] = fmt.Sprintf("package p%d\n", i)
+	}
+	dir := createTestDir(t, files)
+	defer os.RemoveAll(dir)
+	var paths []string
+	for i := 0; i < 20; i++ {
+		paths = append(paths, filepath.Join(dir, fmt.Sprintf("f%d.go", i)))
+	}
+
+	var out bytes.Buffer
+	if err := batch(paths, &out, toJsonBytes, 4); err != nil {
+		t.Fatal(err)
+	}
+
+	received := make(map[uint32]bool)
+	for i := 0; i < 20; i++ {
+		index, status, payload := readBatchResponse(t, &out)
+		expected := toJson(uastFromString(t, fmt.Sprintf("package p%d\n", index), ""))
+		if status != statusOk || payload != expected || received[index] {
+			t.Fatalf("unexpected response %d %d: %s", index, status, payload)
+		}
+		received[index] = true
+	}
+	if out.Len() != 0 {
+		t.Fatalf("unexpected remaining output: %s", out.String())
+	}
+}
+
+func Test_readManifest(t *testing.T) {
+	dir := createTestDir(t, map[string]string{
+		"a.go":       "package a\n",
+		"README.md":  "",
+		"sub/c.go":   "package c\n",
+		"sub/d.go":   "package c\n",
+		"manifest":   "a.go\r\n\nsub/c.go\n",
+		"sub/e.java": "",
+	})
+	defer os.RemoveAll(dir)
+
+	paths, err := readManifest(filepath.Join(dir, "manifest"))
+	if err != nil {
+		t.Fatal(err)
+	}
+	if !reflect.DeepEqual(paths, []string{"a.go", "sub/c.go"}) {
+		t.Fatalf("unexpected paths %v", paths)
+	}
+
+	paths, err = readManifest(dir)
+	if err != nil {
+		t.Fatal(err)
+	}
+	expected := []string{filepath.Join(dir, "a.go"), filepath.Join(dir, "sub", "c.go"), filepath.Join(dir, "sub", "d.go")}
+	if !reflect.DeepEqual(paths, expected) {
+		t.Fatalf("unexpected paths %v", paths)
+	}
+
+	if _, err = readManifest(filepath.Join(dir, "missing")); err == nil {
+		t.Fatal("expected an error on missing manifest")
+	}
+}
+
+func createTestDir(t *testing.T, files map[string]string) string {
+	dir, err := ioutil.TempDir("", "uast-generator-go")
+	if err != nil {
+		t.Fatal(err)
+	}
+	for name, content := range files {
+		path := filepath.Join(dir, filepath.FromSlash(name))
+		if err = os.MkdirAll(filepath.Dir(path), 0755); err != nil {
+			t.Fatal(err)
+		}
+		if err = ioutil.WriteFile(path, []byte(content), 0644); err != nil {
+			t.Fatal(err)
+		}
+	}
+	return dir
+}
+
+func readBatchResponse(t *testing.T, out *bytes.Buffer) (uint32, byte, string) {
+	var index uint32
+	if err := binary.Read(out, binary.BigEndian, &index); err != nil {
+		t.Fatal(err)
+	}
+	status, payload := readResponse(t, out)
+	return index, status, payload
+}
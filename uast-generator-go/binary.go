@@ -0,0 +1,132 @@
+// SonarQube Go Plugin
+// Copyright (C) 2018-2019 SonarSource SA
+// mailto:info AT sonarsource DOT com
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 3 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with this program; if not, write to the Free Software Foundation,
+// Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+package main
+
+import (
+	"bytes"
+	"encoding/binary"
+)
+
+// Binary UAST format, read by org.sonar.uast.BinaryUnmarshaller:
+//   [uint8 version]
+//   [uvarint kind count] kind names
+//   [uvarint string count] strings (token values and native nodes)
+//   root node
+// A string is [uvarint byte length][utf-8 bytes]. A node is:
+//   [uvarint kind count] kind table indexes
+//   [uvarint native node string index]
+//   [uvarint token value string index + 1, 0 when there is no token]
+//   when there is a token: [varint line delta][varint column]
+//     the line is relative to the previous token, the column too when both are on the same line
+//   [uvarint children count] children
+const binaryFormatVersion byte = 1
+
+type binaryEncoder struct {
+	buf        bytes.Buffer
+	scratch    [binary.MaxVarintLen64]byte
+	kinds      map[Kind]int
+	kindList   []Kind
+	strings    map[string]int
+	stringList []string
+	lastLine   int
+	lastColumn int
+}
+
+func toBinary(node *Node) []byte {
+	encoder := &binaryEncoder{
+		kinds:   make(map[Kind]int),
+		strings: make(map[string]int),
+	}
+	encoder.collect(node)
+	encoder.buf.WriteByte(binaryFormatVersion)
+	encoder.writeUvarint(len(encoder.kindList))
+	for _, kind := range encoder.kindList {
+		encoder.writeString(string(kind))
+	}
+	encoder.writeUvarint(len(encoder.stringList))
+	for _, str := range encoder.stringList {
+		encoder.writeString(str)
+	}
+	encoder.writeNode(node)
+	return encoder.buf.Bytes()
+}
+
+func (e *binaryEncoder) collect(node *Node) {
+	for _, kind := range node.Kinds {
+		if _, ok := e.kinds[kind]; !ok {
+			e.kinds[kind] = len(e.kindList)
+			e.kindList = append(e.kindList, kind)
+		}
+	}
+	e.collectString(node.NativeNode)
+	if node.Token != nil {
+		e.collectString(node.Token.Value)
+	}
+	for _, child := range node.Children {
+		e.collect(child)
+	}
+}
+
+func (e *binaryEncoder) collectString(str string) {
+	if _, ok := e.strings[str]; !ok {
+		e.strings[str] = len(e.stringList)
+		e.stringList = append(e.stringList, str)
+	}
+}
+
+func (e *binaryEncoder) writeNode(node *Node) {
+	e.writeUvarint(len(node.Kinds))
+	for _, kind := range node.Kinds {
+		e.writeUvarint(e.kinds[kind])
+	}
+	e.writeUvarint(e.strings[node.NativeNode])
+	if node.Token == nil {
+		e.writeUvarint(0)
+	} else {
+		token := node.Token
+		e.writeUvarint(e.strings[token.Value] + 1)
+		e.writeVarint(token.Line - e.lastLine)
+		if token.Line == e.lastLine {
+			e.writeVarint(token.Column - e.lastColumn)
+		} else {
+			e.writeVarint(token.Column)
+		}
+		e.lastLine = token.Line
+		e.lastColumn = token.Column
+	}
+	e.writeUvarint(len(node.Children))
+	for _, child := range node.Children {
+		e.writeNode(child)
+	}
+}
+
+func (e *binaryEncoder) writeString(str string) {
+	e.writeUvarint(len(str))
+	e.buf.WriteString(str)
+}
+
+func (e *binaryEncoder) writeUvarint(value int) {
+	n := binary.PutUvarint(e.scratch[:], uint64(value))
+	e.buf.Write(e.scratch[:n])
+}
+
+func (e *binaryEncoder) writeVarint(value int) {
+	n := binary.PutVarint(e.scratch[:], int64(value))
+	e.buf.Write(e.scratch[:n])
+}
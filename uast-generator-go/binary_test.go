@@ -0,0 +1,74 @@
+// SonarQube Go Plugin
+// Copyright (C) 2018-2019 SonarSource SA
+// mailto:info AT sonarsource DOT com
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 3 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with this program; if not, write to the Free Software Foundation,
+// Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+
+package main
+
+import (
+	"bytes"
+	"testing"
+)
+
+func Test_toBinary(t *testing.T) {
+	uast := &Node{
+		Kinds:      []Kind{COMPILATION_UNIT},
+		NativeNode: "(File)",
+		Children: []*Node{
+			{Kinds: []Kind{KEYWORD}, Token: &Token{Value: "package", Line: 1, Column: 1}},
+			{Kinds: []Kind{IDENTIFIER}, Token: &Token{Value: "main", Line: 1, Column: 9}, NativeNode: "Name(Ident)"},
+			{Kinds: []Kind{EOF}, Token: &Token{Line: 2, Column: 1}},
+		},
+	}
+
+	var expected bytes.Buffer
+	expected.WriteByte(binaryFormatVersion)
+	expected.WriteByte(4)
+	writeTestString(&expected, "COMPILATION_UNIT", "KEYWORD", "IDENTIFIER", "EOF")
+	expected.WriteByte(5)
+	writeTestString(&expected, "(File)", "", "package", "Name(Ident)", "main")
+	expected.Write([]byte{
+		// kinds, native node, no token, children
+		1, 0, 0, 0, 3,
+		// kinds, native node, token value, line +1 (zigzag), column 1 (zigzag), no children
+		1, 1, 1, 3, 2, 2, 0,
+		// same line, column +8 (zigzag)
+		1, 2, 3, 5, 0, 16, 0,
+		1, 3, 1, 2, 2, 2, 0,
+	})
+
+	actual := toBinary(uast)
+	if !bytes.Equal(expected.Bytes(), actual) {
+		t.Fatalf("got: \n%v\nExpected: \n%v", actual, expected.Bytes())
+	}
+}
+
+func Test_toBinary_is_smaller_than_json(t *testing.T) {
+	uast := uastFromString(t, example_hello_world, "")
+	binarySize := len(toBinary(uast))
+	jsonSize := len(toJson(uast))
+	if binarySize*3 > jsonSize {
+		t.Fatalf("binary size %d is not significantly smaller than json size %d", binarySize, jsonSize)
+	}
+}
+
+func writeTestString(dst *bytes.Buffer, values ...string) {
+	for _, value := range values {
+		dst.WriteByte(byte(len(value)))
+		dst.WriteString(value)
+	}
+}
@@ -29,6 +29,10 @@ func toJson(node *Node) string {
 	return string(buf.Bytes())
 }
 
+func toJsonBytes(node *Node) []byte {
+	return []byte(toJson(node))
+}
+
 func marshalIndent(dst *bytes.Buffer, node *Node, prefix, indent string) {
 	if node == nil {
 		return
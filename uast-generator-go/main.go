@@ -32,6 +32,10 @@ func exit() {
 type Params struct {
 	dumpAst   bool
 	dumpKinds bool
+	server    bool
+	binary    bool
+	manifest  string
+	jobs      int
 	path      string
 }
 
@@ -43,17 +47,25 @@ func parseArgs() Params {
 
 	dumpAstFlag := flag.Bool("d", false, "dump ast (instead of JSON)")
 	dumpKinds := flag.Bool("k", false, "dump supported uast kinds")
+	server := flag.Bool("s", false, "server mode, read length-prefixed sources on stdin and write length-prefixed UASTs on stdout")
+	binaryFlag := flag.Bool("b", false, "write the UAST in binary format (instead of JSON)")
+	manifest := flag.String("m", "", "batch mode, write length-prefixed UASTs on stdout for the files listed in the given manifest (\"-\" for stdin) or directory")
+	jobs := flag.Int("j", 1, "number of files parsed concurrently in batch mode")
 	flag.Parse()
 	var path string
 	if len(flag.Args()) == 1 {
 		path = flag.Args()[0]
 	}
-	if !*dumpKinds && len(path) == 0 {
+	if !*dumpKinds && !*server && len(*manifest) == 0 && len(path) == 0 {
 		exit()
 	}
 	return Params{
 		dumpAst:   *dumpAstFlag,
 		dumpKinds: *dumpKinds,
+		server:    *server,
+		binary:    *binaryFlag,
+		manifest:  *manifest,
+		jobs:      *jobs,
 		path:      path,
 	}
 }
@@ -66,6 +78,26 @@ func main() {
 		}
 		return
 	}
+	encode := toJsonBytes
+	if params.binary {
+		encode = toBinary
+	}
+	if params.server {
+		if err := serve(os.Stdin, os.Stdout, encode); err != nil {
+			panic(err)
+		}
+		return
+	}
+	if len(params.manifest) > 0 {
+		paths, err := readManifest(params.manifest)
+		if err != nil {
+			panic(err)
+		}
+		if err = batch(paths, os.Stdout, encode, params.jobs); err != nil {
+			panic(err)
+		}
+		return
+	}
 
 	fileSet, astFile, fileContent, err := readAstFile(params.path)
 	if err != nil {
@@ -74,8 +106,9 @@ func main() {
 
 	if params.dumpAst {
 		fmt.Println(render(astFile))
+	} else if params.binary {
+		os.Stdout.Write(toBinary(toUast(fileSet, astFile, fileContent)))
 	} else {
-		uast := toUast(fileSet, astFile, fileContent)
-		PrintJson(uast)
+		PrintJson(toUast(fileSet, astFile, fileContent))
 	}
 }
@@ -0,0 +1,104 @@
+// SonarQube Go Plugin
+// Copyright (C) 2018-2019 SonarSource SA
+// mailto:info AT sonarsource DOT com
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 3 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with this program; if not, write to the Free Software Foundation,
+// Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+package main
+
+import (
+	"bufio"
+	"encoding/binary"
+	"fmt"
+	"io"
+	"os"
+)
+
+// Server mode protocol, all integers are big-endian:
+//   request:  [uint32 size][size bytes of go source]
+//   response: [uint8 status][uint32 size][size bytes of payload]
+// The payload is the UAST, encoded by the given function, when status is statusOk, otherwise it is the error message.
+// The server stops when stdin is closed.
+const (
+	statusOk    byte = 0
+	statusError byte = 1
+)
+
+func serve(in io.Reader, out io.Writer, encode func(*Node) []byte) error {
+	reader := bufio.NewReader(in)
+	writer := bufio.NewWriter(out)
+	for {
+		source, err := readFrame(reader)
+		if err == io.EOF {
+			return nil
+		}
+		if err != nil {
+			return err
+		}
+		uast, err := uastFromSource(source, encode)
+		if err != nil {
+			fmt.Fprintln(os.Stderr, err)
+			err = writeFrame(writer, statusError, []byte(err.Error()))
+		} else {
+			err = writeFrame(writer, statusOk, uast)
+		}
+		if err != nil {
+			return err
+		}
+		if err = writer.Flush(); err != nil {
+			return err
+		}
+	}
+}
+
+func readFrame(reader io.Reader) ([]byte, error) {
+	var header [4]byte
+	if _, err := io.ReadFull(reader, header[:]); err != nil {
+		return nil, err
+	}
+	frame := make([]byte, binary.BigEndian.Uint32(header[:]))
+	if _, err := io.ReadFull(reader, frame); err != nil {
+		return nil, err
+	}
+	return frame, nil
+}
+
+func writeFrame(writer io.Writer, status byte, payload []byte) error {
+	var header [5]byte
+	header[0] = status
+	binary.BigEndian.PutUint32(header[1:], uint32(len(payload)))
+	if _, err := writer.Write(header[:]); err != nil {
+		return err
+	}
+	_, err := writer.Write(payload)
+	return err
+}
+
+func uastFromSource(source []byte, encode func(*Node) []byte) (uast []byte, err error) {
+	defer recoverAsError(&err)
+	fileContent := string(source)
+	fileSet, astFile, err := readAstString("-", fileContent)
+	if err != nil {
+		return nil, err
+	}
+	return encode(toUast(fileSet, astFile, fileContent)), nil
+}
+
+// recoverAsError converts panics of the mapper into errors, a malformed file should not stop the server
+func recoverAsError(err *error) {
+	if r := recover(); r != nil {
+		*err = fmt.Errorf("%v", r)
+	}
+}
@@ -0,0 +1,97 @@
+// SonarQube Go Plugin
+// Copyright (C) 2018-2019 SonarSource SA
+// mailto:info AT sonarsource DOT com
+//
+// This program is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 3 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with this program; if not, write to the Free Software Foundation,
+// Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+package main
+
+import (
+	"bytes"
+	"encoding/binary"
+	"strings"
+	"testing"
+)
+
+func Test_serve(t *testing.T) {
+	var in bytes.Buffer
+	writeRequest(&in, "package main\nfunc foo() {}")
+	writeRequest(&in, "")
+	writeRequest(&in, "package main\n")
+
+	var out bytes.Buffer
+	if err := serve(&in, &out, toJsonBytes); err != nil {
+		t.Fatal(err)
+	}
+
+	status, payload := readResponse(t, &out)
+	if status != statusOk || !strings.Contains(payload, "\"value\":\"foo\"") {
+		t.Fatalf("unexpected response %d: %s", status, payload)
+	}
+	status, payload = readResponse(t, &out)
+	if status != statusError || payload != "-:1:1: expected 'package', found 'EOF'" {
+		t.Fatalf("unexpected response %d: %s", status, payload)
+	}
+	status, payload = readResponse(t, &out)
+	if status != statusOk || payload != toJson(uastFromString(t, "package main\n", "")) {
+		t.Fatalf("unexpected response %d: %s", status, payload)
+	}
+	if out.Len() != 0 {
+		t.Fatalf("unexpected remaining output: %s", out.String())
+	}
+}
+
+func Test_serve_binary(t *testing.T) {
+	var in bytes.Buffer
+	writeRequest(&in, "package main\n")
+
+	var out bytes.Buffer
+	if err := serve(&in, &out, toBinary); err != nil {
+		t.Fatal(err)
+	}
+
+	status, payload := readResponse(t, &out)
+	if status != statusOk || payload != string(toBinary(uastFromString(t, "package main\n", ""))) {
+		t.Fatalf("unexpected response %d: %v", status, []byte(payload))
+	}
+}
+
+func Test_serve_truncated_request(t *testing.T) {
+	var in bytes.Buffer
+	binary.Write(&in, binary.BigEndian, uint32(10))
+	in.WriteString("package")
+
+	var out bytes.Buffer
+	if err := serve(&in, &out, toJsonBytes); err == nil {
+		t.Fatal("expected an error on truncated request")
+	}
+}
+
+func writeRequest(in *bytes.Buffer, source string) {
+	binary.Write(in, binary.BigEndian, uint32(len(source)))
+	in.WriteString(source)
+}
+
+func readResponse(t *testing.T, out *bytes.Buffer) (byte, string) {
+	status, err := out.ReadByte()
+	if err != nil {
+		t.Fatal(err)
+	}
+	payload, err := readFrame(out)
+	if err != nil {
+		t.Fatal(err)
+	}
+	return status, string(payload)
+}